@@ -0,0 +1,49 @@
+package ca.fuzzlesoft.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson and Gson parsing the same corpus into untyped maps and lists, and writing them back, as a baseline for
+ * {@link JsonParseBenchmark} and {@link JsonWriteBenchmark}. Only compiled with the "compare" profile.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparisonBenchmark {
+
+    private static final ObjectMapper JACKSON = new ObjectMapper();
+    private static final Gson GSON = new Gson();
+
+    @Benchmark
+    public Object jackson(Payload.Any payload) throws IOException {
+        return JACKSON.readValue(payload.json, Object.class);
+    }
+
+    @Benchmark
+    public Object gson(Payload.Any payload) {
+        return GSON.fromJson(payload.json, Object.class);
+    }
+
+    @Benchmark
+    public Object jacksonWrite(Payload.Parsed payload) throws IOException {
+        return JACKSON.writeValueAsString(payload.value);
+    }
+
+    @Benchmark
+    public Object gsonWrite(Payload.Parsed payload) {
+        return GSON.toJson(payload.value);
+    }
+}
@@ -0,0 +1,127 @@
+package ca.fuzzlesoft.bench;
+
+import java.util.Random;
+
+/**
+ * Generates deterministic JSON documents shaped like the payloads we see in practice. Every shape is generated up to
+ * (roughly) a target size in bytes, so the same shape can be measured at 1 KB, 100 KB and 10 MB.
+ */
+public enum Corpus {
+    /** Objects nested 48 deep, repeated under numbered keys. Object root */
+    DEEP(true) {
+        @Override
+        void element(StringBuilder out, Random random, int index) {
+            out.append("\"n").append(index).append("\":");
+            for (int depth = 0; depth < 48; depth++) {
+                out.append("{\"level").append(depth).append("\":");
+            }
+            out.append(random.nextInt(1000));
+            for (int depth = 0; depth < 48; depth++) {
+                out.append('}');
+            }
+        }
+    },
+    /** A single object with many short properties. Object root */
+    WIDE(true) {
+        @Override
+        void element(StringBuilder out, Random random, int index) {
+            out.append("\"field").append(index).append("\":");
+            switch (index % 4) {
+                case 0:
+                    out.append(random.nextInt());
+                    break;
+                case 1:
+                    out.append('"').append(Long.toHexString(random.nextLong())).append('"');
+                    break;
+                case 2:
+                    out.append(random.nextBoolean());
+                    break;
+                default:
+                    out.append("null");
+            }
+        }
+    },
+    /** Telemetry-style array of longs and doubles. Array root */
+    NUMBERS(false) {
+        @Override
+        void element(StringBuilder out, Random random, int index) {
+            if (index % 2 == 0) {
+                out.append(random.nextLong() >> random.nextInt(60));
+            } else {
+                out.append(random.nextGaussian() * 1e4);
+            }
+        }
+    },
+    /** Array of strings full of escape sequences and non-ASCII code points. Array root */
+    ESCAPES(false) {
+        private final String[] fragments = {"plain", "\\\"quoted\\\"", "back\\\\slash", "line\\nbreak", "tab\\t",
+                "caf\\u00e9", "\\ud83d\\ude00", "café", "日本", "slash\\/"};
+
+        @Override
+        void element(StringBuilder out, Random random, int index) {
+            out.append('"');
+            for (int i = 0; i < 6; i++) {
+                out.append(fragments[random.nextInt(fragments.length)]).append(' ');
+            }
+            out.append('"');
+        }
+    },
+    /** Array of small API-style records mixing every value type. Array root */
+    RECORDS(false) {
+        @Override
+        void element(StringBuilder out, Random random, int index) {
+            out.append("{\"id\":").append(index)
+                    .append(",\"name\":\"user").append(random.nextInt(100000)).append('"')
+                    .append(",\"active\":").append(random.nextBoolean())
+                    .append(",\"score\":").append(random.nextDouble() * 100)
+                    .append(",\"tags\":[\"a\",\"b\",\"c\"]")
+                    .append(",\"address\":{\"city\":\"Vancouver\",\"zip\":null}}");
+        }
+    };
+
+    private final boolean objectRoot;
+
+    Corpus(boolean objectRoot) {
+        this.objectRoot = objectRoot;
+    }
+
+    public boolean isObjectRoot() {
+        return objectRoot;
+    }
+
+    /**
+     * Writes the index-th element of the root container. Object shapes write a whole "key":value pair
+     */
+    abstract void element(StringBuilder out, Random random, int index);
+
+    /**
+     * @param targetBytes approximate length of the generated document. At least one element is always written
+     * @return a JSON document of this shape
+     */
+    public String generate(int targetBytes) {
+        Random random = new Random(0x5eed + ordinal());
+        StringBuilder out = new StringBuilder(targetBytes + 1024);
+        out.append(objectRoot ? '{' : '[');
+        int index = 0;
+        do {
+            if (index > 0) {
+                out.append(',');
+            }
+            element(out, random, index++);
+        } while (out.length() < targetBytes);
+        out.append(objectRoot ? '}' : ']');
+        return out.toString();
+    }
+
+    /**
+     * Parses sizes such as "1KB", "100KB" or "10MB"
+     */
+    public static int bytes(String size) {
+        if (size.endsWith("MB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024 * 1024;
+        } else if (size.endsWith("KB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024;
+        }
+        return Integer.parseInt(size);
+    }
+}
@@ -0,0 +1,24 @@
+package ca.fuzzlesoft.bench;
+
+import ca.fuzzlesoft.JsonDocument;
+import ca.fuzzlesoft.JsonParse;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Retained heap of each shape of document, as maps and lists and as a {@link JsonDocument}. Run with
+ * {@code java -cp target/benchmarks.jar ca.fuzzlesoft.bench.Footprint [size]}
+ */
+public class Footprint {
+
+    public static void main(String[] args) {
+        String size = args.length > 0 ? args[0] : "1MB";
+        System.out.printf("%-8s %12s %12s %12s %8s%n", "shape", "json chars", "maps/lists", "document", "ratio");
+        for (Corpus shape : Corpus.values()) {
+            String json = shape.generate(Corpus.bytes(size));
+            long parsed = GraphLayout.parseInstance(JsonParse.parse(json)).totalSize();
+            long document = GraphLayout.parseInstance(JsonParse.document(json)).totalSize();
+            System.out.printf("%-8s %12d %12d %12d %7.1fx%n", shape, json.length(), parsed, document,
+                    (double) parsed / document);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package ca.fuzzlesoft.bench;
+
+import ca.fuzzlesoft.ContainerFactory;
+import ca.fuzzlesoft.JsonParse;
+import ca.fuzzlesoft.JsonParseException;
+import ca.fuzzlesoft.JsonPushParser;
+import ca.fuzzlesoft.JsonSelector;
+import ca.fuzzlesoft.KeyCache;
+import ca.fuzzlesoft.ParseLimits;
+import ca.fuzzlesoft.ParseOptions;
+import ca.fuzzlesoft.ShapeCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the public parsing entry points of {@link JsonParse} over the generated {@link Corpus}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("unchecked")
+public class JsonParseBenchmark {
+
+    private static final ParseOptions PRIMITIVE_ARRAYS = ParseOptions.DEFAULT.withPrimitiveArrays(true);
+    private static final ParseOptions CACHED_KEYS = ParseOptions.DEFAULT.withKeyCache(new KeyCache());
+    private static final ParseOptions COMPACT = ParseOptions.DEFAULT.withContainerFactory(ContainerFactory.compact());
+    private static final ParseOptions PRESIZED =
+            ParseOptions.DEFAULT.withContainerFactory(ContainerFactory.presized());
+    private static final ParseOptions SHAPED = ParseOptions.DEFAULT.withShapeCache(new ShapeCache());
+    private static final ParseOptions LAZY = ParseOptions.DEFAULT.withLazy(true);
+    private static final ParseOptions LIMITED = ParseOptions.DEFAULT.withLimits(ParseLimits.DEFAULT);
+    private static final JsonSelector RECORD_IDS = JsonSelector.compile("<root>.[*].id");
+    private static final int PUSHED_CHUNK = 4096;
+    private static final ParseOptions QUIET = ParseOptions.DEFAULT.withStackTraces(false);
+    private static final String INVALID =
+            "{\"user\": {\"id\": 42, \"roles\": [\"admin\", \"ops\"], \"active\": tru}, \"items\": []}";
+
+    @Benchmark
+    public Object parse(Payload.Any payload) {
+        return JsonParse.parse(payload.json);
+    }
+
+    @Benchmark
+    public Object parseBytes(Payload.Any payload) {
+        return JsonParse.parse(payload.utf8, 0, payload.utf8.length);
+    }
+
+    /**
+     * {@link #parse}, checking every {@link ParseLimits#DEFAULT} limit on the way
+     */
+    @Benchmark
+    public Object parseLimited(Payload.Any payload) {
+        return JsonParse.parse(payload.json, LIMITED);
+    }
+
+    /**
+     * {@link #parseBytes}, checking every {@link ParseLimits#DEFAULT} limit on the way
+     */
+    @Benchmark
+    public Object parseBytesLimited(Payload.Any payload) {
+        return JsonParse.parse(payload.utf8, 0, payload.utf8.length, LIMITED);
+    }
+
+    /**
+     * {@link #parseBytes}, pushed in 4KB chunks as if arriving from a socket
+     */
+    @Benchmark
+    public Object parseBytesPushed(Payload.Any payload) {
+        JsonPushParser parser = new JsonPushParser();
+        for (int offset = 0; offset < payload.utf8.length; offset += PUSHED_CHUNK) {
+            parser.feed(payload.utf8, offset, Math.min(PUSHED_CHUNK, payload.utf8.length - offset));
+        }
+        return parser.endOfInput();
+    }
+
+    /**
+     * What callers holding UTF-8 bytes had to do before {@link #parseBytes}
+     */
+    @Benchmark
+    public Object parseDecodedBytes(Payload.Any payload) {
+        return JsonParse.parse(new String(payload.utf8, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checking the document is valid, compared to {@link #parse} building it
+     */
+    @Benchmark
+    public Object validate(Payload.Any payload) {
+        return JsonParse.validate(payload.json);
+    }
+
+    /**
+     * {@link #validate} over UTF-8, compared to {@link #parseBytes}
+     */
+    @Benchmark
+    public Object validateBytes(Payload.Any payload) {
+        return JsonParse.validate(payload.utf8, 0, payload.utf8.length);
+    }
+
+    /**
+     * Turning away a small invalid request, as a service checking untrusted input does all the time
+     */
+    @Benchmark
+    public Object parseInvalid() {
+        try {
+            return JsonParse.parse(INVALID);
+        } catch (JsonParseException e) {
+            return e;
+        }
+    }
+
+    /**
+     * {@link #parseInvalid}, without filling in stack traces
+     */
+    @Benchmark
+    public Object parseInvalidQuietly() {
+        try {
+            return JsonParse.parse(INVALID, QUIET);
+        } catch (JsonParseException e) {
+            return e;
+        }
+    }
+
+    /**
+     * {@link #parseInvalid}, getting the failure back instead of catching it
+     */
+    @Benchmark
+    public Object tryParseInvalid() {
+        return JsonParse.tryParse(INVALID);
+    }
+
+    /**
+     * Picks one field out of every record, compared to {@link #list} building all of them
+     */
+    @Benchmark
+    public Map<String, Object> selectIds(Payload.Records payload) {
+        return RECORD_IDS.select(payload.json);
+    }
+
+    /**
+     * {@link #selectIds} through lazy views, only decoding the ids
+     */
+    @Benchmark
+    public long lazyIds(Payload.Records payload) {
+        long sum = 0;
+        for (Object record : (List<Object>) JsonParse.parse(payload.json, LAZY)) {
+            sum += (Long) ((Map<String, Object>) record).get("id");
+        }
+        return sum;
+    }
+
+    /**
+     * {@link #lazyIds}, decoding everything up front
+     */
+    @Benchmark
+    public long eagerIds(Payload.Records payload) {
+        long sum = 0;
+        for (Object record : JsonParse.list(payload.json)) {
+            sum += (Long) ((Map<String, Object>) record).get("id");
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Map<String, Object> map(Payload.Objects payload) {
+        return JsonParse.map(payload.json);
+    }
+
+    @Benchmark
+    public List<Object> list(Payload.Arrays payload) {
+        return JsonParse.list(payload.json);
+    }
+
+    /**
+     * {@link #list}, with numbers kept unboxed
+     */
+    @Benchmark
+    public Object listPrimitive(Payload.Arrays payload) {
+        return JsonParse.parse(payload.json, PRIMITIVE_ARRAYS);
+    }
+
+    @Benchmark
+    public Object records(Payload.Records payload) {
+        return JsonParse.parse(payload.json);
+    }
+
+    /**
+     * {@link #records}, sharing one instance per property name
+     */
+    @Benchmark
+    public Object recordsKeyCache(Payload.Records payload) {
+        return JsonParse.parse(payload.json, CACHED_KEYS);
+    }
+
+    /**
+     * {@link #records}, with small objects stored as arrays of names and values
+     */
+    @Benchmark
+    public Object recordsCompact(Payload.Records payload) {
+        return JsonParse.parse(payload.json, COMPACT);
+    }
+
+    /**
+     * {@link #records}, with maps and lists created at the size they were last time
+     */
+    @Benchmark
+    public Object recordsPresized(Payload.Records payload) {
+        return JsonParse.parse(payload.json, PRESIZED);
+    }
+
+    /**
+     * {@link #records}, matching property names against the shape of the records parsed before
+     */
+    @Benchmark
+    public Object recordsShaped(Payload.Records payload) {
+        return JsonParse.parse(payload.json, SHAPED);
+    }
+
+    /**
+     * {@link #records} bound straight onto {@link Record}s
+     */
+    @Benchmark
+    public Object recordsBound(Payload.Records payload) {
+        return JsonParse.bind(payload.json, Record[].class);
+    }
+
+    /**
+     * {@link #records} copied into {@link Record}s, what {@link #recordsBound} saves
+     */
+    @Benchmark
+    public Object recordsCopied(Payload.Records payload) {
+        List<Object> list = (List<Object>) JsonParse.parse(payload.json);
+        Record[] records = new Record[list.size()];
+        for (int i = 0; i < records.length; i++) {
+            Map<String, Object> map = (Map<String, Object>) list.get(i);
+            Map<String, Object> address = (Map<String, Object>) map.get("address");
+            Record record = records[i] = new Record();
+            record.id = (Long) map.get("id");
+            record.name = (String) map.get("name");
+            record.active = (Boolean) map.get("active");
+            record.score = (Double) map.get("score");
+            record.tags = (List<String>) (List<?>) map.get("tags");
+            record.address = new Address();
+            record.address.city = (String) address.get("city");
+            record.address.zip = (String) address.get("zip");
+        }
+        return records;
+    }
+
+    /**
+     * {@link #records}, with the elements of the root array parsed on every core
+     */
+    @Benchmark
+    public Object recordsParallel(Payload.Records payload) {
+        return JsonParse.parse(payload.json, ParseOptions.DEFAULT, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * One element of {@link Corpus#RECORDS}
+     */
+    public static class Record {
+        long id;
+        String name;
+        boolean active;
+        double score;
+        List<String> tags;
+        Address address;
+    }
+
+    public static class Address {
+        String city;
+        String zip;
+    }
+}
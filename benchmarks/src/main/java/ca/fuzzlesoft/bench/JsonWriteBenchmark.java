@@ -0,0 +1,47 @@
+package ca.fuzzlesoft.bench;
+
+import ca.fuzzlesoft.JsonWrite;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JsonWrite} writing the generated {@link Corpus} back out, after it's been parsed.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonWriteBenchmark {
+
+    /**
+     * Stream that's emptied for each write but keeps its array, so that only writing is measured
+     */
+    @State(Scope.Thread)
+    public static class Sink {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    }
+
+    @Benchmark
+    public Object write(Payload.Parsed payload) {
+        return JsonWrite.toString(payload.value);
+    }
+
+    @Benchmark
+    public Object writeBytes(Payload.Parsed payload, Sink sink) throws IOException {
+        sink.out.reset();
+        JsonWrite.writeTo(payload.value, sink.out);
+        return sink.out;
+    }
+}
@@ -0,0 +1,99 @@
+package ca.fuzzlesoft.bench;
+
+import ca.fuzzlesoft.JsonParse;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generated documents, one per shape and size. Shapes are split by root type so that {@code JsonParse.map} and
+ * {@code JsonParse.list} can each be measured on documents they accept.
+ */
+public class Payload {
+
+    @State(Scope.Benchmark)
+    public static class Any {
+        @Param({"DEEP", "WIDE", "NUMBERS", "ESCAPES", "RECORDS"})
+        public Corpus shape;
+
+        @Param({"1KB", "100KB", "10MB"})
+        public String size;
+
+        public String json;
+        public byte[] utf8;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            json = shape.generate(Corpus.bytes(size));
+            utf8 = json.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Objects {
+        @Param({"DEEP", "WIDE"})
+        public Corpus shape;
+
+        @Param({"1KB", "100KB", "10MB"})
+        public String size;
+
+        public String json;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            json = shape.generate(Corpus.bytes(size));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Arrays {
+        @Param({"NUMBERS", "ESCAPES", "RECORDS"})
+        public Corpus shape;
+
+        @Param({"1KB", "100KB", "10MB"})
+        public String size;
+
+        public String json;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            json = shape.generate(Corpus.bytes(size));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Records {
+        @Param({"1KB", "100KB", "10MB"})
+        public String size;
+
+        public String json;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            json = Corpus.RECORDS.generate(Corpus.bytes(size));
+        }
+    }
+
+    /**
+     * {@link Any}, already parsed, for measuring writing
+     */
+    @State(Scope.Benchmark)
+    public static class Parsed {
+        @Param({"DEEP", "WIDE", "NUMBERS", "ESCAPES", "RECORDS"})
+        public Corpus shape;
+
+        @Param({"1KB", "100KB", "10MB"})
+        public String size;
+
+        public Object value;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            value = JsonParse.parse(shape.generate(Corpus.bytes(size)));
+        }
+    }
+}
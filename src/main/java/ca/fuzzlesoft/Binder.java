@@ -0,0 +1,666 @@
+package ca.fuzzlesoft;
+
+import ca.fuzzlesoft.JsonReader.Token;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Binds JSON straight onto objects, reading a {@link JsonReader}'s tokens and setting each field as soon as its value
+ * has been read, so no {@link Map} is built along the way. What to do with each class is worked out once, the fields
+ * being set through {@link MethodHandle}s rather than reflection.
+ *
+ * <p>Objects are bound onto classes with a no-argument constructor (of any visibility), by setting the fields named
+ * the same as their properties. Static, transient and final fields are left alone, as are properties without a
+ * field. Fields can be:</p>
+ * <ul>
+ *     <li>{@code String}, {@code boolean}, {@code int}, {@code long}, {@code short}, {@code byte}, {@code double},
+ *     {@code float}, their boxes, and {@code Number}</li>
+ *     <li>enums, bound from the names of their constants</li>
+ *     <li>arrays, {@link Collection}s and {@link Map}s with {@code String} keys, of anything here</li>
+ *     <li>other classes, bound the same way</li>
+ *     <li>{@code Object}, which gets the same {@link Map}s and {@link List}s that {@link JsonParse#parse} returns</li>
+ * </ul>
+ *
+ * <p>Objects and arrays being bound are kept on a stack of {@link Frame}s rather than Java's own, so that deeply
+ * nested input can be bound as deep as {@link JsonParse#parse} goes, or as the reader's {@link ParseLimits} allow.</p>
+ */
+final class Binder {
+
+    private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>() {
+        @Override
+        protected Binding computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+
+    private Binder() {}
+
+    /**
+     * @return the root value of reader, bound onto type
+     * @throws IllegalArgumentException if type can't be bound onto
+     */
+    static Object bind(JsonReader reader, Class<?> type) {
+        Binding binding = BINDINGS.get(type);
+        reader.nextToken();
+        ArrayDeque<Frame> frames = new ArrayDeque<>();
+        while (true) {
+            // The reader is at the token that starts a value for binding
+            Object value;
+            Frame frame = null;
+            if (reader.getToken() == Token.NULL) {
+                if (binding.primitive) {
+                    throw binding.mismatch(reader);
+                }
+                value = null;
+            } else if (binding instanceof ContainerBinding
+                    && (frame = ((ContainerBinding) binding).open(reader)) != null) {
+                frames.push(frame);
+                value = null;
+            } else {
+                value = binding.readValue(reader);
+            }
+
+            // Hand the value to the container it's in, until one has another value to come
+            while (true) {
+                if (frame == null) {
+                    frame = frames.peek();
+                    if (frame == null) {
+                        return value;
+                    }
+                    frame.binding.add(frame, value);
+                }
+                binding = frame.binding.next(reader, frame);
+                if (binding != null) {
+                    break;
+                }
+                frames.pop();
+                value = frame.binding.close(frame);
+                frame = null;
+            }
+        }
+    }
+
+    /**
+     * How to bind a value onto a type
+     */
+    abstract static class Binding {
+        private final String description;
+        private final boolean primitive;
+
+        Binding(String description, boolean primitive) {
+            this.description = description;
+            this.primitive = primitive;
+        }
+
+        /**
+         * @param reader reader at the token that is the value, which isn't null, an object or an array
+         */
+        Object readValue(JsonReader reader) {
+            throw mismatch(reader);
+        }
+
+        JsonParseException mismatch(JsonReader reader) {
+            return reader.valueError("expected " + description + ", but was " + describe(reader.getToken()));
+        }
+    }
+
+    /**
+     * How to bind an object or array, one value at a time
+     */
+    abstract static class ContainerBinding extends Binding {
+
+        ContainerBinding(String description) {
+            super(description, false);
+        }
+
+        /**
+         * @param reader reader at the token that starts the value
+         * @return a frame to bind the object or array into, or null if the value is a scalar for
+         * {@link #readValue(JsonReader)}
+         */
+        abstract Frame open(JsonReader reader);
+
+        /**
+         * Moves the reader on to the next value in frame's object or array
+         * @return how to bind that value, or null if the object or array has ended instead
+         */
+        abstract Binding next(JsonReader reader, Frame frame);
+
+        /**
+         * @param value the value {@link #next(JsonReader, Frame)} last moved on to, bound
+         */
+        abstract void add(Frame frame, Object value);
+
+        /**
+         * @return what frame was bound into, finished
+         */
+        Object close(Frame frame) {
+            return frame.container;
+        }
+    }
+
+    /**
+     * An object or array part way through being bound
+     */
+    static final class Frame {
+        final ContainerBinding binding;
+        final Object container;
+        Object key; // The name or property that the next value goes into, within an object
+
+        Frame(ContainerBinding binding, Object container) {
+            this.binding = binding;
+            this.container = container;
+        }
+    }
+
+    private static Binding of(Type type) {
+        if (type instanceof Class) {
+            return BINDINGS.get((Class<?>) type);
+        } else if (type instanceof ParameterizedType) {
+            Class<?> raw = (Class<?>) ((ParameterizedType) type).getRawType();
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (Collection.class.isAssignableFrom(raw) || raw == Iterable.class) {
+                return new CollectionBinding(describe(type), raw, of(arguments[0]));
+            } else if (Map.class.isAssignableFrom(raw)) {
+                return new MapBinding(describe(type), raw, arguments[0], of(arguments[1]));
+            }
+            return BINDINGS.get(raw); // Type arguments of other classes aren't followed
+        } else if (type instanceof GenericArrayType) {
+            Binding element = of(((GenericArrayType) type).getGenericComponentType());
+            return new ArrayBinding(describe(type), raw(((GenericArrayType) type).getGenericComponentType()), element);
+        }
+        return of(raw(type));
+    }
+
+    private static Binding create(Class<?> type) {
+        if (type == String.class) {
+            return new Binding("String", false) {
+                @Override
+                Object readValue(JsonReader reader) {
+                    if (reader.getToken() != Token.STRING) {
+                        throw mismatch(reader);
+                    }
+                    return reader.getString();
+                }
+            };
+        } else if (type == boolean.class || type == Boolean.class) {
+            return new Binding(type.getSimpleName(), type.isPrimitive()) {
+                @Override
+                Object readValue(JsonReader reader) {
+                    if (reader.getToken() != Token.BOOLEAN) {
+                        throw mismatch(reader);
+                    }
+                    return reader.getBoolean();
+                }
+            };
+        } else if (type == long.class || type == Long.class) {
+            return new IntegerBinding(type, Long.MIN_VALUE, Long.MAX_VALUE);
+        } else if (type == int.class || type == Integer.class) {
+            return new IntegerBinding(type, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        } else if (type == short.class || type == Short.class) {
+            return new IntegerBinding(type, Short.MIN_VALUE, Short.MAX_VALUE);
+        } else if (type == byte.class || type == Byte.class) {
+            return new IntegerBinding(type, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        } else if (type == double.class || type == Double.class || type == float.class || type == Float.class
+                || type == Number.class) {
+            final boolean single = type == float.class || type == Float.class;
+            final boolean any = type == Number.class;
+            return new Binding(type.getSimpleName(), type.isPrimitive()) {
+                @Override
+                Object readValue(JsonReader reader) {
+                    if (reader.getToken() != Token.NUMBER) {
+                        throw mismatch(reader);
+                    }
+                    return any ? reader.getNumber() : single ? (Object) (float) reader.getDouble() : reader.getDouble();
+                }
+            };
+        } else if (type == Object.class) {
+            return new AnyBinding();
+        } else if (type.isEnum()) {
+            return new EnumBinding(type);
+        } else if (type.isArray()) {
+            return new ArrayBinding(describe(type), type.getComponentType(), of(type.getComponentType()));
+        } else if (Collection.class.isAssignableFrom(type) || type == Iterable.class) {
+            return new CollectionBinding(type.getSimpleName(), type, of(Object.class));
+        } else if (Map.class.isAssignableFrom(type)) {
+            return new MapBinding(type.getSimpleName(), type, String.class, of(Object.class));
+        } else if (type.isPrimitive() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalArgumentException("Can't bind to " + type.getName());
+        }
+        return new ObjectBinding(type);
+    }
+
+    private static final class IntegerBinding extends Binding {
+        private final Class<?> type;
+        private final long min, max;
+
+        IntegerBinding(Class<?> type, long min, long max) {
+            super(type.getSimpleName(), type.isPrimitive());
+            this.type = type;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        Object readValue(JsonReader reader) {
+            if (reader.getToken() != Token.NUMBER) {
+                throw mismatch(reader);
+            }
+            Number number = reader.getNumber();
+            long value = number.longValue();
+            if (number instanceof Double && value != number.doubleValue()) {
+                throw reader.valueError("expected " + type.getSimpleName() + ", but was " + number);
+            } else if (value < min || value > max) {
+                throw reader.valueError(number + " is out of range for " + type.getSimpleName());
+            }
+
+            if (type == long.class || type == Long.class) {
+                return number instanceof Long ? number : value;
+            } else if (type == int.class || type == Integer.class) {
+                return (int) value;
+            } else if (type == short.class || type == Short.class) {
+                return (short) value;
+            }
+            return (byte) value;
+        }
+    }
+
+    private static final class EnumBinding extends Binding {
+        private final Map<String, Object> constants = new HashMap<>();
+
+        EnumBinding(Class<?> type) {
+            super(type.getSimpleName(), false);
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name(), constant);
+            }
+        }
+
+        @Override
+        Object readValue(JsonReader reader) {
+            if (reader.getToken() != Token.STRING) {
+                throw mismatch(reader);
+            }
+            Object constant = constants.get(reader.getString());
+            if (constant == null) {
+                throw reader.valueError("\"" + reader.getString() + "\" isn't one of " + constants.keySet());
+            }
+            return constant;
+        }
+    }
+
+    /**
+     * Builds what {@link JsonParse#parse(String)} would
+     */
+    private static final class AnyBinding extends ContainerBinding {
+        AnyBinding() {
+            super("Object");
+        }
+
+        @Override
+        Frame open(JsonReader reader) {
+            switch (reader.getToken()) {
+                case START_OBJECT:
+                    return new Frame(this, new HashMap<String, Object>());
+                case START_ARRAY:
+                    return new Frame(this, new ArrayList<>());
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        Object readValue(JsonReader reader) {
+            switch (reader.getToken()) {
+                case STRING:
+                    return reader.getString();
+                case NUMBER:
+                    return reader.getNumber();
+                default:
+                    return reader.getBoolean();
+            }
+        }
+
+        @Override
+        Binding next(JsonReader reader, Frame frame) {
+            return frame.container instanceof Map ? nextProperty(reader, frame, this) : nextElement(reader, this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void add(Frame frame, Object value) {
+            if (frame.container instanceof Map) {
+                ((Map<String, Object>) frame.container).put((String) frame.key, value);
+            } else {
+                ((List<Object>) frame.container).add(value);
+            }
+        }
+    }
+
+    private static final class ArrayBinding extends ContainerBinding {
+        private final Class<?> component;
+        private final Binding element;
+
+        ArrayBinding(String description, Class<?> component, Binding element) {
+            super(description);
+            this.component = component;
+            this.element = element;
+        }
+
+        @Override
+        Frame open(JsonReader reader) {
+            if (reader.getToken() != Token.START_ARRAY) {
+                throw mismatch(reader);
+            }
+            return new Frame(this, new ArrayList<>());
+        }
+
+        @Override
+        Binding next(JsonReader reader, Frame frame) {
+            return nextElement(reader, element);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void add(Frame frame, Object value) {
+            ((List<Object>) frame.container).add(value);
+        }
+
+        @Override
+        Object close(Frame frame) {
+            List<?> elements = (List<?>) frame.container;
+            Object array = Array.newInstance(component, elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                Array.set(array, i, elements.get(i)); // Unboxes into primitive arrays
+            }
+            return array;
+        }
+    }
+
+    private static final class CollectionBinding extends ContainerBinding {
+        private final MethodHandle constructor;
+        private final Binding element;
+
+        CollectionBinding(String description, Class<?> type, Binding element) {
+            super(description);
+            Class<?> implementation = type;
+            if (type.isAssignableFrom(ArrayList.class)) {
+                implementation = ArrayList.class;
+            } else if (type.isAssignableFrom(LinkedHashSet.class)) {
+                implementation = LinkedHashSet.class;
+            } else if (type == SortedSet.class || type == NavigableSet.class) {
+                implementation = TreeSet.class;
+            } else if (type.isAssignableFrom(ArrayDeque.class) && Queue.class.isAssignableFrom(type)) {
+                implementation = ArrayDeque.class;
+            }
+            this.constructor = constructor(implementation);
+            this.element = element;
+        }
+
+        @Override
+        Frame open(JsonReader reader) {
+            if (reader.getToken() != Token.START_ARRAY) {
+                throw mismatch(reader);
+            }
+            return new Frame(this, construct(constructor));
+        }
+
+        @Override
+        Binding next(JsonReader reader, Frame frame) {
+            return nextElement(reader, element);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void add(Frame frame, Object value) {
+            ((Collection<Object>) frame.container).add(value);
+        }
+    }
+
+    private static final class MapBinding extends ContainerBinding {
+        private final MethodHandle constructor;
+        private final Binding value;
+
+        MapBinding(String description, Class<?> type, Type key, Binding value) {
+            super(description);
+            if (key != String.class && key != Object.class && key != CharSequence.class) {
+                throw new IllegalArgumentException("Can't bind to " + description + ", keys have to be strings");
+            }
+            Class<?> implementation = type;
+            if (type.isAssignableFrom(HashMap.class)) {
+                implementation = HashMap.class;
+            } else if (type == SortedMap.class || type == NavigableMap.class) {
+                implementation = TreeMap.class;
+            } else if (type == ConcurrentMap.class) {
+                implementation = ConcurrentHashMap.class;
+            }
+            this.constructor = constructor(implementation);
+            this.value = value;
+        }
+
+        @Override
+        Frame open(JsonReader reader) {
+            if (reader.getToken() != Token.START_OBJECT) {
+                throw mismatch(reader);
+            }
+            return new Frame(this, construct(constructor));
+        }
+
+        @Override
+        Binding next(JsonReader reader, Frame frame) {
+            return nextProperty(reader, frame, value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void add(Frame frame, Object value) {
+            ((Map<String, Object>) frame.container).put((String) frame.key, value);
+        }
+    }
+
+    private static final class ObjectBinding extends ContainerBinding {
+        private final MethodHandle constructor;
+        private final Map<String, Property> properties = new HashMap<>();
+
+        ObjectBinding(Class<?> type) {
+            super(type.getSimpleName());
+            this.constructor = constructor(type);
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers)
+                            || field.isSynthetic() || properties.containsKey(field.getName())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    try {
+                        MethodHandle setter = MethodHandles.lookup().unreflectSetter(field).asType(SETTER);
+                        properties.put(field.getName(), new Property(field.getGenericType(), setter));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalArgumentException("Can't bind to " + field, e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        Frame open(JsonReader reader) {
+            if (reader.getToken() != Token.START_OBJECT) {
+                throw mismatch(reader);
+            }
+            return new Frame(this, construct(constructor));
+        }
+
+        @Override
+        Binding next(JsonReader reader, Frame frame) {
+            while (reader.nextToken() == Token.NAME) {
+                Property property = properties.get(reader.getName());
+                if (property == null) {
+                    reader.skipValue();
+                    continue;
+                }
+                frame.key = property;
+                reader.nextToken();
+                return property.binding();
+            }
+            return null;
+        }
+
+        @Override
+        void add(Frame frame, Object value) {
+            try {
+                ((Property) frame.key).setter.invokeExact(frame.container, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    private static final class Property {
+        private final Type type;
+        final MethodHandle setter; // (Object target, Object value) void
+        private volatile Binding binding; // Looked up on first use, as classes may refer to themselves
+
+        Property(Type type, MethodHandle setter) {
+            this.type = type;
+            this.setter = setter;
+        }
+
+        Binding binding() {
+            Binding binding = this.binding;
+            if (binding == null) {
+                binding = this.binding = of(type);
+            }
+            return binding;
+        }
+    }
+
+    /**
+     * Moves reader on to the next element of an array
+     * @return element, or null if the array has ended instead
+     */
+    private static Binding nextElement(JsonReader reader, Binding element) {
+        return reader.nextToken() != Token.END_ARRAY ? element : null;
+    }
+
+    /**
+     * Moves reader on to the value of the next property of an object, keeping its name in frame
+     * @return value, or null if the object has ended instead
+     */
+    private static Binding nextProperty(JsonReader reader, Frame frame, Binding value) {
+        if (reader.nextToken() != Token.NAME) {
+            return null;
+        }
+        frame.key = reader.getName();
+        reader.nextToken();
+        return value;
+    }
+
+    /**
+     * @return a handle to type's no-argument constructor, typed () Object
+     */
+    private static MethodHandle constructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Can't bind to " + type.getName()
+                    + ", it needs a constructor without arguments", e);
+        }
+    }
+
+    private static Object construct(MethodHandle constructor) {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IllegalStateException(t);
+    }
+
+    private static Class<?> raw(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(raw(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return raw(((WildcardType) type).getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable) {
+            return raw(((TypeVariable<?>) type).getBounds()[0]);
+        }
+        throw new IllegalArgumentException("Can't bind to " + type);
+    }
+
+    private static String describe(Type type) {
+        if (type instanceof Class) {
+            return ((Class<?>) type).getSimpleName();
+        } else if (type instanceof ParameterizedType) {
+            StringBuilder description = new StringBuilder(describe(((ParameterizedType) type).getRawType()));
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            for (int i = 0; i < arguments.length; i++) {
+                description.append(i == 0 ? "<" : ", ").append(describe(arguments[i]));
+            }
+            return description.append('>').toString();
+        } else if (type instanceof GenericArrayType) {
+            return describe(((GenericArrayType) type).getGenericComponentType()) + "[]";
+        }
+        return type.toString();
+    }
+
+    private static String describe(Token token) {
+        switch (token) {
+            case START_OBJECT:
+                return "an object";
+            case START_ARRAY:
+                return "an array";
+            case STRING:
+                return "a string";
+            case NUMBER:
+                return "a number";
+            case BOOLEAN:
+                return "a boolean";
+            default:
+                return "null";
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ca.fuzzlesoft;
+
+import java.nio.charset.Charset;
+
+/**
+ * {@link Source} over UTF-8 encoded bytes. Structural characters are always single bytes in UTF-8 and never occur
+ * within a multi-byte sequence, so the state machine can run over the raw bytes. Only string contents are decoded,
+ * and only when extracted.
+ */
+class ByteSource extends Source {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    byte[] buf;
+    int offset;
+    int limit;
+
+    /**
+     * @param buf bytes to parse
+     * @param offset index of the first byte to parse. Becomes index 0 of this source
+     * @param length number of bytes to parse
+     */
+    ByteSource(byte[] buf, int offset, int length) {
+        reset(buf, offset, length);
+    }
+
+    /**
+     * Points this source at other input, so that a {@link JsonParser} can keep using it
+     * @see #ByteSource(byte[], int, int)
+     */
+    void reset(byte[] buf, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buf.length || offset + length < 0) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + " out of bounds for array of length " + buf.length);
+        }
+        this.buf = buf;
+        this.offset = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Streaming sources start out empty and {@link #fill(int)} on demand
+     */
+    ByteSource(int bufferSize) {
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Loads more input until buf[index] is available. Existing contents of buf keep their indexes, though buf itself
+     * may be replaced with a larger array
+     * @param index index into buf that's needed
+     * @return false if the input ends before index
+     */
+    boolean fill(int index) {
+        return false;
+    }
+
+    @Override
+    String characterAt(int i) {
+        int end = sequenceEnd(this, i);
+        return new String(buf, offset + i, end - i, UTF_8);
+    }
+
+    /**
+     * @param source UTF-8 encoded input
+     * @param i index of the first byte of a character
+     * @return the index just after the character's bytes, or just after as many of them as there are
+     */
+    static int sequenceEnd(Source source, int i) {
+        int lead = source.charAt(i);
+        int end = i + (lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1);
+        int j = i + 1;
+        while (j < end && source.has(j) && (source.charAt(j) & 0xC0) == 0x80) {
+            j++;
+        }
+        return j;
+    }
+
+    @Override
+    String substring(int start, int end) {
+        return new String(buf, offset + start, end - start, ISO_8859_1);
+    }
+
+    @Override
+    Source fork() {
+        return new ByteSource(buf, offset, limit - offset);
+    }
+
+    @Override
+    boolean keepsStart() {
+        return true;
+    }
+
+    @Override
+    int skipString(int fieldStart) {
+        int i = offset + fieldStart + 1;
+        while (true) {
+            if (i >= limit && !fill(i)) {
+                throw new IndexOutOfBoundsException();
+            }
+            byte c = buf[i];
+            if (c == '"') {
+                return i - offset;
+            }
+            i += c == '\\' ? 2 : 1; // Jump over escaped character
+        }
+    }
+
+    @Override
+    int checkString(int fieldStart) {
+        int i = offset + fieldStart + 1;
+        while (true) {
+            if (i >= limit && !fill(i)) {
+                return -1;
+            }
+            byte c = buf[i];
+            if (c == '"') {
+                return i - offset;
+            } else if (c == '\\') {
+                if (i + 1 >= limit && !fill(i + 1)) {
+                    return -1;
+                }
+                if (buf[i + 1] == 'u') {
+                    if (i + 5 >= limit && !fill(i + 5)) {
+                        return -1;
+                    }
+                    for (int j = i + 2; j < i + 6; j++) {
+                        if (Character.digit((char) (buf[j] & 0xFF), 16) < 0) {
+                            return -1;
+                        }
+                    }
+                    i += 4; // Jump over code point
+                }
+                i += 2; // Jump over escape sequence
+            } else {
+                i++;
+            }
+        }
+    }
+
+    @Override
+    String extractString(int fieldStart) {
+        StringBuilder builder = null;
+        int start = offset + fieldStart + 1;
+        int i = start;
+        while (true) {
+            if (i >= limit && !fill(i)) {
+                throw new IndexOutOfBoundsException();
+            }
+            byte b = buf[i];
+            if (b == '"') {
+                stringEnd = i - offset;
+                if (builder == null) {
+                    return new String(buf, start, i - start, UTF_8); // No escapes, nothing to decode
+                }
+                appendUtf8(builder, start, i);
+                return builder.toString();
+            } else if (b == '\\') {
+                if (builder == null) {
+                    builder = scratch();
+                }
+                appendUtf8(builder, start, i);
+                if (i + 1 >= limit && !fill(i + 1)) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                switch (buf[i + 1]) {
+                    case '"':
+                        builder.append('\"');
+                        break;
+                    case '\\':
+                        builder.append('\\');
+                        break;
+                    case '/':
+                        builder.append('/');
+                        break;
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (i + 5 >= limit && !fill(i + 5)) {
+                            throw new IndexOutOfBoundsException();
+                        }
+                        builder.append(decodeHex(i + 2 - offset));
+                        i += 4; // Jump over code point
+                        break;
+                    default:
+                        // Unknown escapes are dropped, along with every byte of the character escaped
+                        i = offset + sequenceEnd(this, i + 1 - offset) - 2;
+                }
+                i += 2; // Jump over escape sequence
+                start = i;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Appends the UTF-8 bytes from start to end of buf, copying ASCII directly instead of through a {@link String}
+     */
+    private void appendUtf8(StringBuilder builder, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] < 0) {
+                builder.append(new String(buf, i, end - i, UTF_8));
+                return;
+            }
+            builder.append((char) buf[i]);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ca.fuzzlesoft;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the {@link Map}s and {@link List}s that objects and arrays are parsed into. Extend it to supply other
+ * implementations, or use one of the factories here, through {@link ParseOptions#withContainerFactory}:
+ *
+ * <pre>
+ * static final ParseOptions ORDERED = ParseOptions.DEFAULT.withContainerFactory(ContainerFactory.ordered());
+ * </pre>
+ *
+ * Containers are filled with {@code put} and {@code add} as they're parsed, then handed to {@link #finishObject} or
+ * {@link #finishArray}, which may return something else to use in their place (such as an immutable copy).
+ *
+ * <p>Each method is given the name of the property that the container is the value of, or null for the outermost
+ * container and the elements of arrays. Factories may be used by several threads at once.</p>
+ */
+public class ContainerFactory {
+
+    /**
+     * {@link HashMap}s and {@link ArrayList}s, the same as parsing without options
+     */
+    public static final ContainerFactory DEFAULT = new ContainerFactory();
+
+    protected ContainerFactory() {}
+
+    /**
+     * @param name name of the property that the object is the value of, or null
+     * @return an empty, mutable map
+     */
+    public Map<String, Object> newObject(String name) {
+        return new HashMap<>();
+    }
+
+    /**
+     * @param name name of the property that the array is the value of, or null
+     * @return an empty, mutable list
+     */
+    public List<Object> newArray(String name) {
+        return new ArrayList<>();
+    }
+
+    /**
+     * @param object all of the object's properties, as created by {@link #newObject(String)}
+     * @return what to use for the object
+     */
+    public Object finishObject(String name, Map<String, Object> object) {
+        return object;
+    }
+
+    /**
+     * @param array all of the array's elements, as created by {@link #newArray(String)} (or a {@link NumberList} if
+     *              {@link ParseOptions#withPrimitiveArrays(boolean)} is set)
+     * @return what to use for the array
+     */
+    public Object finishArray(String name, List<Object> array) {
+        return array;
+    }
+
+    /**
+     * @return a factory of {@link LinkedHashMap}s, so that properties keep the order they're written in
+     */
+    public static ContainerFactory ordered() {
+        return new ContainerFactory() {
+            @Override
+            public Map<String, Object> newObject(String name) {
+                return new LinkedHashMap<>();
+            }
+        };
+    }
+
+    /**
+     * @return a factory that stores objects of up to {@link CompactMap#MAX_SIZE} properties as two small arrays
+     * (names and values) instead of a hash table, and makes them immutable. Lookups scan the names, which for that
+     * few is about as fast as hashing. Properties keep the order they're written in. Larger objects end up in
+     * {@link HashMap}s
+     */
+    public static ContainerFactory compact() {
+        return new ContainerFactory() {
+            @Override
+            public Map<String, Object> newObject(String name) {
+                return new CompactMap();
+            }
+
+            @Override
+            public Object finishObject(String name, Map<String, Object> object) {
+                CompactMap map = (CompactMap) object;
+                if (map.size() > CompactMap.MAX_SIZE) {
+                    return new HashMap<>(map);
+                }
+                map.freeze();
+                return map;
+            }
+        };
+    }
+
+    /**
+     * @return a factory that remembers how large the last object and array under each property name were, and
+     * creates the next ones with room for that many. Meant to be kept and reused for documents of the same shape, so
+     * that maps don't rehash and lists don't copy their elements as they grow
+     */
+    public static ContainerFactory presized() {
+        return new Presized();
+    }
+
+    private static final class Presized extends ContainerFactory {
+        // Keyed by property name, with "" standing in for null. Only hints, so sharing those is harmless
+        private final Map<String, Integer> objectSizes = new ConcurrentHashMap<>();
+        private final Map<String, Integer> arraySizes = new ConcurrentHashMap<>();
+
+        @Override
+        public Map<String, Object> newObject(String name) {
+            Integer size = objectSizes.get(name == null ? "" : name);
+            return size == null ? new HashMap<String, Object>() : new HashMap<String, Object>(size * 4 / 3 + 1);
+        }
+
+        @Override
+        public List<Object> newArray(String name) {
+            Integer size = arraySizes.get(name == null ? "" : name);
+            return size == null ? new ArrayList<>() : new ArrayList<>(size);
+        }
+
+        @Override
+        public Object finishObject(String name, Map<String, Object> object) {
+            remember(objectSizes, name, object.size());
+            return object;
+        }
+
+        @Override
+        public Object finishArray(String name, List<Object> array) {
+            remember(arraySizes, name, array.size());
+            return array;
+        }
+
+        private static void remember(Map<String, Integer> sizes, String name, int size) {
+            String key = name == null ? "" : name;
+            Integer last = sizes.get(key);
+            if (last == null || last != size) {
+                sizes.put(key, size);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ca.fuzzlesoft;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * {@link ByteSource} that reads UTF-8 from an {@link InputStream} into a window. Input is dropped as soon as the state
+ * machine has moved past it, so the window only grows when a single token doesn't fit
+ */
+final class InputStreamSource extends ByteSource {
+
+    private final InputStream in;
+    private boolean eof;
+    private long dropped; // Bytes released from the start of the window
+
+    InputStreamSource(InputStream in, int bufferSize) {
+        super(bufferSize);
+        this.in = in;
+    }
+
+    @Override
+    boolean fill(int index) {
+        try {
+            while (index >= limit) {
+                if (eof) {
+                    return false;
+                }
+                if (limit == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                int read = in.read(buf, limit, buf.length - limit);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    limit += read;
+                    counted(read);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new ReadException(e);
+        }
+    }
+
+    /**
+     * Only a window of the stream is ever in memory, so there's nothing to hand to another thread
+     */
+    @Override
+    Source fork() {
+        throw new UnsupportedOperationException("InputStreamSource can't be forked");
+    }
+
+    @Override
+    boolean keepsStart() {
+        return false;
+    }
+
+    @Override
+    long offset(int i) {
+        return dropped + i;
+    }
+
+    @Override
+    int release(int i) {
+        if (i < buf.length >> 1) {
+            return i; // Not worth the copy yet
+        }
+        System.arraycopy(buf, i, buf, 0, limit - i);
+        limit -= i;
+        dropped += i;
+        return 0;
+    }
+}
@@ -0,0 +1,375 @@
+package ca.fuzzlesoft;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed document stored flat, for keeping around: a type per node, a {@code long} per node, and every string
+ * (property names included) decoded into one shared {@code char[]}. No object is allocated per value, so it costs a
+ * fraction of what the same {@link Map}s and {@link List}s do.
+ *
+ * <p>Nodes are numbered in document order, starting with {@link #root()}. Each property name has a node of its own,
+ * right before the node of its value, which is what {@link #name(int)} relies on.</p>
+ *
+ * <pre>
+ * JsonDocument document = JsonParse.document(json);
+ * long id = document.getLong(document.find("&lt;root&gt;.user.id"));
+ * for (int item : document.children(document.find("&lt;root&gt;.items"))) {
+ *     handle(document.getString(document.get(item, "sku")));
+ * }
+ * </pre>
+ *
+ * Immutable and thread safe.
+ */
+public final class JsonDocument {
+
+    /**
+     * Returned by lookups that don't find anything
+     */
+    public static final int NOT_FOUND = -1;
+
+    public enum Type {
+        OBJECT,
+        ARRAY,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL
+    }
+
+    private static final byte OBJECT = Tape.OBJECT, ARRAY = Tape.ARRAY, STRING = Tape.STRING,
+            INTEGER = Tape.INTEGER, DECIMAL = Tape.DECIMAL, TRUE = Tape.TRUE, FALSE = Tape.FALSE, NULL = Tape.NULL;
+    private static final byte NAME = 8;
+
+    private final byte[] types;
+    // Containers: size << 32 | node after the last descendant. Strings: offset into chars << 32 | length.
+    // Integers: the value. Decimals: the value's bits
+    private final long[] values;
+    private final char[] chars;
+
+    private JsonDocument(byte[] types, long[] values, char[] chars) {
+        this.types = types;
+        this.values = values;
+        this.chars = chars;
+    }
+
+    /**
+     * @param source input that's only read while building the document
+     * @param options for their limits and whether failures have stack traces
+     */
+    static JsonDocument build(Source source, ParseOptions options) {
+        Tape tape = Tape.build(source, options);
+        if (tape == null) {
+            JsonParse.parse(source, 0, options); // Fails the way it usually does
+            throw new JsonParseException("Provided JSON couldn't be read into a JsonDocument", options.stackTraces);
+        }
+
+        int count = tape.count;
+        byte[] types = Arrays.copyOf(tape.types, count);
+        long[] values = new long[count];
+        char[] chars = new char[64];
+        int length = 0;
+        for (int node = 0; node < count; node++) {
+            switch (types[node]) {
+                case OBJECT:
+                case ARRAY: {
+                    int end = tape.ends[node];
+                    long size = 0;
+                    for (int child = node + 1; child < end; child = tape.next(child)) {
+                        if (types[node] == OBJECT) {
+                            types[child++] = NAME;
+                        }
+                        size++;
+                    }
+                    values[node] = size << 32 | end;
+                    break;
+                }
+                case STRING:
+                case NAME: {
+                    String string = source.extractString(tape.starts[node]);
+                    if (length + string.length() > chars.length) {
+                        chars = Arrays.copyOf(chars, Math.max(length + string.length(), chars.length * 2));
+                    }
+                    string.getChars(0, string.length(), chars, length);
+                    values[node] = (long) length << 32 | string.length();
+                    length += string.length();
+                    break;
+                }
+                case INTEGER:
+                    values[node] = Numbers.decodeLong(source, tape.starts[node], tape.ends[node]);
+                    break;
+                case DECIMAL:
+                    values[node] = Double.doubleToRawLongBits(
+                            Numbers.decodeDouble(source, tape.starts[node], tape.ends[node]));
+                    break;
+            }
+        }
+        return new JsonDocument(types, values, Arrays.copyOf(chars, length));
+    }
+
+    /**
+     * @return the node of the outermost value
+     */
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * @return the number of nodes, property names included
+     */
+    public int nodeCount() {
+        return types.length;
+    }
+
+    public Type type(int node) {
+        switch (types[node]) {
+            case OBJECT:
+                return Type.OBJECT;
+            case ARRAY:
+                return Type.ARRAY;
+            case STRING:
+            case NAME:
+                return Type.STRING;
+            case INTEGER:
+            case DECIMAL:
+                return Type.NUMBER;
+            case TRUE:
+            case FALSE:
+                return Type.BOOLEAN;
+            default:
+                return Type.NULL;
+        }
+    }
+
+    /**
+     * @param path path as shown in {@link JsonParseException}s, such as {@code <root>.items.[0].sku}. Wildcards
+     *             aren't supported
+     * @return the node at path, or {@link #NOT_FOUND}
+     * @throws IllegalArgumentException if path is malformed
+     */
+    public int find(String path) {
+        if (!path.equals("<root>") && !path.startsWith("<root>.")) {
+            throw new IllegalArgumentException("Path \"" + path + "\" doesn't start with <root>");
+        }
+
+        int node = root();
+        if (path.length() > "<root>".length()) {
+            for (String segment : path.substring("<root>.".length()).split("\\.", -1)) {
+                if (segment.isEmpty() || segment.equals("*") || segment.equals("[*]")) {
+                    throw new IllegalArgumentException("Path \"" + path + "\" has an empty or wildcard segment");
+                }
+                if (types[node] == ARRAY && segment.startsWith("[") && segment.endsWith("]")) {
+                    try {
+                        node = get(node, Integer.parseInt(segment.substring(1, segment.length() - 1)));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Path \"" + path + "\" has a malformed index", e);
+                    }
+                } else {
+                    node = get(node, segment);
+                }
+                if (node == NOT_FOUND) {
+                    return NOT_FOUND;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @return the value at path, as {@link #getValue(int)} builds it, or null if there's nothing there
+     * @see #find(String)
+     */
+    public Object get(String path) {
+        int node = find(path);
+        return node == NOT_FOUND ? null : getValue(node);
+    }
+
+    /**
+     * Looks through the properties of an object, without decoding anything
+     * @return the node of the value of the property called name (the last one, if it's repeated), or
+     * {@link #NOT_FOUND} if there isn't one or node isn't an object
+     */
+    public int get(int node, String name) {
+        if (types[node] != OBJECT) {
+            return NOT_FOUND;
+        }
+        int found = NOT_FOUND;
+        for (int child = node + 1, end = end(node); child < end; child = next(child + 1)) {
+            if (nameEquals(child, name)) {
+                found = child + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Steps over the elements of an array before index. Use {@link #children(int)} to go through all of them
+     * @return the node of the element at index, or {@link #NOT_FOUND} if there isn't one or node isn't an array
+     */
+    public int get(int node, int index) {
+        if (types[node] != ARRAY || index < 0 || index >= size(node)) {
+            return NOT_FOUND;
+        }
+        int child = node + 1;
+        for (int i = 0; i < index; i++) {
+            child = next(child);
+        }
+        return child;
+    }
+
+    /**
+     * @return the number of elements of an array or properties of an object (repeated ones included), or 0 for
+     * anything else
+     */
+    public int size(int node) {
+        return types[node] <= ARRAY ? (int) (values[node] >>> 32) : 0;
+    }
+
+    /**
+     * @return the nodes of the elements of an array or the values of an object, in order. Empty for anything else
+     */
+    public int[] children(int node) {
+        int[] children = new int[size(node)];
+        int child = node + 1;
+        for (int i = 0; i < children.length; i++) {
+            if (types[child] == NAME) {
+                child++;
+            }
+            children[i] = child;
+            child = next(child);
+        }
+        return children;
+    }
+
+    /**
+     * @return the name of the property that node is the value of, or null if node isn't within an object
+     */
+    public String name(int node) {
+        return node > 0 && types[node - 1] == NAME ? string(node - 1) : null;
+    }
+
+    /**
+     * @throws ClassCastException if node isn't a string
+     */
+    public String getString(int node) {
+        if (types[node] != STRING && types[node] != NAME) {
+            throw new ClassCastException(wrongType(node, Type.STRING));
+        }
+        return string(node);
+    }
+
+    /**
+     * @return the number, truncated if it isn't an integer
+     * @throws ClassCastException if node isn't a number
+     */
+    public long getLong(int node) {
+        if (types[node] == INTEGER) {
+            return values[node];
+        } else if (types[node] == DECIMAL) {
+            return (long) Double.longBitsToDouble(values[node]);
+        }
+        throw new ClassCastException(wrongType(node, Type.NUMBER));
+    }
+
+    /**
+     * @throws ClassCastException if node isn't a number
+     */
+    public double getDouble(int node) {
+        if (types[node] == INTEGER) {
+            return values[node];
+        } else if (types[node] == DECIMAL) {
+            return Double.longBitsToDouble(values[node]);
+        }
+        throw new ClassCastException(wrongType(node, Type.NUMBER));
+    }
+
+    /**
+     * @throws ClassCastException if node isn't a boolean
+     */
+    public boolean getBoolean(int node) {
+        if (types[node] != TRUE && types[node] != FALSE) {
+            throw new ClassCastException(wrongType(node, Type.BOOLEAN));
+        }
+        return types[node] == TRUE;
+    }
+
+    public boolean isNull(int node) {
+        return types[node] == NULL;
+    }
+
+    /**
+     * @return node as {@link JsonParse#parse(String)} would have returned it, with objects as {@link HashMap}s and
+     * arrays as {@link ArrayList}s
+     */
+    public Object getValue(int node) {
+        switch (types[node]) {
+            case OBJECT: {
+                Map<String, Object> map = new HashMap<>();
+                for (int child = node + 1, end = end(node); child < end; child = next(child + 1)) {
+                    map.put(string(child), getValue(child + 1));
+                }
+                return map;
+            }
+            case ARRAY: {
+                List<Object> list = new ArrayList<>(size(node));
+                for (int child = node + 1, end = end(node); child < end; child = next(child)) {
+                    list.add(getValue(child));
+                }
+                return list;
+            }
+            case STRING:
+            case NAME:
+                return string(node);
+            case INTEGER:
+                return Numbers.box(values[node]);
+            case DECIMAL:
+                return Double.longBitsToDouble(values[node]);
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the whole document as {@link JsonParse#parse(String)} would have returned it
+     */
+    public Object toValue() {
+        return getValue(root());
+    }
+
+    private int end(int node) {
+        return (int) values[node];
+    }
+
+    private int next(int node) {
+        return types[node] <= ARRAY ? end(node) : node + 1;
+    }
+
+    private String string(int node) {
+        return new String(chars, (int) (values[node] >>> 32), (int) values[node]);
+    }
+
+    private boolean nameEquals(int node, String name) {
+        int offset = (int) (values[node] >>> 32);
+        int length = (int) values[node];
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String wrongType(int node, Type expected) {
+        return "Node " + node + " is " + type(node) + ", not " + expected;
+    }
+}
@@ -0,0 +1,309 @@
+package ca.fuzzlesoft;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Newline-delimited JSON (NDJSON, JSON Lines), parsed one line at a time. Input is read in chunks that end on a line
+ * boundary, and if an {@link ExecutorService} is given, chunks are parsed on it in parallel while the next ones are
+ * read. Only a bounded number of chunks are in flight at once, so inputs of any size can be streamed through.
+ *
+ * <pre>
+ * try (JsonLines lines = JsonParse.lines(in, ParseOptions.DEFAULT, pool, true)) {
+ *     for (JsonLines.Line line : lines) {
+ *         if (line.isValid()) {
+ *             handle(line.getValue());
+ *         } else {
+ *             log.warn("Skipping line " + line.getLineNumber(), line.getError());
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * Lines that fail to parse are handed out with their error instead of ending the batch. Blank lines are skipped, and
+ * like {@link JsonParse#parse(String)}, anything after the value on a line is ignored. Like
+ * {@link java.nio.file.DirectoryStream}, it can only be iterated once. Closing it closes the input stream.
+ */
+public final class JsonLines implements Iterable<JsonLines.Line>, Closeable {
+
+    /**
+     * Bytes read per chunk. Chunks grow if a single line doesn't fit
+     */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private final InputStream in;
+    private final ParseOptions options;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int maxPending;
+
+    private final Deque<Future<List<Line>>> pending = new ArrayDeque<>();
+    private final CompletionService<List<Line>> completed;
+    private byte[] leftover = new byte[0]; // Start of a line that didn't fit in the last chunk
+    private long nextLineNumber = 1;
+    private boolean eof, iterated, closed;
+
+    /**
+     * @param executor parses chunks in parallel, or null to parse them on the iterating thread
+     * @param ordered whether lines are handed out in input order. If false, chunks are handed out as they finish
+     * @param chunkSize bytes to read per chunk
+     */
+    JsonLines(InputStream in, ParseOptions options, ExecutorService executor, boolean ordered, int chunkSize) {
+        this.in = in;
+        this.options = options;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxPending = executor == null ? 1 : Runtime.getRuntime().availableProcessors() * 2;
+        this.completed = executor == null || ordered ? null : new ExecutorCompletionService<List<Line>>(executor);
+    }
+
+    /**
+     * A line, and what it parsed to or the reason it couldn't be parsed
+     */
+    public static final class Line {
+        private final long lineNumber;
+        private final Object value;
+        private final JsonParseException error;
+
+        Line(long lineNumber, Object value, JsonParseException error) {
+            this.lineNumber = lineNumber;
+            this.value = value;
+            this.error = error;
+        }
+
+        /**
+         * @return the line's number within the input, starting at 1
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return the parsed value
+         * @throws JsonParseException if the line couldn't be parsed
+         */
+        public Object getValue() {
+            if (error != null) {
+                throw error;
+            }
+            return value;
+        }
+
+        /**
+         * @return why the line couldn't be parsed, or null if it was
+         */
+        public JsonParseException getError() {
+            return error;
+        }
+
+        public boolean isValid() {
+            return error == null;
+        }
+    }
+
+    /**
+     * @return the lines. Reading from the input fails with a {@link JsonParseException}, caused by the
+     * {@link IOException}
+     * @throws IllegalStateException if called more than once
+     */
+    @Override
+    public Iterator<Line> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("JsonLines can only be iterated once");
+        }
+        iterated = true;
+
+        return new Iterator<Line>() {
+            private Iterator<Line> chunk = Collections.<Line>emptyList().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!chunk.hasNext()) {
+                    List<Line> next = nextChunk();
+                    if (next == null) {
+                        return false;
+                    }
+                    chunk = next.iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Line next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunk.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Stops parsing any chunks that are still queued, and closes the input
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Future<List<Line>> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        in.close();
+    }
+
+    /**
+     * @return the lines of the next chunk, or null if there are none left
+     */
+    private List<Line> nextChunk() {
+        if (closed) {
+            return null;
+        }
+        try {
+            if (executor == null) {
+                return eof ? null : readChunk().call();
+            }
+
+            while (!eof && pending.size() < maxPending) {
+                Chunk chunk = readChunk();
+                pending.add(completed == null ? executor.submit(chunk) : completed.submit(chunk));
+            }
+            if (pending.isEmpty()) {
+                return null;
+            }
+            if (completed == null) {
+                return pending.poll().get();
+            }
+            Future<List<Line>> done = completed.take();
+            pending.remove(done);
+            return done.get();
+        } catch (IOException e) {
+            throw new JsonParseException("Failed to read JSON input", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JsonParseException("Interrupted while waiting for lines to be parsed", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new JsonParseException("Failed to parse lines", cause);
+        }
+    }
+
+    /**
+     * Reads up to and including the last newline that fits in a chunk, keeping the rest for the next chunk
+     */
+    private Chunk readChunk() throws IOException {
+        byte[] buf = Arrays.copyOf(leftover, Math.max(chunkSize, leftover.length * 2));
+        int length = leftover.length;
+        int end; // Exclusive end of the chunk
+        while (true) {
+            int read = in.read(buf, length, buf.length - length);
+            if (read < 0) {
+                eof = true;
+                end = length;
+                break;
+            }
+            length += read;
+            if (length == buf.length) {
+                end = lastIndexOf(buf, length) + 1;
+                if (end > 0) {
+                    break;
+                }
+                buf = Arrays.copyOf(buf, buf.length * 2); // Line doesn't fit, make room for it
+            }
+        }
+
+        leftover = Arrays.copyOfRange(buf, end, length);
+        Chunk chunk = new Chunk(buf, end, nextLineNumber, options);
+        for (int i = 0; i < end; i++) {
+            if (buf[i] == '\n') {
+                nextLineNumber++;
+            }
+        }
+        return chunk;
+    }
+
+    private static int lastIndexOf(byte[] buf, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buf[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whole lines of input, parsed by {@link #call()}
+     */
+    private static final class Chunk implements Callable<List<Line>> {
+        private final byte[] buf;
+        private final int end; // Exclusive end of the lines in buf
+        private final long firstLineNumber;
+        private final ParseOptions options;
+
+        Chunk(byte[] buf, int end, long firstLineNumber, ParseOptions options) {
+            this.buf = buf;
+            this.end = end;
+            this.firstLineNumber = firstLineNumber;
+            this.options = options;
+        }
+
+        @Override
+        public List<Line> call() {
+            return parseLines(buf, end, firstLineNumber, options);
+        }
+    }
+
+    /**
+     * @param end exclusive end of the lines in buf
+     * @param lineNumber number of the first line in buf
+     */
+    private static List<Line> parseLines(byte[] buf, int end, long lineNumber, ParseOptions options) {
+        List<Line> lines = new ArrayList<>();
+        for (int start = 0; start < end; start++, lineNumber++) {
+            int lineEnd = start;
+            boolean blank = true;
+            for (; lineEnd < end && buf[lineEnd] != '\n'; lineEnd++) {
+                blank &= Constants.isWhitespace((char) buf[lineEnd]) || buf[lineEnd] == '\r';
+            }
+
+            if (!blank) {
+                try {
+                    ByteSource source = new ByteSource(buf, start, lineEnd - start);
+                    options.limits.checkDocumentLength(lineEnd - start, options.stackTraces);
+                    Object value = options.shapes != null && !options.checksLimits()
+                            ? ShapeParser.parse(source, options)
+                            : JsonParse.parse(source, 0, options);
+                    lines.add(new Line(lineNumber, value, null));
+                } catch (JsonParseException e) {
+                    lines.add(new Line(lineNumber, null, e));
+                }
+            }
+            start = lineEnd;
+        }
+        return lines;
+    }
+}
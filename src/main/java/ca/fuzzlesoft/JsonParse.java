@@ -1,6 +1,13 @@
 package ca.fuzzlesoft;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Parses JSON, converting it into {@link List}s and {@link Map}s. Is thread safe.
@@ -63,31 +70,504 @@ public class JsonParse {
      * @param jsonString parsed
      * @return the contents of jsonString
      */
-    @SuppressWarnings("ConstantConditions")
     public static Object parse(String jsonString) {
-        Stack<State> stateStack = new Stack<>();
+        return parse(jsonString, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses jsonString according to what the outermost structure is
+     * @param jsonString parsed
+     * @param options how to build the result
+     * @return the contents of jsonString
+     */
+    public static Object parse(String jsonString, ParseOptions options) {
+        JsonParser parser = JsonParser.SHARED.acquire();
+        try {
+            return parser.parse(jsonString, options);
+        } finally {
+            JsonParser.SHARED.release(parser);
+        }
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON according to what the outermost structure is. The bytes aren't decoded up front, only
+     * strings (values and property names) are decoded as they're extracted
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @return the contents of the bytes
+     */
+    public static Object parse(byte[] bytes, int offset, int length) {
+        return parse(bytes, offset, length, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON according to what the outermost structure is
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @param options how to build the result
+     * @return the contents of the bytes
+     * @see #parse(byte[], int, int)
+     */
+    public static Object parse(byte[] bytes, int offset, int length, ParseOptions options) {
+        JsonParser parser = JsonParser.SHARED.acquire();
+        try {
+            return parser.parse(bytes, offset, length, options);
+        } finally {
+            JsonParser.SHARED.release(parser);
+        }
+    }
+
+    /**
+     * Parses jsonString without throwing if it isn't valid, for checking a lot of input that may not be. Fails the
+     * same way as {@link #parse(String)}, but hands back the {@link JsonParseException} instead, without a stack trace
+     * @param jsonString parsed
+     * @return the contents of jsonString, or why it couldn't be parsed
+     */
+    public static ParseResult tryParse(String jsonString) {
+        return tryParse(jsonString, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @param jsonString parsed
+     * @param options how to build the result
+     * @return the contents of jsonString, or why it couldn't be parsed
+     * @see #tryParse(String)
+     */
+    public static ParseResult tryParse(String jsonString, ParseOptions options) {
+        JsonParser parser = JsonParser.SHARED.acquire();
+        try {
+            return parser.tryParse(jsonString, options);
+        } finally {
+            JsonParser.SHARED.release(parser);
+        }
+    }
+
+    /**
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @return the contents of the bytes, or why they couldn't be parsed
+     * @see #tryParse(String)
+     */
+    public static ParseResult tryParse(byte[] bytes, int offset, int length) {
+        return tryParse(bytes, offset, length, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @param options how to build the result
+     * @return the contents of the bytes, or why they couldn't be parsed
+     * @see #tryParse(String)
+     */
+    public static ParseResult tryParse(byte[] bytes, int offset, int length, ParseOptions options) {
+        JsonParser parser = JsonParser.SHARED.acquire();
+        try {
+            return parser.tryParse(bytes, offset, length, options);
+        } finally {
+            JsonParser.SHARED.release(parser);
+        }
+    }
+
+    /**
+     * Checks that jsonString is valid JSON without building anything, for passing input on as it is. Accepts exactly
+     * what {@link #parse(String)} does, but allocates nothing unless it's invalid
+     * @param jsonString checked
+     * @return null if jsonString is valid, or else the {@link JsonParseException} that parsing it would throw, with
+     * its offset and path, but without a stack trace
+     */
+    public static JsonParseException validate(String jsonString) {
+        return validate(jsonString, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @param jsonString checked
+     * @param options only its {@link ParseLimits} matter, which are checked the same as when parsing
+     * @return null if jsonString is valid, or else why not
+     * @see #validate(String)
+     */
+    public static JsonParseException validate(String jsonString, ParseOptions options) {
+        JsonParser parser = JsonParser.SHARED.acquire();
+        try {
+            return parser.validate(jsonString, options);
+        } finally {
+            JsonParser.SHARED.release(parser);
+        }
+    }
+
+    /**
+     * @param bytes UTF-8 encoded JSON. Only its structure is checked, not its encoding, the same as when parsing
+     * @param offset index of the first byte to check
+     * @param length number of bytes to check
+     * @return null if the bytes are valid, or else why not
+     * @see #validate(String)
+     */
+    public static JsonParseException validate(byte[] bytes, int offset, int length) {
+        return validate(bytes, offset, length, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to check
+     * @param length number of bytes to check
+     * @param options only its {@link ParseLimits} matter
+     * @return null if the bytes are valid, or else why not
+     * @see #validate(String)
+     */
+    public static JsonParseException validate(byte[] bytes, int offset, int length, ParseOptions options) {
+        JsonParser parser = JsonParser.SHARED.acquire();
+        try {
+            return parser.validate(bytes, offset, length, options);
+        } finally {
+            JsonParser.SHARED.release(parser);
+        }
+    }
+
+    /**
+     * Parses jsonString, parsing the elements in parallel on executor if the outermost structure is an array. Meant for
+     * large arrays of independent records, small arrays are parsed on the calling thread
+     * @param jsonString parsed
+     * @param options how to build the result
+     * @param executor runs the parsing, such as a {@link java.util.concurrent.ForkJoinPool}
+     * @return the contents of jsonString, the same as {@link #parse(String, ParseOptions)}
+     */
+    public static Object parse(String jsonString, ParseOptions options, ExecutorService executor) {
+        options.limits.checkDocumentLength(jsonString.length(), options.stackTraces);
+        return ParallelArray.parse(new StringSource(jsonString), options, executor);
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON, parsing the elements in parallel on executor if the outermost structure is an array
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @param options how to build the result
+     * @param executor runs the parsing, such as a {@link java.util.concurrent.ForkJoinPool}
+     * @return the contents of the bytes, the same as {@link #parse(byte[], int, int, ParseOptions)}
+     * @see #parse(String, ParseOptions, ExecutorService)
+     */
+    public static Object parse(byte[] bytes, int offset, int length, ParseOptions options, ExecutorService executor) {
+        options.limits.checkDocumentLength(length, options.stackTraces);
+        return ParallelArray.parse(new ByteSource(bytes, offset, length), options, executor);
+    }
+
+    /**
+     * Parses the remaining UTF-8 encoded JSON in buffer according to what the outermost structure is. The buffer's
+     * position isn't changed. Direct buffers are copied to the heap first (without being decoded)
+     * @param buffer UTF-8 encoded JSON, between its position and limit
+     * @return the contents of the buffer
+     */
+    public static Object parse(ByteBuffer buffer) {
+        return parse(buffer, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses the remaining UTF-8 encoded JSON in buffer according to what the outermost structure is
+     * @param buffer UTF-8 encoded JSON, between its position and limit
+     * @param options how to build the result
+     * @return the contents of the buffer
+     * @see #parse(ByteBuffer)
+     */
+    public static Object parse(ByteBuffer buffer, ParseOptions options) {
+        if (buffer.hasArray()) {
+            return parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), options);
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return parse(bytes, 0, bytes.length, options);
+    }
+
+    /**
+     * Parses JSON from reader according to what the outermost structure is. Input is read through a small buffer
+     * that's recycled as parsing moves along, so memory use depends on the size of the result rather than the size
+     * of the input. Anything after the outermost structure is ignored, though some of it may have been read. The
+     * reader isn't closed
+     * @param reader JSON to parse
+     * @return the contents of reader
+     * @throws IOException if reader fails
+     */
+    public static Object parse(Reader reader) throws IOException {
+        return parse(reader, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses JSON from reader according to what the outermost structure is
+     * @param reader JSON to parse
+     * @param options how to build the result
+     * @return the contents of reader
+     * @throws IOException if reader fails
+     * @see #parse(Reader)
+     */
+    public static Object parse(Reader reader, ParseOptions options) throws IOException {
+        ReaderSource source = new ReaderSource(reader, Source.STREAM_BUFFER_SIZE);
+        source.maxLength = options.limits.maxDocumentLength;
+        try {
+            return parse(source, 0, options);
+        } catch (Source.ReadException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON from in according to what the outermost structure is. Input is read through a small
+     * buffer that's recycled as parsing moves along, so memory use depends on the size of the result rather than the
+     * size of the input. Anything after the outermost structure is ignored, though some of it may have been read.
+     * The stream isn't closed
+     * @param in UTF-8 encoded JSON to parse
+     * @return the contents of in
+     * @throws IOException if in fails
+     */
+    public static Object parse(InputStream in) throws IOException {
+        return parse(in, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON from in according to what the outermost structure is
+     * @param in UTF-8 encoded JSON to parse
+     * @param options how to build the result
+     * @return the contents of in
+     * @throws IOException if in fails
+     * @see #parse(InputStream)
+     */
+    public static Object parse(InputStream in, ParseOptions options) throws IOException {
+        InputStreamSource source = new InputStreamSource(in, Source.STREAM_BUFFER_SIZE);
+        source.maxLength = options.limits.maxDocumentLength;
+        try {
+            return parse(source, 0, options);
+        } catch (Source.ReadException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses a UTF-8 encoded JSON file by memory-mapping it, so that it's never read onto the heap. Files larger than
+     * 2GB are mapped in several windows
+     * @param path JSON file to parse
+     * @return the contents of the file
+     * @throws IOException if the file can't be opened or mapped
+     */
+    public static Object parse(Path path) throws IOException {
+        return parse(path, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses a UTF-8 encoded JSON file by memory-mapping it
+     * @param path JSON file to parse
+     * @param options how to build the result
+     * @return the contents of the file
+     * @throws IOException if the file can't be opened or mapped
+     * @see #parse(Path)
+     */
+    public static Object parse(Path path, ParseOptions options) throws IOException {
+        options.limits.checkDocumentLength(Files.size(path), options.stackTraces);
+        return parse(new MappedSource(path, MappedSource.WINDOW_SIZE), 0, options);
+    }
+
+    /**
+     * Parses newline-delimited JSON (NDJSON) from in, one line at a time on the calling thread
+     * @param in UTF-8 encoded lines of JSON. Closed when the returned {@link JsonLines} is
+     * @return the lines, each with its value or the reason it couldn't be parsed
+     * @see JsonLines
+     */
+    public static JsonLines lines(InputStream in) {
+        return lines(in, ParseOptions.DEFAULT, null, true);
+    }
+
+    /**
+     * Parses newline-delimited JSON (NDJSON) from in, in chunks of lines that are parsed in parallel on executor
+     * @param in UTF-8 encoded lines of JSON. Closed when the returned {@link JsonLines} is
+     * @param options how to build each value
+     * @param executor runs the parsing, such as a {@link java.util.concurrent.ForkJoinPool}. null to parse on the
+     *                 calling thread
+     * @param ordered whether lines are handed out in the order they're in. Otherwise chunks of lines are handed out
+     *                as soon as they've been parsed
+     * @return the lines, each with its value or the reason it couldn't be parsed
+     * @see JsonLines
+     */
+    public static JsonLines lines(InputStream in, ParseOptions options, ExecutorService executor, boolean ordered) {
+        return new JsonLines(in, options, executor, ordered, JsonLines.CHUNK_SIZE);
+    }
+
+    /**
+     * Parses jsonString into a {@link JsonDocument}, which takes much less memory than {@link Map}s and {@link List}s
+     * for documents that are kept around
+     * @param jsonString parsed
+     * @return the contents of jsonString
+     */
+    public static JsonDocument document(String jsonString) {
+        return document(jsonString, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses jsonString into a {@link JsonDocument}, within limits
+     * @param jsonString parsed
+     * @param options only their {@link ParseOptions#withLimits(ParseLimits) limits} and
+     *                {@link ParseOptions#withStackTraces(boolean) stack traces} apply, as nothing else is built
+     * @return the contents of jsonString
+     * @see #document(String)
+     */
+    public static JsonDocument document(String jsonString, ParseOptions options) {
+        options.limits.checkDocumentLength(jsonString.length(), options.stackTraces);
+        return JsonDocument.build(new StringSource(jsonString), options);
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON into a {@link JsonDocument}. The bytes aren't kept
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @return the contents of the bytes
+     * @see #document(String)
+     */
+    public static JsonDocument document(byte[] bytes, int offset, int length) {
+        return document(bytes, offset, length, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON into a {@link JsonDocument}, within limits
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @param options only their limits and stack traces apply
+     * @return the contents of the bytes
+     * @see #document(String, ParseOptions)
+     */
+    public static JsonDocument document(byte[] bytes, int offset, int length, ParseOptions options) {
+        options.limits.checkDocumentLength(length, options.stackTraces);
+        return JsonDocument.build(new ByteSource(bytes, offset, length), options);
+    }
+
+    /**
+     * Binds jsonString straight onto a new instance of type, without building {@link Map}s first. Objects are bound
+     * onto classes with a no-argument constructor by setting the fields named the same as their properties, and
+     * properties without a field are skipped. Fields can be strings, numbers, booleans, enums, arrays,
+     * {@link Collection}s, {@link Map}s and other such classes, or {@code Object} for whatever
+     * {@link #parse(String)} would have returned
+     * @param jsonString parsed
+     * @param type class to bind onto, such as {@code Order.class} or {@code Order[].class}
+     * @return the contents of jsonString as a type
+     * @throws JsonParseException if jsonString isn't valid, or a value doesn't fit the field it's bound onto. The
+     * message has the path to the value, such as {@code <root>.items.[2].quantity}
+     * @throws IllegalArgumentException if type (or the type of one of its fields) can't be bound onto
+     */
+    public static <T> T bind(String jsonString, Class<T> type) {
+        return bind(jsonString, type, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Binds jsonString straight onto a new instance of type, within options' {@link ParseLimits}
+     * @param jsonString parsed
+     * @param type class to bind onto
+     * @param options how to parse jsonString
+     * @return the contents of jsonString as a type
+     * @see #bind(String, Class)
+     */
+    public static <T> T bind(String jsonString, Class<T> type, ParseOptions options) {
+        return (T) Binder.bind(new JsonReader(jsonString, options), type);
+    }
+
+    /**
+     * Binds UTF-8 encoded JSON straight onto a new instance of type
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @param type class to bind onto
+     * @return the contents of the bytes as a type
+     * @see #bind(String, Class)
+     */
+    public static <T> T bind(byte[] bytes, int offset, int length, Class<T> type) {
+        return bind(bytes, offset, length, type, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Binds UTF-8 encoded JSON straight onto a new instance of type, within options' {@link ParseLimits}
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @param type class to bind onto
+     * @param options how to parse the bytes
+     * @return the contents of the bytes as a type
+     * @see #bind(String, Class)
+     */
+    public static <T> T bind(byte[] bytes, int offset, int length, Class<T> type, ParseOptions options) {
+        return (T) Binder.bind(new JsonReader(bytes, offset, length, options), type);
+    }
+
+    /**
+     * Pulls the values at the given paths out of jsonString, skipping over everything else. When selecting from many
+     * documents, {@link JsonSelector#compile(String...)} the paths once instead
+     * @param jsonString JSON to select from
+     * @param paths paths as they're shown in {@link JsonParseException}s, such as {@code <root>.items.[*].sku}
+     * @return each path that was found, mapped to its value
+     * @see JsonSelector
+     */
+    public static Map<String, Object> select(String jsonString, String... paths) {
+        return JsonSelector.compile(paths).select(jsonString);
+    }
+
+    /**
+     * Parses source according to what the outermost structure is
+     * @param source parsed
+     * @return the contents of source
+     */
+    static Object parse(Source source) {
+        return parse(source, 0, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * Parses the value starting at (or after whitespace following) start in source. Anything after it is ignored
+     * @param source parsed
+     * @param start index to start parsing at
+     * @param options how to build the value
+     * @return the value
+     */
+    static Object parse(Source source, int start, ParseOptions options) {
+        JsonParser parser = JsonParser.SHARED.acquire();
+        try {
+            return parser.parse(source, start, options);
+        } finally {
+            JsonParser.SHARED.release(parser);
+        }
+    }
+
+    /**
+     * The state machine itself, run by a {@link JsonParser} with its stack
+     */
+    @SuppressWarnings("ConstantConditions")
+    static Object parse(Source source, int start, ParseOptions options, ParseStack stack) {
         Type currentType;
 
         boolean expectingComma = false, expectingColon = false;
-        int fieldStart = 0, end = jsonString.length() - 1, i = 0;
+        int fieldStart = 0, i = start;
         String propertyName = null;
         Object currentContainer = null;
         Object value;
         char current;
 
-        try {
-            while (Constants.isWhitespace((current = jsonString.charAt(i)))) i++;
-        } catch (IndexOutOfBoundsException e) {
-            throw new JsonParseException("Provided JSON string did not contain a value");
+        ParseLimits limits = options.limits;
+        int maxDepth = limits.maxDepth, maxEntries = limits.maxEntries;
+        boolean checkStrings = limits.maxStringLength < Integer.MAX_VALUE;
+        int entries = 0; // Properties or elements started in currentContainer
+
+        while (true) {
+            if (!source.has(i)) {
+                throw new JsonParseException("Provided JSON string did not contain a value", stack.stackTraces)
+                        .at(source, i);
+            }
+            if (!Constants.isWhitespace(current = source.charAt(i))) break;
+            i++;
         }
 
         if (current == '{') {
             currentType = Type.OBJECT;
-            currentContainer = new HashMap<>();
+            currentContainer = options.newObject(null);
             i++;
         } else if (current == '[') {
             currentType = Type.ARRAY;
-            currentContainer = new ArrayList<>();
+            currentContainer = options.newArray(null);
             propertyName = null;
             i++;
         } else if (current == '"') {
@@ -101,54 +581,57 @@ public class JsonParse {
             currentType = Type.NUMBER;
             fieldStart = i;
         } else {
-            throw new JsonParseException(stateStack, "Unexpected character \"" + current + "\" instead of root value");
+            throw unexpectedCharacter(stack, source, i, current, null).at(source, i);
         }
 
-        while (i <= end) {
-            current = jsonString.charAt(i);
+        while (source.has(i)) {
+            current = source.charAt(i);
             switch (currentType) {
                 case NAME:
                     try {
-                        ExtractedString extracted = extractString(jsonString, i);
-                        i = extracted.sourceEnd;
-                        propertyName = extracted.str;
-                    } catch (StringIndexOutOfBoundsException e) {
-                        throw new JsonParseException(stateStack, "String did not have ending quote");
+                        // Find the end first, so that a string over the limit is never decoded
+                        if (checkStrings && source.skipString(i) - i - 1 > limits.maxStringLength) {
+                            throw limits.stringTooLong(stack).at(source, i);
+                        }
+                        propertyName = options.keyCache != null
+                                ? source.extractKey(i, options.keyCache)
+                                : source.extractString(i);
+                    } catch (IndexOutOfBoundsException e) {
+                        throw new JsonParseException(stack, "String did not have ending quote").at(source, i);
+                    } catch (Source.MalformedEscape e) {
+                        throw malformedEscape(stack).at(source, e.index);
                     }
+                    i = source.stringEnd;
                     currentType = Type.HEURISTIC;
                     expectingColon = true;
                     i++;
                     break;
                 case STRING:
                     try {
-                        ExtractedString extracted = extractString(jsonString, i);
-                        i = extracted.sourceEnd;
-                        value = extracted.str;
-                    } catch (StringIndexOutOfBoundsException e) {
-                        throw new JsonParseException(stateStack, "String did not have ending quote");
+                        if (checkStrings && source.skipString(i) - i - 1 > limits.maxStringLength) {
+                            throw limits.stringTooLong(at(stack, propertyName, currentContainer)).at(source, i);
+                        }
+                        value = source.extractString(i);
+                    } catch (IndexOutOfBoundsException e) {
+                        throw new JsonParseException(stack, "String did not have ending quote").at(source, i);
+                    } catch (Source.MalformedEscape e) {
+                        throw malformedEscape(stack).at(source, e.index);
                     }
+                    i = source.stringEnd;
 
                     if (currentContainer == null) {
+                        source.valueEnd = i + 1;
                         return value;
-                    } else {
-                        expectingComma = true;
-                        if (currentContainer instanceof Map) {
-                            ((Map<String, Object>) currentContainer).put(propertyName, value);
-                            currentType = Type.OBJECT;
-                        } else {
-                            ((List<Object>) currentContainer).add(value);
-                            currentType = Type.ARRAY;
-
-                        }
                     }
-
+                    expectingComma = true;
+                    currentType = add(currentContainer, propertyName, value);
                     i++;
                     break;
                 case NUMBER: {
                     boolean withDecimal = false;
                     boolean withE = false;
                     do {
-                        current = jsonString.charAt(i);
+                        current = source.charAt(i);
                         if (!withDecimal && current == '.') {
                             withDecimal = true;
                         } else if (!withE && (current == 'e' || current == 'E')) {
@@ -156,82 +639,50 @@ public class JsonParse {
                         } else if (!Constants.isNumberStart(current) && current != '+') {
                             break;
                         }
-                    } while (i++ < end);
+                    } while (source.has(++i));
 
-                    String valueString = jsonString.substring(fieldStart, i);
+                    if (i - fieldStart > limits.maxNumberLength) {
+                        throw limits.numberTooLong(at(stack, propertyName, currentContainer)).at(source, fieldStart);
+                    }
                     try {
-                        if (withDecimal || withE) {
-                            value = Double.valueOf(valueString);
-                        } else {
-                            value = Long.valueOf(valueString);
-                        }
+                        value = number(source, fieldStart, i, withDecimal || withE, currentContainer);
                     } catch (NumberFormatException e) {
-                        throw new JsonParseException(stateStack, "\"" + valueString +
-                                "\" expected to be a number, but wasn't");
+                        throw notNumber(stack, source, fieldStart, i).at(source, fieldStart);
                     }
 
                     if (currentContainer == null) {
+                        source.valueEnd = i;
                         return value;
-                    } else {
-                        expectingComma = true;
-                        if (currentContainer instanceof Map) {
-                            ((Map<String, Object>) currentContainer).put(propertyName, value);
-                            currentType = Type.OBJECT;
-                        } else {
-                            ((List<Object>) currentContainer).add(value);
-                            currentType = Type.ARRAY;
-                        }
                     }
+                    expectingComma = true;
+                    currentType = value == null ? Type.ARRAY : add(currentContainer, propertyName, value);
                     break;
                 }
                 case CONSTANT:
-                    while (Constants.isLetter(current) && i++ < end) {
-                        current = jsonString.charAt(i);
+                    while (Constants.isLetter(current) && source.has(++i)) {
+                        current = source.charAt(i);
                     }
 
-                    String valueString = jsonString.substring(fieldStart, i);
-                    switch (valueString) {
-                        case "false":
-                            value = false;
-                            break;
-                        case "true":
-                            value = true;
-                            break;
-                        case "null":
-                            value = null;
-                            break;
-                        default:
-                            if (currentContainer instanceof Map) {
-                                stateStack.push(new State(propertyName, currentContainer, Type.OBJECT));
-                            } else if (currentContainer instanceof List) {
-                                stateStack.push(new State(propertyName, currentContainer, Type.ARRAY));
-                            }
-                            throw new JsonParseException(stateStack, "\"" + valueString
-                                    + "\" is not a valid constant. Missing quotes?");
+                    try {
+                        value = constant(source.substring(fieldStart, i), stack, propertyName, currentContainer);
+                    } catch (JsonParseException e) {
+                        throw e.at(source, fieldStart);
                     }
-
                     if (currentContainer == null) {
+                        source.valueEnd = i;
                         return value;
-                    } else {
-                        expectingComma = true;
-                        if (currentContainer instanceof Map) {
-                            ((Map<String, Object>) currentContainer).put(propertyName, value);
-                            currentType = Type.OBJECT;
-                        } else {
-                            ((List<Object>) currentContainer).add(value);
-                            currentType = Type.ARRAY;
-
-                        }
                     }
+                    expectingComma = true;
+                    currentType = add(currentContainer, propertyName, value);
                     break;
                 case HEURISTIC:
-                    while (Constants.isWhitespace(current) && i++ < end) {
-                        current = jsonString.charAt(i);
+                    while (Constants.isWhitespace(current) && source.has(++i)) {
+                        current = source.charAt(i);
                     }
 
                     if (current != ':' && expectingColon) {
-                        stateStack.push(new State(propertyName, currentContainer, Type.OBJECT));
-                        throw new JsonParseException(stateStack, "wasn't followed by a colon");
+                        stack.push(propertyName, currentContainer, Type.OBJECT);
+                        throw new JsonParseException(stack, "wasn't followed by a colon").at(source, i);
                     }
 
                     if (current == ':') {
@@ -239,21 +690,29 @@ public class JsonParse {
                             expectingColon = false;
                             i++;
                         } else {
-                            stateStack.push(new State(propertyName, currentContainer, Type.OBJECT));
-                            throw new JsonParseException(stateStack, "was followed by too many colons");
+                            stack.push(propertyName, currentContainer, Type.OBJECT);
+                            throw new JsonParseException(stack, "was followed by too many colons").at(source, i);
                         }
                     } else if (current == '"') {
                         currentType = Type.STRING;
                         fieldStart = i;
                     } else if (current == '{') {
-                        stateStack.push(new State(propertyName, currentContainer, Type.OBJECT));
+                        stack.push(propertyName, currentContainer, Type.OBJECT, entries);
+                        if (stack.size() >= maxDepth) {
+                            throw limits.tooDeep(stack).at(source, i);
+                        }
+                        entries = 0;
                         currentType = Type.OBJECT;
-                        currentContainer = new HashMap<>();
+                        currentContainer = options.newObject(propertyName);
                         i++;
                     } else if (current == '[') {
-                        stateStack.push(new State(propertyName, currentContainer, Type.OBJECT));
+                        stack.push(propertyName, currentContainer, Type.OBJECT, entries);
+                        if (stack.size() >= maxDepth) {
+                            throw limits.tooDeep(stack).at(source, i);
+                        }
+                        entries = 0;
                         currentType = Type.ARRAY;
-                        currentContainer = new ArrayList<>();
+                        currentContainer = options.newArray(propertyName);
                         i++;
                     } else if (Constants.isLetter(current)) {
                         // Assume parsing a constant ("null", "true", "false", etc)
@@ -264,13 +723,13 @@ public class JsonParse {
                         currentType = Type.NUMBER;
                         fieldStart = i;
                     } else {
-                        throw new JsonParseException(stateStack, "unexpected character \"" + current +
-                                "\" instead of object value");
+                        throw unexpectedCharacter(stack, source, i, current, Type.HEURISTIC).at(source, i);
                     }
                     break;
                 case OBJECT:
-                    while (Constants.isWhitespace(current) && i++ < end) {
-                        current = jsonString.charAt(i);
+                    i = source.release(i);
+                    while (Constants.isWhitespace(current) && source.has(++i)) {
+                        current = source.charAt(i);
                     }
 
                     if (current == ',') {
@@ -278,48 +737,54 @@ public class JsonParse {
                             expectingComma = false;
                             i++;
                         } else {
-                            stateStack.push(new State(propertyName, currentContainer, Type.OBJECT));
-                            throw new JsonParseException(stateStack, "followed by too many commas");
+                            stack.push(propertyName, currentContainer, Type.OBJECT);
+                            throw new JsonParseException(stack, "followed by too many commas").at(source, i);
                         }
                     } else if (current == '"') {
                         if (expectingComma) {
-                            stateStack.push(new State(propertyName, currentContainer, Type.OBJECT));
-                            throw new JsonParseException(stateStack, "wasn't followed by a comma");
+                            stack.push(propertyName, currentContainer, Type.OBJECT);
+                            throw new JsonParseException(stack, "wasn't followed by a comma").at(source, i);
+                        }
+                        if (++entries > maxEntries) {
+                            throw limits.tooManyEntries(stack).at(source, i);
                         }
 
                         currentType = Type.NAME;
                         fieldStart = i;
                     } else if (current == '}') {
-                        if (!stateStack.isEmpty()) {
-                            State upper = stateStack.pop();
-                            Object upperContainer = upper.container;
-                            String parentName = upper.propertyName;
-                            currentType = upper.type;
-
-                            if (upperContainer instanceof Map) {
-                                ((Map<String, Object>) upperContainer).put(parentName, currentContainer);
-                            } else {
-                                ((List<Object>) upperContainer).add(currentContainer);
-                            }
+                        if (!stack.isEmpty()) {
+                            Object upperContainer = stack.container();
+                            String parentName = stack.name();
+                            currentType = stack.type();
+                            entries = stack.index();
+                            stack.pop();
+
+                            add(upperContainer, parentName, options.finish(parentName, currentContainer));
                             currentContainer = upperContainer;
                             expectingComma = true;
                             i++;
                         } else {
-                            return currentContainer;
+                            source.valueEnd = i + 1;
+                            return options.finish(null, currentContainer);
                         }
                     } else if (!Constants.isWhitespace(current)) {
-                        throw new JsonParseException(stateStack, "unexpected character '" + current +
-                                "' where a property name is expected. Missing quotes?");
+                        throw unexpectedCharacter(stack, source, i, current, Type.OBJECT).at(source, i);
                     }
                     break;
                 case ARRAY:
-                    while (Constants.isWhitespace(current) && i++ < end) {
-                        current = jsonString.charAt(i);
+                    i = source.release(i);
+                    while (Constants.isWhitespace(current) && source.has(++i)) {
+                        current = source.charAt(i);
                     }
 
-                    if (current != ',' && current != ']' && current != '}' && expectingComma) {
-                        stateStack.push(new State(null, currentContainer, Type.ARRAY));
-                        throw new JsonParseException(stateStack, "wasn't preceded by a comma");
+                    if (current != ',' && current != ']' && current != '}') {
+                        if (expectingComma) {
+                            stack.push(null, currentContainer, Type.ARRAY);
+                            throw new JsonParseException(stack, "wasn't preceded by a comma").at(source, i);
+                        }
+                        if (++entries > maxEntries) {
+                            throw limits.tooManyEntries(stack).at(source, i);
+                        }
                     }
 
                     if (current == ',') {
@@ -327,39 +792,45 @@ public class JsonParse {
                             expectingComma = false;
                             i++;
                         } else {
-                            stateStack.push(new State(null, currentContainer, Type.ARRAY));
-                            throw new JsonParseException(stateStack, "preceded by too many commas");
+                            stack.push(null, currentContainer, Type.ARRAY);
+                            throw new JsonParseException(stack, "preceded by too many commas").at(source, i);
                         }
                     } else if (current == '"') {
                         currentType = Type.STRING;
                         fieldStart = i;
                     } else if (current == '{') {
-                        stateStack.push(new State(null, currentContainer, Type.ARRAY));
+                        stack.push(null, currentContainer, Type.ARRAY, entries);
+                        if (stack.size() >= maxDepth) {
+                            throw limits.tooDeep(stack).at(source, i);
+                        }
+                        entries = 0;
                         currentType = Type.OBJECT;
-                        currentContainer = new HashMap<>();
+                        currentContainer = options.newObject(null);
                         i++;
                     } else if (current == '[') {
-                        stateStack.push(new State(null, currentContainer, Type.ARRAY));
+                        stack.push(null, currentContainer, Type.ARRAY, entries);
+                        if (stack.size() >= maxDepth) {
+                            throw limits.tooDeep(stack).at(source, i);
+                        }
+                        entries = 0;
                         currentType = Type.ARRAY;
-                        currentContainer = new ArrayList<>();
+                        currentContainer = options.newArray(null);
                         i++;
                     } else if (current == ']') {
-                        if (!stateStack.isEmpty()) {
-                            State upper = stateStack.pop();
-                            Object upperContainer = upper.container;
-                            String parentName = upper.propertyName;
-                            currentType = upper.type;
-
-                            if (upperContainer instanceof Map) {
-                                ((Map<String, Object>) upperContainer).put(parentName, currentContainer);
-                            } else {
-                                ((List<Object>) upperContainer).add(currentContainer);
-                            }
+                        if (!stack.isEmpty()) {
+                            Object upperContainer = stack.container();
+                            String parentName = stack.name();
+                            currentType = stack.type();
+                            entries = stack.index();
+                            stack.pop();
+
+                            add(upperContainer, parentName, options.finish(parentName, currentContainer));
                             currentContainer = upperContainer;
                             expectingComma = true;
                             i++;
                         } else {
-                            return currentContainer;
+                            source.valueEnd = i + 1;
+                            return options.finish(null, currentContainer);
                         }
                     } else if (Constants.isLetter(current)) {
                         // Assume parsing a   ("null", "true", "false", etc)
@@ -370,94 +841,122 @@ public class JsonParse {
                         currentType = Type.NUMBER;
                         fieldStart = i;
                     } else {
-                        stateStack.push(new State(propertyName, currentContainer, Type.ARRAY));
-                        throw new JsonParseException(stateStack, "Unexpected character \"" + current + "\" instead of array value");
+                        stack.push(null, currentContainer, Type.ARRAY);
+                        throw unexpectedCharacter(stack, source, i, current, Type.ARRAY).at(source, i);
                     }
                     break;
             }
         }
 
-        throw new JsonParseException("Root element wasn't terminated correctly (Missing ']' or '}'?)");
+        throw new JsonParseException("Root element wasn't terminated correctly (Missing ']' or '}'?)",
+                stack.stackTraces).at(source, i);
     }
 
-    private static ExtractedString extractString(String jsonString, int fieldStart) {
-        StringBuilder builder = new StringBuilder();
-        while (true) {
-            int i = indexOfSpecial(jsonString, fieldStart);
-            char c = jsonString.charAt(i);
-            if (c == '"') {
-                builder.append(jsonString.substring(fieldStart + 1, i));
-                ExtractedString val = new ExtractedString();
-                val.sourceEnd = i;
-                val.str = builder.toString();
-                return val;
-            } else if (c == '\\') {
-                builder.append(jsonString.substring(fieldStart + 1, i));
-
-                c = jsonString.charAt(i + 1);
-                switch (c) {
-                    case '"':
-                        builder.append('\"');
-                        break;
-                    case '\\':
-                        builder.append('\\');
-                        break;
-                    case '/':
-                        builder.append('/');
-                        break;
-                    case 'b':
-                        builder.append('\b');
-                        break;
-                    case 'f':
-                        builder.append('\f');
-                        break;
-                    case 'n':
-                        builder.append('\n');
-                        break;
-                    case 'r':
-                        builder.append('\r');
-                        break;
-                    case 't':
-                        builder.append('\t');
-                        break;
-                    case 'u':
-                        builder.append(Character.toChars(
-                                Integer.parseInt(jsonString.substring(i + 2, i + 6), 16)));
-                        fieldStart = i + 5; // Jump over escape sequence and code point
-                        continue;
+    /**
+     * @param source input being parsed
+     * @param i index of current. Past the end of the input if current is the whitespace the input ended with
+     * @param current the character at i, as returned by {@link Source#charAt(int)}
+     * @return current for an error message, decoded from source if it isn't ASCII
+     */
+    static String character(Source source, int i, char current) {
+        return current < 0x80 ? String.valueOf(current) : source.characterAt(i);
+    }
 
-                }
-                fieldStart = i + 1; // Jump over escape sequence
+    /**
+     * @param in what the character was found in: {@link Type#HEURISTIC} for an object value, {@link Type#OBJECT} for
+     * a property name, {@link Type#ARRAY} for an array value, or null for the root value
+     */
+    static JsonParseException unexpectedCharacter(ParseStack stack, Source source, int i, char current, Type in) {
+        String character = character(source, i, current);
+        if (in == null) {
+            return new JsonParseException(stack, "Unexpected character \"" + character + "\" instead of root value");
+        } else if (in == Type.HEURISTIC) {
+            return new JsonParseException(stack, "unexpected character \"" + character + "\" instead of object value");
+        } else if (in == Type.OBJECT) {
+            return new JsonParseException(stack, "unexpected character '" + character
+                    + "' where a property name is expected. Missing quotes?");
+        }
+        return new JsonParseException(stack, "Unexpected character \"" + character + "\" instead of array value");
+    }
+
+    /**
+     * @param valueString letters where a value was expected
+     * @return the constant valueString names
+     * @throws JsonParseException if it isn't one, without where it is
+     */
+    static Object constant(String valueString, ParseStack stack, String propertyName, Object currentContainer) {
+        switch (valueString) {
+            case "false":
+                return false;
+            case "true":
+                return true;
+            case "null":
+                return null;
+            default:
+                throw new JsonParseException(at(stack, propertyName, currentContainer), "\"" + valueString
+                        + "\" is not a valid constant. Missing quotes?");
+        }
+    }
+
+    /**
+     * Decodes the number from start to end of source, adding it straight to currentContainer if that's a
+     * {@link NumberList}, so that it's never boxed
+     * @return the number, or null if it was added
+     * @throws NumberFormatException if it isn't a number
+     */
+    static Number number(Source source, int start, int end, boolean decimal, Object currentContainer) {
+        if (currentContainer instanceof NumberList) {
+            if (decimal) {
+                ((NumberList) currentContainer).addDouble(Numbers.decodeDouble(source, start, end));
             } else {
-                throw new IndexOutOfBoundsException();
+                ((NumberList) currentContainer).addLong(Numbers.decodeLong(source, start, end));
             }
+            return null;
+        } else if (decimal) {
+            return Numbers.decodeDouble(source, start, end);
         }
+        return Numbers.box(Numbers.decodeLong(source, start, end));
     }
 
-    static class State {
-        final String propertyName;
-        final Object container;
-        final Type type;
+    static JsonParseException notNumber(ParseStack stack, Source source, int start, int end) {
+        return new JsonParseException(stack, "\"" + source.substring(start, end)
+                + "\" expected to be a number, but wasn't");
+    }
 
-        State(String propertyName, Object container, Type type) {
-            this.propertyName = propertyName;
-            this.container = container;
-            this.type = type;
+    /**
+     * Puts value in container, as name if it's an object
+     * @return the type of container
+     */
+    static Type add(Object container, String name, Object value) {
+        if (container instanceof Map) {
+            ((Map<String, Object>) container).put(name, value);
+            return Type.OBJECT;
         }
+        ((List<Object>) container).add(value);
+        return Type.ARRAY;
+    }
+
+    /**
+     * @param stack objects and arrays enclosing the string with the escape
+     */
+    static JsonParseException malformedEscape(ParseStack stack) {
+        return new JsonParseException(stack, "String had a unicode escape that wasn't four hex digits");
     }
 
     /**
-     * Returns the index of either a quotation, or a control character backslash. Skips the first element.
-     * !! Do not inline this function, the JVM <3 optimising it, and inlining it slows it down ... somehow.
-     * @param str content string to find quote or backslash
-     * @param start start index to search
-     * @return index of the first quote or backslash found at or after `start`
+     * Pushes where the value being parsed is going, so that an exception about it has its path
+     * @return stack
      */
-    private static int indexOfSpecial(String str, int start) {
-        while (++start < str.length() && str.charAt(start) != '"' && str.charAt(start) != '\\');
-        return start;
+    static ParseStack at(ParseStack stack, String propertyName, Object currentContainer) {
+        if (currentContainer instanceof Map) {
+            stack.push(propertyName, currentContainer, Type.OBJECT);
+        } else if (currentContainer instanceof List) {
+            stack.push(null, currentContainer, Type.ARRAY);
+        }
+        return stack;
     }
-    private enum Type {
+
+    enum Type {
         ARRAY,
         OBJECT,
         HEURISTIC,
@@ -467,9 +966,4 @@ public class JsonParse {
         CONSTANT
 
     }
-
-    private static class ExtractedString {
-        int sourceEnd;
-        String str;
-    }
-}
\ No newline at end of file
+}
@@ -1,41 +1,194 @@
 package ca.fuzzlesoft;
 
-import ca.fuzzlesoft.JsonParse.State;
-
-import java.util.List;
-import java.util.Stack;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 
 /**
+ * Thrown when input isn't valid JSON, or breaks a {@link ParseLimits limit}. Failing has to stay cheap for services
+ * that turn away a lot of bad input, so the path is copied out of the parse as names and indexes, and only made into a
+ * message by {@link #getMessage()}. The line and column of a failure in a {@code String} are only counted when they're
+ * asked for, so the string is kept until then. Bytes may be reused as soon as the parse fails, so they're counted
+ * straight away. Most of what's left is the stack trace, which {@link ParseOptions#withStackTraces(boolean)} can leave
+ * out.
+ *
  * @author mitch
  * @since 30/12/15
  */
 public class JsonParseException extends RuntimeException {
 
-    private final String message;
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] NO_NAMES = new String[0];
+    private static final int[] NO_INDEXES = new int[0];
+
+    private final String detail;
+    private final String[] names; // Path to the failure, by name within objects and null within arrays
+    private final int[] indexes; // Index within each array on the path
+    private String message; // Rendered from the path on first use
+
+    private long offset = -1;
+    private int line = -1, column = -1;
+    private transient volatile String input; // Line and column still to be counted up to index in this
+    private transient int index;
 
     public JsonParseException(String message) {
-        this.message = message;
+        this(message, true);
+    }
+
+    /**
+     * For failures of the input itself, rather than of the JSON in it
+     */
+    public JsonParseException(String message, Throwable cause) {
+        super(cause);
+        this.detail = this.message = message;
+        this.names = null;
+        this.indexes = null;
+    }
+
+    /**
+     * For failures of the document as a whole, which have no path
+     * @param stackTrace whether to fill in the stack trace
+     */
+    JsonParseException(String message, boolean stackTrace) {
+        super(null, null, true, stackTrace);
+        this.detail = this.message = message;
+        this.names = null;
+        this.indexes = null;
+    }
+
+    /**
+     * @param stack where the failure is. Only the path is copied out of it, and the stack trace is left out if
+     *              {@link ParseStack#stackTraces} isn't set
+     */
+    JsonParseException(ParseStack stack, String message) {
+        super(null, null, true, stack.stackTraces);
+        this.detail = message;
+        int size = stack.size();
+        if (size == 0) {
+            this.names = NO_NAMES;
+            this.indexes = NO_INDEXES;
+        } else {
+            this.names = new String[size];
+            this.indexes = new int[size];
+            stack.copyPath(names, indexes);
+        }
+    }
+
+    /**
+     * Records where in source the failure is, unless that's already known. The line and column are known if source
+     * still has the input before it
+     * @param i index within source
+     * @return this
+     */
+    JsonParseException at(Source source, int i) {
+        if (offset < 0) {
+            offset = source.offset(i);
+            if (source instanceof StringSource) {
+                index = i;
+                input = ((StringSource) source).jsonString;
+            } else if (source instanceof ByteSource && source.keepsStart()) {
+                ByteSource bytes = (ByteSource) source;
+                byte[] buf = bytes.buf;
+                int end = bytes.offset + i, lines = 1, lineStart = bytes.offset;
+                for (int j = bytes.offset; j < end; j++) {
+                    if (buf[j] == '\n') {
+                        lines++;
+                        lineStart = j + 1;
+                    }
+                }
+                line = lines;
+                column = end - lineStart + 1;
+            }
+        }
+        return this;
     }
 
-    public JsonParseException(Stack<State> stateStack, String message) {
-        String jsonTrace = "";
-        for (int i = 0; i < stateStack.size(); i++) {
-            String name = stateStack.get(i).propertyName;
-            if (name == null) {
-                // Fill in array index
-                List<Object> list = (List<Object>) stateStack.get(i).container;
-                name = String.format("[%d]", list.size());
+    /**
+     * Counts the line and column in the input kept by {@link #at(Source, int)}, and lets go of it
+     */
+    private void count() {
+        String input = this.input;
+        if (input != null) {
+            int lines = 1, lineStart = 0;
+            for (int j = input.indexOf('\n'); j >= 0 && j < index; j = input.indexOf('\n', j + 1)) {
+                lines++;
+                lineStart = j + 1;
             }
-            jsonTrace += name + (i != stateStack.size() - 1 ? "." : "");
+            line = lines;
+            column = index - lineStart + 1;
+            this.input = null;
         }
+    }
 
-        jsonTrace = jsonTrace.equals("") ? "<root>" : "<root>." + jsonTrace;
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        count();
+        out.defaultWriteObject();
+    }
 
-        this.message = jsonTrace + ": " + message;
+    /**
+     * Records where in the input the failure is, unless that's already known, when the line and column can't be
+     * worked out
+     * @param offset position within the whole input
+     * @return this
+     */
+    JsonParseException at(long offset) {
+        if (this.offset < 0) {
+            this.offset = offset;
+        }
+        return this;
     }
 
     @Override
     public String getMessage() {
+        if (message == null) {
+            message = getPath() + ": " + detail;
+        }
         return message;
     }
+
+    /**
+     * @return the path to where parsing failed, such as {@code <root>.a.[1]}, or null if the failure wasn't within
+     * the document
+     */
+    public String getPath() {
+        if (names == null) {
+            return null;
+        }
+        StringBuilder path = new StringBuilder("<root>");
+        for (int i = 0; i < names.length; i++) {
+            path.append('.');
+            if (names[i] != null) {
+                path.append(names[i]);
+            } else {
+                path.append('[').append(indexes[i]).append(']');
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * @return position of the failure within the input, in the input's own units (chars for {@code String}s and
+     * {@link java.io.Reader}s, bytes otherwise), or -1 if it isn't known
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return line of the failure, starting at 1, or -1 if it isn't known. Only known for input held in memory
+     */
+    public int getLine() {
+        count();
+        return line;
+    }
+
+    /**
+     * @return column of the failure within its line, starting at 1, or -1 if it isn't known. Counted in the same units
+     * as {@link #getOffset()}, so in bytes rather than characters for UTF-8 input
+     * @see #getLine()
+     */
+    public int getColumn() {
+        count();
+        return column;
+    }
 }
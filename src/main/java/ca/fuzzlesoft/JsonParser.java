@@ -0,0 +1,301 @@
+package ca.fuzzlesoft;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reusable parser, holding on to everything a parse needs besides the value itself: the stack of enclosing objects
+ * and arrays, the buffer escapes are decoded into, and the sources over the input. Parsing the same way as
+ * {@link JsonParse}, but without setting any of that up again for every document.
+ *
+ * <p>A parser can be used for any number of documents, but only one at a time, so it either stays with one thread or
+ * is handed between them through a {@link Pool}. Nothing about the last document is kept once a parse returns (or
+ * throws), besides the room it needed. {@link #reset()} gives that back if it was unusually large, and is called by
+ * {@link Pool#release(JsonParser)}. {@link JsonParse} runs on a shared pool of its own.</p>
+ *
+ * <pre>
+ * JsonParser.Pool parsers = new JsonParser.Pool(ParseOptions.DEFAULT, 64);
+ * JsonParser parser = parsers.acquire();
+ * try {
+ *     value = parser.parse(body);
+ * } finally {
+ *     parsers.release(parser);
+ * }
+ * </pre>
+ */
+public final class JsonParser {
+
+    /**
+     * Largest decoding buffer kept between documents, in chars
+     */
+    private static final int MAX_KEPT_SCRATCH = 1 << 16;
+
+    private static final byte[] NO_BYTES = new byte[0];
+
+    /**
+     * Parsers for the static methods of {@link JsonParse}
+     */
+    static final Pool SHARED =
+            new Pool(ParseOptions.DEFAULT, Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+
+    private final ParseOptions options;
+    final ParseStack stack = new ParseStack();
+    private StringBuilder scratch = new StringBuilder();
+    private final StringSource strings = new StringSource("");
+    private final ByteSource bytes = new ByteSource(NO_BYTES, 0, 0);
+    private ParseOptions quietOptions; // options without stack traces, for tryParse
+
+    public JsonParser() {
+        this(ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @param options how to build values
+     */
+    public JsonParser(ParseOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * @param jsonString parsed
+     * @return the contents of jsonString
+     * @see JsonParse#parse(String, ParseOptions)
+     */
+    public Object parse(String jsonString) {
+        return parse(jsonString, options);
+    }
+
+    /**
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @return the contents of the bytes
+     * @see JsonParse#parse(byte[], int, int, ParseOptions)
+     */
+    public Object parse(byte[] bytes, int offset, int length) {
+        return parse(bytes, offset, length, options);
+    }
+
+    /**
+     * @param jsonString parsed
+     * @return the contents of jsonString, or why it couldn't be parsed
+     * @see JsonParse#tryParse(String, ParseOptions)
+     */
+    public ParseResult tryParse(String jsonString) {
+        return tryParse(jsonString, options);
+    }
+
+    /**
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to parse
+     * @param length number of bytes to parse
+     * @return the contents of the bytes, or why they couldn't be parsed
+     * @see JsonParse#tryParse(byte[], int, int, ParseOptions)
+     */
+    public ParseResult tryParse(byte[] bytes, int offset, int length) {
+        return tryParse(bytes, offset, length, options);
+    }
+
+    /**
+     * @param jsonString checked
+     * @return null if jsonString is valid, or else why not
+     * @see JsonParse#validate(String, ParseOptions)
+     */
+    public JsonParseException validate(String jsonString) {
+        return validate(jsonString, options);
+    }
+
+    /**
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to check
+     * @param length number of bytes to check
+     * @return null if the bytes are valid, or else why not
+     * @see JsonParse#validate(byte[], int, int, ParseOptions)
+     */
+    public JsonParseException validate(byte[] bytes, int offset, int length) {
+        return validate(bytes, offset, length, options);
+    }
+
+    /**
+     * Gives back memory held on to since an unusually large document. Parsing already starts afresh every time, so
+     * this is only needed before a parser sits unused for a while, such as in a {@link Pool}
+     */
+    public void reset() {
+        stack.reset();
+        if (scratch.capacity() > MAX_KEPT_SCRATCH) {
+            scratch = new StringBuilder();
+        }
+    }
+
+    Object parse(String jsonString, ParseOptions options) {
+        options.limits.checkDocumentLength(jsonString.length(), options.stackTraces);
+        if (options.lazy) {
+            return Tape.parse(new StringSource(jsonString), options);
+        } else if (options.shapes != null && !options.checksLimits()) {
+            return ShapeParser.parse(new StringSource(jsonString), options);
+        }
+        strings.reset(jsonString);
+        try {
+            return parse(strings, 0, options);
+        } finally {
+            strings.reset(""); // Don't keep the input alive
+        }
+    }
+
+    Object parse(byte[] bytes, int offset, int length, ParseOptions options) {
+        options.limits.checkDocumentLength(length, options.stackTraces);
+        if (options.lazy) {
+            return Tape.parse(new ByteSource(bytes, offset, length), options);
+        } else if (options.shapes != null && !options.checksLimits()) {
+            return ShapeParser.parse(new ByteSource(bytes, offset, length), options);
+        }
+        this.bytes.reset(bytes, offset, length);
+        try {
+            return parse(this.bytes, 0, options);
+        } finally {
+            this.bytes.reset(NO_BYTES, 0, 0);
+        }
+    }
+
+    ParseResult tryParse(String jsonString, ParseOptions options) {
+        try {
+            return new ParseResult(parse(jsonString, quiet(options)), null);
+        } catch (JsonParseException e) {
+            return new ParseResult(null, e);
+        }
+    }
+
+    ParseResult tryParse(byte[] bytes, int offset, int length, ParseOptions options) {
+        try {
+            return new ParseResult(parse(bytes, offset, length, quiet(options)), null);
+        } catch (JsonParseException e) {
+            return new ParseResult(null, e);
+        }
+    }
+
+    JsonParseException validate(String jsonString, ParseOptions options) {
+        if (jsonString.length() <= options.limits.maxDocumentLength) {
+            strings.reset(jsonString);
+            try {
+                if (Validator.validate(strings, options.limits, stack)) {
+                    return null;
+                }
+            } finally {
+                strings.reset("");
+                stack.clear();
+            }
+        }
+        return tryParse(jsonString, options).getError();
+    }
+
+    JsonParseException validate(byte[] bytes, int offset, int length, ParseOptions options) {
+        if (length <= options.limits.maxDocumentLength) {
+            this.bytes.reset(bytes, offset, length);
+            try {
+                if (Validator.validate(this.bytes, options.limits, stack)) {
+                    return null;
+                }
+            } finally {
+                this.bytes.reset(NO_BYTES, 0, 0);
+                stack.clear();
+            }
+        }
+        return tryParse(bytes, offset, length, options).getError();
+    }
+
+    /**
+     * @return options, but without stack traces. The parser's own are only derived once
+     */
+    private ParseOptions quiet(ParseOptions options) {
+        if (!options.stackTraces) {
+            return options;
+        } else if (options != this.options) {
+            return options.withStackTraces(false);
+        }
+        if (quietOptions == null) {
+            quietOptions = options.withStackTraces(false);
+        }
+        return quietOptions;
+    }
+
+    /**
+     * Runs the {@link JsonParse} state machine over source, lending it this parser's decoding buffer
+     * @see JsonParse#parse(Source, int, ParseOptions)
+     */
+    Object parse(Source source, int start, ParseOptions options) {
+        StringBuilder own = source.scratch;
+        source.scratch = scratch;
+        stack.stackTraces = options.stackTraces;
+        try {
+            return JsonParse.parse(source, start, options, stack);
+        } finally {
+            source.scratch = own;
+            stack.clear();
+        }
+    }
+
+    /**
+     * Bounded pool of parsers, which any thread can take from and give back to. Not tied to threads, so it suits
+     * thread-per-request servers with many short-lived (or virtual) threads, where a {@link ThreadLocal} would keep a
+     * parser alive per thread. Taking and giving back don't allocate, or lock: parsers sit in a fixed array of slots,
+     * and each thread starts looking at a slot of its own, so threads rarely contend for one.
+     */
+    public static final class Pool {
+
+        private final ParseOptions options;
+        private final AtomicReferenceArray<JsonParser> slots;
+
+        /**
+         * @param options how the parsers build values
+         * @param size most parsers kept while not in use. More can be in use at once; extras are made on demand and
+         * dropped when given back
+         */
+        public Pool(ParseOptions options, int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("Size must be at least 1, was " + size);
+            }
+            this.options = options;
+            this.slots = new AtomicReferenceArray<>(size);
+        }
+
+        /**
+         * @return a parser that no one else is using, to be given back with {@link #release(JsonParser)}
+         */
+        public JsonParser acquire() {
+            int size = slots.length();
+            int slot = home(size);
+            for (int n = 0; n < size; n++) {
+                JsonParser parser = slots.get(slot);
+                if (parser != null && slots.compareAndSet(slot, parser, null)) {
+                    return parser;
+                }
+                if (++slot == size) {
+                    slot = 0;
+                }
+            }
+            return new JsonParser(options);
+        }
+
+        /**
+         * Resets parser and keeps it for the next {@link #acquire()}, unless the pool is already full. It mustn't be
+         * used again by the caller
+         * @param parser a parser from {@link #acquire()}
+         */
+        public void release(JsonParser parser) {
+            parser.reset();
+            int size = slots.length();
+            int slot = home(size);
+            for (int n = 0; n < size; n++) {
+                if (slots.get(slot) == null && slots.compareAndSet(slot, null, parser)) {
+                    return;
+                }
+                if (++slot == size) {
+                    slot = 0;
+                }
+            }
+        }
+
+        private static int home(int size) {
+            return (int) ((Thread.currentThread().getId() & Long.MAX_VALUE) % size);
+        }
+    }
+}
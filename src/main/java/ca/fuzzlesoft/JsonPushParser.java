@@ -0,0 +1,622 @@
+package ca.fuzzlesoft;
+
+import ca.fuzzlesoft.JsonParse.Type;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Push parser, for input that arrives in pieces, such as from non-blocking I/O. UTF-8 chunks are handed to
+ * {@link #feed(byte[], int, int)} as they come in, split anywhere (even within a string or a multi-byte character),
+ * and the value is built as far as they go. Nothing ever blocks waiting for more.
+ *
+ * <pre>
+ * JsonPushParser parser = new JsonPushParser();
+ * while (channel.read(buffer) != -1) {
+ *     buffer.flip();
+ *     parser.feed(buffer);
+ *     buffer.clear();
+ * }
+ * Object value = parser.endOfInput();
+ * </pre>
+ *
+ * Runs the same state machine as {@link JsonParse}, one step at a time, and gives the same values and errors: the two
+ * share how constants and numbers are decoded, how values are added to their containers, and what unexpected
+ * characters fail with. Between chunks, only the step that ran out of input is kept: the unfinished string, number
+ * or constant (or character, for an error message), not what came before it. Anything after the root value is
+ * ignored, as with {@link JsonParse}.
+ *
+ * Isn't thread safe, and can't be used after it has thrown a {@link JsonParseException} until it's {@link #reset()}.
+ */
+public final class JsonPushParser {
+
+    private static final int INITIAL_SIZE = 4096;
+    private static final int MAX_KEPT_SIZE = 1 << 16;
+
+    /**
+     * Thrown when a step runs out of input before the end of input has been signalled. The step is run again, from
+     * {@link #stepStart}, once there's more
+     */
+    private static final class Suspend extends Exception {
+        private static final long serialVersionUID = 1L;
+        private static final Suspend INSTANCE = new Suspend();
+
+        private Suspend() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final ParseOptions options;
+    private final ParseStack stack = new ParseStack();
+    private final ByteSource source = new ByteSource(new byte[INITIAL_SIZE], 0, 0);
+
+    private Type currentType; // null until the root value has been started
+    private boolean expectingComma, expectingColon, ended, done;
+    private int fieldStart, i, stepStart;
+    private int entries; // Properties or elements started in currentContainer
+    private long fed; // Bytes fed in all, for ParseLimits#maxDocumentLength
+    private int stringScan; // How far the current string has been searched for its closing quote
+    private boolean stringEscaped; // Whether the byte at stringScan is escaped
+    private String propertyName;
+    private Object currentContainer;
+    private Object value;
+
+    public JsonPushParser() {
+        this(ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @param options how to build the value. Lazy and shape cache options don't apply to input
+     * that isn't all there, and are ignored
+     */
+    public JsonPushParser(ParseOptions options) {
+        this.options = options;
+        stack.stackTraces = options.stackTraces;
+    }
+
+    /**
+     * Parses as far as chunk allows. Chunk isn't kept, so it can be reused as soon as this returns
+     * @param chunk the next UTF-8 encoded bytes of the input
+     * @param offset index of the first byte of the chunk
+     * @param length number of bytes in the chunk
+     * @return true once the value is complete. A root number or constant is only complete once something follows it
+     * @throws JsonParseException if the input isn't valid JSON
+     */
+    public boolean feed(byte[] chunk, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > chunk.length || offset + length < 0) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + " out of bounds for array of length " + chunk.length);
+        }
+        if (ended) {
+            throw new IllegalStateException("Fed after the end of input");
+        }
+        if (done || length == 0) {
+            return done;
+        }
+        System.arraycopy(chunk, offset, room(length), source.limit, length);
+        source.limit += length;
+        count(length);
+        run();
+        return done;
+    }
+
+    /**
+     * @see #feed(byte[], int, int)
+     */
+    public boolean feed(byte[] chunk) {
+        return feed(chunk, 0, chunk.length);
+    }
+
+    /**
+     * Parses as far as the remaining bytes of chunk allow, consuming all of them
+     * @see #feed(byte[], int, int)
+     */
+    public boolean feed(ByteBuffer chunk) {
+        int length = chunk.remaining();
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(), length);
+            chunk.position(chunk.limit());
+            return done;
+        }
+        if (ended) {
+            throw new IllegalStateException("Fed after the end of input");
+        }
+        if (done || length == 0) {
+            chunk.position(chunk.limit());
+            return done;
+        }
+        chunk.get(room(length), source.limit, length);
+        source.limit += length;
+        count(length);
+        run();
+        return done;
+    }
+
+    /**
+     * Signals that there's no more input, finishing a root number or constant
+     * @return the value
+     * @throws JsonParseException if the input isn't valid JSON, or stopped partway through the value
+     */
+    public Object endOfInput() {
+        if (!ended) {
+            ended = true;
+            run();
+        }
+        return value;
+    }
+
+    /**
+     * @return whether the value is complete
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the value
+     * @throws IllegalStateException if it isn't complete yet
+     */
+    public Object getValue() {
+        if (!done) {
+            throw new IllegalStateException("The value isn't complete yet");
+        }
+        return value;
+    }
+
+    /**
+     * Forgets everything fed so far, so that the next value can be parsed. Keeps the buffer, unless an unusually
+     * long string or number needed it to grow
+     */
+    public void reset() {
+        stack.clear();
+        if (source.buf.length > MAX_KEPT_SIZE) {
+            source.buf = new byte[INITIAL_SIZE];
+        }
+        source.limit = 0;
+        currentType = null;
+        expectingComma = expectingColon = ended = done = false;
+        fieldStart = i = stepStart = stringScan = entries = 0;
+        fed = 0;
+        stringEscaped = false;
+        propertyName = null;
+        currentContainer = null;
+        value = null;
+    }
+
+    /**
+     * Drops what's been parsed from the buffer, and makes room for length more bytes after what hasn't
+     * @return the buffer to append to, at {@link ByteSource#limit}
+     */
+    private byte[] room(int length) {
+        byte[] buf = source.buf;
+        int kept = source.limit - i;
+        if (i > 0) {
+            System.arraycopy(buf, i, buf, 0, kept);
+            fieldStart -= i;
+            stringScan -= i;
+            i = 0;
+        }
+        if (kept + length > buf.length) {
+            byte[] grown = new byte[Math.max(kept + length, buf.length * 2)];
+            System.arraycopy(buf, 0, grown, 0, kept);
+            source.buf = buf = grown;
+        }
+        source.limit = kept;
+        return buf;
+    }
+
+    private void count(int length) {
+        fed += length;
+        if (fed > options.limits.maxDocumentLength) {
+            throw ParseLimits.documentTooLong(options.limits.maxDocumentLength, options.stackTraces);
+        }
+    }
+
+    private void run() {
+        try {
+            while (!done) {
+                stepStart = i;
+                step();
+            }
+        } catch (Suspend e) {
+            i = stepStart;
+        } catch (JsonParseException e) {
+            throw e.at(offset(i));
+        }
+    }
+
+    /**
+     * @param index index within the buffer
+     * @return how far index is into all the input fed
+     */
+    private long offset(int index) {
+        return fed - source.limit + index;
+    }
+
+    /**
+     * @return whether there's a byte at index i, or false if the input has ended before it
+     * @throws Suspend if the input hasn't ended, but hasn't got to i either
+     */
+    private boolean has(int i) throws Suspend {
+        if (i < source.limit) {
+            return true;
+        }
+        if (ended) {
+            return false;
+        }
+        throw Suspend.INSTANCE;
+    }
+
+    /**
+     * {@link #has(int)} for skipping whitespace, which picks up from the last whitespace skipped instead of from the
+     * start of the step. That's the same thing, since nothing has changed yet when whitespace is skipped
+     */
+    private boolean hasAfterWhitespace(int i) throws Suspend {
+        if (i >= source.limit && !ended) {
+            stepStart = i - 1;
+        }
+        return has(i);
+    }
+
+    /**
+     * Makes sure the closing quote of the string starting at i has arrived, if the input hasn't ended. Remembers how
+     * far it got, so that a long string coming in many chunks is only searched through once, and fails as soon as
+     * it's clear the string is too long
+     */
+    private void awaitString(boolean key) throws Suspend {
+        if (ended) {
+            return;
+        }
+        byte[] buf = source.buf;
+        int j = Math.max(stringScan, i + 1);
+        boolean escaped = j == stringScan && stringEscaped;
+        for (int limit = source.limit; j < limit; j++) {
+            byte b = buf[j];
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                stringScan = j + 1;
+                stringEscaped = false;
+                return;
+            }
+        }
+        stringScan = j;
+        stringEscaped = escaped;
+        checkStringLength(key, j);
+        throw Suspend.INSTANCE;
+    }
+
+    /**
+     * Extracts the string starting at i, leaving i at its closing quote
+     */
+    private String extractString(boolean key) throws Suspend {
+        awaitString(key);
+        try {
+            String string = key && options.keyCache != null
+                    ? source.extractKey(i, options.keyCache)
+                    : source.extractString(i);
+            checkStringLength(key, source.stringEnd);
+            i = source.stringEnd;
+            stringScan = 0;
+            return string;
+        } catch (IndexOutOfBoundsException e) {
+            if (!ended) {
+                throw Suspend.INSTANCE; // An escape sequence runs past what has arrived
+            }
+            throw new JsonParseException(stack, "String did not have ending quote");
+        } catch (Source.MalformedEscape e) {
+            throw JsonParse.malformedEscape(stack).at(offset(e.index));
+        }
+    }
+
+    /**
+     * @param end index of the closing quote of the string starting at i, or of how far it's got
+     */
+    private void checkStringLength(boolean key, int end) {
+        ParseLimits limits = options.limits;
+        if (end - i - 1 > limits.maxStringLength) {
+            throw limits.stringTooLong(key ? stack : JsonParse.at(stack, propertyName, currentContainer));
+        }
+    }
+
+    /**
+     * Makes sure all of the UTF-8 sequence that current starts at i has arrived, if the input hasn't ended, so that an
+     * error can name the character. Nothing else is ever non-ASCII outside a string
+     */
+    private void awaitCharacter(char current) throws Suspend {
+        int length = current >= 0xF0 ? 4 : current >= 0xE0 ? 3 : current >= 0xC0 ? 2 : 1;
+        if (i + length > source.limit && !ended) {
+            throw Suspend.INSTANCE;
+        }
+    }
+
+    private void complete(Object value) {
+        this.value = value;
+        done = true;
+        stack.clear();
+        currentContainer = null;
+    }
+
+    /**
+     * Runs one step of the state machine in {@link JsonParse}, which either completes or is run again from its start
+     */
+    @SuppressWarnings("ConstantConditions")
+    private void step() throws Suspend {
+        char current;
+        Object value;
+
+        if (currentType == null) {
+            if (!has(i)) {
+                throw new JsonParseException("Provided JSON string did not contain a value", stack.stackTraces);
+            }
+            current = source.charAt(i);
+            if (current >= 0x80) {
+                awaitCharacter(current);
+            }
+            if (Constants.isWhitespace(current)) {
+                i++;
+            } else if (current == '{') {
+                currentType = Type.OBJECT;
+                currentContainer = options.newObject(null);
+                i++;
+            } else if (current == '[') {
+                currentType = Type.ARRAY;
+                currentContainer = options.newArray(null);
+                i++;
+            } else if (current == '"') {
+                currentType = Type.STRING;
+                fieldStart = i;
+            } else if (Constants.isLetter(current)) {
+                currentType = Type.CONSTANT;
+                fieldStart = i;
+            } else if (Constants.isNumberStart(current)) {
+                currentType = Type.NUMBER;
+                fieldStart = i;
+            } else {
+                throw JsonParse.unexpectedCharacter(stack, source, i, current, null);
+            }
+            return;
+        }
+
+        if (!has(i)) {
+            throw new JsonParseException("Root element wasn't terminated correctly (Missing ']' or '}'?)",
+                    stack.stackTraces);
+        }
+        current = source.charAt(i);
+        switch (currentType) {
+            case NAME:
+                propertyName = extractString(true);
+                currentType = Type.HEURISTIC;
+                expectingColon = true;
+                i++;
+                break;
+            case STRING:
+                value = extractString(false);
+                if (currentContainer == null) {
+                    complete(value);
+                    return;
+                }
+
+                expectingComma = true;
+                currentType = JsonParse.add(currentContainer, propertyName, value);
+                i++;
+                break;
+            case NUMBER: {
+                boolean withDecimal = false;
+                boolean withE = false;
+                do {
+                    if (i - fieldStart > options.limits.maxNumberLength) {
+                        throw options.limits.numberTooLong(JsonParse.at(stack, propertyName, currentContainer))
+                            .at(offset(fieldStart));
+                    }
+                    current = source.charAt(i);
+                    if (!withDecimal && current == '.') {
+                        withDecimal = true;
+                    } else if (!withE && (current == 'e' || current == 'E')) {
+                        withE = true;
+                    } else if (!Constants.isNumberStart(current) && current != '+') {
+                        break;
+                    }
+                } while (has(++i));
+
+                if (i - fieldStart > options.limits.maxNumberLength) {
+                    throw options.limits.numberTooLong(JsonParse.at(stack, propertyName, currentContainer))
+                            .at(offset(fieldStart));
+                }
+                try {
+                    value = JsonParse.number(source, fieldStart, i, withDecimal || withE, currentContainer);
+                } catch (NumberFormatException e) {
+                    throw JsonParse.notNumber(stack, source, fieldStart, i).at(offset(fieldStart));
+                }
+
+                if (currentContainer == null) {
+                    complete(value);
+                    return;
+                }
+                expectingComma = true;
+                currentType = value == null ? Type.ARRAY : JsonParse.add(currentContainer, propertyName, value);
+                break;
+            }
+            case CONSTANT:
+                while (Constants.isLetter(current) && has(++i)) {
+                    current = source.charAt(i);
+                }
+
+                try {
+                    value = JsonParse.constant(source.substring(fieldStart, i), stack, propertyName, currentContainer);
+                } catch (JsonParseException e) {
+                    throw e.at(offset(fieldStart));
+                }
+
+                if (currentContainer == null) {
+                    complete(value);
+                    return;
+                }
+                expectingComma = true;
+                currentType = JsonParse.add(currentContainer, propertyName, value);
+                break;
+            case HEURISTIC:
+                while (Constants.isWhitespace(current) && hasAfterWhitespace(++i)) {
+                    current = source.charAt(i);
+                }
+                if (current >= 0x80) {
+                    awaitCharacter(current);
+                }
+
+                if (current != ':' && expectingColon) {
+                    stack.push(propertyName, currentContainer, Type.OBJECT);
+                    throw new JsonParseException(stack, "wasn't followed by a colon");
+                }
+
+                if (current == ':') {
+                    if (expectingColon) {
+                        expectingColon = false;
+                        i++;
+                    } else {
+                        stack.push(propertyName, currentContainer, Type.OBJECT);
+                        throw new JsonParseException(stack, "was followed by too many colons");
+                    }
+                } else if (current == '"') {
+                    currentType = Type.STRING;
+                    fieldStart = i;
+                } else if (current == '{') {
+                    push(propertyName, Type.OBJECT);
+                    currentType = Type.OBJECT;
+                    currentContainer = options.newObject(propertyName);
+                    i++;
+                } else if (current == '[') {
+                    push(propertyName, Type.OBJECT);
+                    currentType = Type.ARRAY;
+                    currentContainer = options.newArray(propertyName);
+                    i++;
+                } else if (Constants.isLetter(current)) {
+                    currentType = Type.CONSTANT;
+                    fieldStart = i;
+                } else if (Constants.isNumberStart(current)) {
+                    currentType = Type.NUMBER;
+                    fieldStart = i;
+                } else {
+                    throw JsonParse.unexpectedCharacter(stack, source, i, current, Type.HEURISTIC);
+                }
+                break;
+            case OBJECT:
+                while (Constants.isWhitespace(current) && hasAfterWhitespace(++i)) {
+                    current = source.charAt(i);
+                }
+                if (current >= 0x80) {
+                    awaitCharacter(current);
+                }
+
+                if (current == ',') {
+                    if (expectingComma) {
+                        expectingComma = false;
+                        i++;
+                    } else {
+                        stack.push(propertyName, currentContainer, Type.OBJECT);
+                        throw new JsonParseException(stack, "followed by too many commas");
+                    }
+                } else if (current == '"') {
+                    if (expectingComma) {
+                        stack.push(propertyName, currentContainer, Type.OBJECT);
+                        throw new JsonParseException(stack, "wasn't followed by a comma");
+                    }
+                    if (++entries > options.limits.maxEntries) {
+                        throw options.limits.tooManyEntries(stack);
+                    }
+
+                    currentType = Type.NAME;
+                    fieldStart = i;
+                } else if (current == '}') {
+                    close();
+                } else if (!Constants.isWhitespace(current)) {
+                    throw JsonParse.unexpectedCharacter(stack, source, i, current, Type.OBJECT);
+                }
+                break;
+            case ARRAY:
+                while (Constants.isWhitespace(current) && hasAfterWhitespace(++i)) {
+                    current = source.charAt(i);
+                }
+                if (current >= 0x80) {
+                    awaitCharacter(current);
+                }
+
+                if (current != ',' && current != ']' && current != '}') {
+                    if (expectingComma) {
+                        stack.push(null, currentContainer, Type.ARRAY);
+                        throw new JsonParseException(stack, "wasn't preceded by a comma");
+                    }
+                    if (++entries > options.limits.maxEntries) {
+                        throw options.limits.tooManyEntries(stack);
+                    }
+                }
+
+                if (current == ',') {
+                    if (expectingComma) {
+                        expectingComma = false;
+                        i++;
+                    } else {
+                        stack.push(null, currentContainer, Type.ARRAY);
+                        throw new JsonParseException(stack, "preceded by too many commas");
+                    }
+                } else if (current == '"') {
+                    currentType = Type.STRING;
+                    fieldStart = i;
+                } else if (current == '{') {
+                    push(null, Type.ARRAY);
+                    currentType = Type.OBJECT;
+                    currentContainer = options.newObject(null);
+                    i++;
+                } else if (current == '[') {
+                    push(null, Type.ARRAY);
+                    currentType = Type.ARRAY;
+                    currentContainer = options.newArray(null);
+                    i++;
+                } else if (current == ']') {
+                    close();
+                } else if (Constants.isLetter(current)) {
+                    currentType = Type.CONSTANT;
+                    fieldStart = i;
+                } else if (Constants.isNumberStart(current)) {
+                    currentType = Type.NUMBER;
+                    fieldStart = i;
+                } else {
+                    stack.push(null, currentContainer, Type.ARRAY);
+                    throw JsonParse.unexpectedCharacter(stack, source, i, current, Type.ARRAY);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Enters an object or array within the current one, after checking it's not too deep
+     */
+    private void push(String name, Type type) {
+        stack.push(name, currentContainer, type, entries);
+        if (stack.size() >= options.limits.maxDepth) {
+            throw options.limits.tooDeep(stack);
+        }
+        entries = 0;
+    }
+
+    /**
+     * Finishes the current object or array, completing the value if it's the root
+     */
+    private void close() {
+        if (stack.isEmpty()) {
+            complete(options.finish(null, currentContainer));
+            return;
+        }
+
+        Object upperContainer = stack.container();
+        String parentName = stack.name();
+        currentType = stack.type();
+        entries = stack.index();
+        stack.pop();
+
+        JsonParse.add(upperContainer, parentName, options.finish(parentName, currentContainer));
+        currentContainer = upperContainer;
+        expectingComma = true;
+        i++;
+    }
+}
@@ -0,0 +1,558 @@
+package ca.fuzzlesoft;
+
+import ca.fuzzlesoft.JsonParse.Type;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Pull parser, running the same state machine as {@link JsonParse} but handing out one token at a time instead of
+ * building {@link java.util.Map}s and {@link java.util.List}s. Strings are only decoded if asked for, so walking past
+ * values that aren't needed is cheap.
+ *
+ * <pre>
+ * JsonReader reader = new JsonReader(json);
+ * reader.nextToken();                       // START_OBJECT
+ * while (reader.nextToken() == JsonReader.Token.NAME) {
+ *     if (reader.getName().equals("id")) {
+ *         reader.nextToken();
+ *         id = reader.getLong();
+ *     } else {
+ *         reader.skipValue();
+ *     }
+ * }
+ * </pre>
+ *
+ * Every string is checked as it's passed, even if it's never decoded, so the reader accepts exactly what
+ * {@link JsonParse} does, and fails the same way. {@link ParseOptions#withLimits(ParseLimits) Limits} are checked the
+ * same way too.
+ *
+ * Isn't thread safe, and can't be used after it has thrown a {@link JsonParseException}.
+ */
+public class JsonReader {
+
+    public enum Token {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL
+    }
+
+    private final Source source;
+    private final ParseStack stack = new ParseStack();
+    private final ParseLimits limits;
+    private final boolean checkStrings;
+    private final KeyCache keys;
+
+    private Type currentType; // null until the root value has been started
+    private Type containerType; // null when not within an object or array
+    private boolean expectingComma = false, expectingColon = false, finished = false;
+    private String propertyName;
+    private String lastName; // Last property name read at any depth, which JsonParse names its errors after
+    private int index; // Number of elements finished in the current array, or properties started in the object
+    private int i = 0;
+
+    private Token token;
+    private int tokenStart;
+    private String stringValue;
+    private long longValue;
+    private double doubleValue;
+    private boolean withDecimal;
+    private boolean booleanValue;
+
+    public JsonReader(String jsonString) {
+        this(jsonString, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @param jsonString read
+     * @param options only its limits, key cache and whether exceptions have stack traces apply
+     */
+    public JsonReader(String jsonString, ParseOptions options) {
+        this(new StringSource(jsonString), options);
+        options.limits.checkDocumentLength(jsonString.length(), options.stackTraces);
+    }
+
+    /**
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte to read
+     * @param length number of bytes to read
+     */
+    public JsonReader(byte[] bytes, int offset, int length) {
+        this(bytes, offset, length, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @see #JsonReader(byte[], int, int)
+     * @see #JsonReader(String, ParseOptions)
+     */
+    public JsonReader(byte[] bytes, int offset, int length, ParseOptions options) {
+        this(new ByteSource(bytes, offset, length), options);
+        options.limits.checkDocumentLength(length, options.stackTraces);
+    }
+
+    /**
+     * Reads through a small recycled buffer. If reader fails, a {@link JsonParseException} is thrown with the
+     * {@link java.io.IOException} as its cause. The reader isn't closed
+     */
+    public JsonReader(Reader reader) {
+        this(reader, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @see #JsonReader(Reader)
+     * @see #JsonReader(String, ParseOptions)
+     */
+    public JsonReader(Reader reader, ParseOptions options) {
+        this(new ReaderSource(reader, Source.STREAM_BUFFER_SIZE), options);
+        source.maxLength = options.limits.maxDocumentLength;
+    }
+
+    /**
+     * Reads UTF-8 through a small recycled buffer. If in fails, a {@link JsonParseException} is thrown with the
+     * {@link java.io.IOException} as its cause. The stream isn't closed
+     */
+    public JsonReader(InputStream in) {
+        this(in, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * @see #JsonReader(InputStream)
+     * @see #JsonReader(String, ParseOptions)
+     */
+    public JsonReader(InputStream in, ParseOptions options) {
+        this(new InputStreamSource(in, Source.STREAM_BUFFER_SIZE), options);
+        source.maxLength = options.limits.maxDocumentLength;
+    }
+
+    JsonReader(Source source) {
+        this(source, ParseOptions.DEFAULT);
+    }
+
+    JsonReader(Source source, ParseOptions options) {
+        this.source = source;
+        this.limits = options.limits;
+        this.checkStrings = limits.maxStringLength < Integer.MAX_VALUE;
+        this.keys = options.keyCache;
+        stack.stackTraces = options.stackTraces;
+    }
+
+    /**
+     * Advances to the next token
+     * @return the token, or null once the root value is finished. Anything after the root value is ignored
+     */
+    public Token nextToken() {
+        try {
+            return token = advance();
+        } catch (Source.ReadException e) {
+            throw new JsonParseException("Failed to read JSON input", e.getCause());
+        }
+    }
+
+    /**
+     * @return the token last returned by {@link #nextToken()}
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * Skips over the value that the current token belongs to. After {@link Token#NAME}, that property's value is
+     * skipped. After {@link Token#START_OBJECT} or {@link Token#START_ARRAY}, everything up to and including the
+     * matching end token is skipped. Does nothing for other tokens, which are already whole values
+     */
+    public void skipValue() {
+        Token skipped = token;
+        if (skipped == Token.NAME) {
+            skipped = nextToken();
+        }
+        if (skipped == Token.START_OBJECT || skipped == Token.START_ARRAY) {
+            int depth = 1;
+            while (depth > 0) {
+                Token next = nextToken();
+                if (next == Token.START_OBJECT || next == Token.START_ARRAY) {
+                    depth++;
+                } else if (next == Token.END_OBJECT || next == Token.END_ARRAY) {
+                    depth--;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the name of the current property, or null if not within an object
+     */
+    public String getName() {
+        return containerType == Type.OBJECT ? propertyName : null;
+    }
+
+    /**
+     * @return the contents of the current {@link Token#STRING}, or the name if the current token is
+     * {@link Token#NAME}
+     */
+    public String getString() {
+        if (token == Token.NAME) {
+            return propertyName;
+        }
+        expect(Token.STRING, "a string");
+        if (stringValue == null) {
+            stringValue = decodeString(tokenStart);
+        }
+        return stringValue;
+    }
+
+    /**
+     * @return the current {@link Token#NUMBER}, as a {@link Long} if it's an integer and a {@link Double} otherwise
+     */
+    public Number getNumber() {
+        expect(Token.NUMBER, "a number");
+        return withDecimal ? (Number) doubleValue : Numbers.box(longValue);
+    }
+
+    /**
+     * @return the current {@link Token#NUMBER}. Floating-point numbers are truncated
+     */
+    public long getLong() {
+        expect(Token.NUMBER, "a number");
+        return withDecimal ? (long) doubleValue : longValue;
+    }
+
+    /**
+     * @return the current {@link Token#NUMBER}
+     */
+    public double getDouble() {
+        expect(Token.NUMBER, "a number");
+        return withDecimal ? doubleValue : longValue;
+    }
+
+    /**
+     * @return the current {@link Token#BOOLEAN}
+     */
+    public boolean getBoolean() {
+        expect(Token.BOOLEAN, "a boolean");
+        return booleanValue;
+    }
+
+    /**
+     * @return a failure of the value that the current token starts (or is), at that value's path
+     */
+    JsonParseException valueError(String message) {
+        if (token != Token.START_OBJECT && token != Token.START_ARRAY && containerType != null) {
+            // Scalars have already been counted as an element of their array
+            stack.push(containerType == Type.OBJECT ? propertyName : null, null, containerType,
+                    containerType == Type.ARRAY ? index - 1 : index);
+        }
+        return new JsonParseException(stack, message);
+    }
+
+    private void expect(Token expected, String description) {
+        if (token != expected) {
+            throw new IllegalStateException("Current token is " + token + ", not " + description);
+        }
+    }
+
+    private Token advance() {
+        if (finished) {
+            return null;
+        }
+        i = source.release(i);
+        stringValue = null;
+        char current;
+
+        if (currentType == null) {
+            while (true) {
+                if (!source.has(i)) {
+                    throw new JsonParseException("Provided JSON string did not contain a value").at(source, i);
+                }
+                if (!Constants.isWhitespace(current = source.charAt(i))) break;
+                i++;
+            }
+
+            Token value = startValue(current);
+            if (value == null) {
+                throw new JsonParseException(stack, "Unexpected character \"" + JsonParse.character(source, i, current)
+                        + "\" instead of root value").at(source, i);
+            }
+            return value;
+        }
+
+        boolean afterWhitespace = false;
+        while (true) {
+            if (source.has(i)) {
+                current = source.charAt(i);
+                if (Constants.isWhitespace(current)) {
+                    afterWhitespace = true;
+                    i++;
+                    continue;
+                }
+            } else if (afterWhitespace && currentType != Type.OBJECT) {
+                // Like JsonParse, fail on the whitespace the input ended with
+                current = source.charAt(i - 1);
+            } else {
+                throw new JsonParseException("Root element wasn't terminated correctly (Missing ']' or '}'?)")
+                        .at(source, i);
+            }
+            afterWhitespace = false;
+
+            Token value;
+            switch (currentType) {
+                case HEURISTIC:
+                    if (current == ':') {
+                        if (expectingColon) {
+                            expectingColon = false;
+                            i++;
+                            continue;
+                        }
+                        throw error(true, "was followed by too many colons").at(source, i);
+                    } else if (expectingColon) {
+                        throw error(true, "wasn't followed by a colon").at(source, i);
+                    }
+
+                    value = startValue(current);
+                    if (value == null) {
+                        throw error(false, "unexpected character \"" + JsonParse.character(source, i, current)
+                                + "\" instead of object value").at(source, i);
+                    }
+                    return value;
+                case OBJECT:
+                    if (current == ',') {
+                        if (expectingComma) {
+                            expectingComma = false;
+                            i++;
+                            continue;
+                        }
+                        throw error(true, "followed by too many commas").at(source, i);
+                    } else if (current == '"') {
+                        if (expectingComma) {
+                            throw error(true, "wasn't followed by a comma").at(source, i);
+                        }
+
+                        if (index >= limits.maxEntries) {
+                            throw limits.tooManyEntries(stack).at(source, i);
+                        }
+                        try {
+                            if (checkStrings && source.skipString(i) - i - 1 > limits.maxStringLength) {
+                                throw limits.stringTooLong(stack).at(source, i);
+                            }
+                            lastName = propertyName = keys != null
+                                    ? source.extractKey(i, keys)
+                                    : source.extractString(i);
+                            i = source.stringEnd + 1;
+                            index++;
+                        } catch (IndexOutOfBoundsException e) {
+                            throw error(false, "String did not have ending quote").at(source, i);
+                        } catch (Source.MalformedEscape e) {
+                            throw JsonParse.malformedEscape(stack).at(source, e.index);
+                        }
+                        currentType = Type.HEURISTIC;
+                        expectingColon = true;
+                        return Token.NAME;
+                    } else if (current == '}') {
+                        i++;
+                        endContainer();
+                        return Token.END_OBJECT;
+                    }
+                    throw error(false, "unexpected character '" + JsonParse.character(source, i, current)
+                            + "' where a property name is expected. Missing quotes?").at(source, i);
+                default: // ARRAY
+                    if (current == ',') {
+                        if (expectingComma) {
+                            expectingComma = false;
+                            i++;
+                            continue;
+                        }
+                        throw error(true, "preceded by too many commas").at(source, i);
+                    } else if (current == ']') {
+                        i++;
+                        endContainer();
+                        return Token.END_ARRAY;
+                    } else if (expectingComma && current != '}') {
+                        throw error(true, "wasn't preceded by a comma").at(source, i);
+                    } else if (current != '}' && index >= limits.maxEntries) {
+                        throw limits.tooManyEntries(stack).at(source, i);
+                    }
+
+                    value = expectingComma ? null : startValue(current);
+                    if (value == null) {
+                        throw error(true, "Unexpected character \"" + JsonParse.character(source, i, current)
+                                + "\" instead of array value").at(source, i);
+                    }
+                    return value;
+            }
+        }
+    }
+
+    /**
+     * Reads a scalar, or steps into an object or array, starting at the current character
+     * @return the token, or null if current can't start a value
+     */
+    private Token startValue(char current) {
+        if (current == '{' || current == '[') {
+            if (containerType != null) {
+                stack.push(containerType == Type.OBJECT ? propertyName : null, null, containerType, index);
+                if (stack.size() >= limits.maxDepth) {
+                    throw limits.tooDeep(stack).at(source, i);
+                }
+            }
+            currentType = containerType = current == '{' ? Type.OBJECT : Type.ARRAY;
+            propertyName = null;
+            index = 0;
+            expectingComma = false;
+            i++;
+            return current == '{' ? Token.START_OBJECT : Token.START_ARRAY;
+        }
+
+        int fieldStart = i;
+        Token value;
+        if (current == '"') {
+            i = checkString(fieldStart) + 1;
+            tokenStart = fieldStart;
+            value = Token.STRING;
+        } else if (Constants.isLetter(current)) {
+            // Assume parsing a constant ("null", "true", "false", etc)
+            while (Constants.isLetter(current) && source.has(++i)) {
+                current = source.charAt(i);
+            }
+
+            String valueString = source.substring(fieldStart, i);
+            switch (valueString) {
+                case "false":
+                    booleanValue = false;
+                    value = Token.BOOLEAN;
+                    break;
+                case "true":
+                    booleanValue = true;
+                    value = Token.BOOLEAN;
+                    break;
+                case "null":
+                    value = Token.NULL;
+                    break;
+                default:
+                    throw error(true, "\"" + valueString + "\" is not a valid constant. Missing quotes?")
+                            .at(source, fieldStart);
+            }
+        } else if (Constants.isNumberStart(current)) {
+            boolean withE = false;
+            withDecimal = false;
+            do {
+                current = source.charAt(i);
+                if (!withDecimal && current == '.') {
+                    withDecimal = true;
+                } else if (!withE && (current == 'e' || current == 'E')) {
+                    withE = true;
+                } else if (!Constants.isNumberStart(current) && current != '+') {
+                    break;
+                }
+            } while (source.has(++i));
+
+            if (i - fieldStart > limits.maxNumberLength) {
+                throw limits.numberTooLong(at(true)).at(source, fieldStart);
+            }
+            try {
+                if (withDecimal || withE) {
+                    withDecimal = true;
+                    doubleValue = Numbers.decodeDouble(source, fieldStart, i);
+                } else {
+                    longValue = Numbers.decodeLong(source, fieldStart, i);
+                }
+            } catch (NumberFormatException e) {
+                throw error(false, "\"" + source.substring(fieldStart, i) + "\" expected to be a number, but wasn't")
+                        .at(source, fieldStart);
+            }
+            value = Token.NUMBER;
+        } else {
+            return null;
+        }
+
+        if (containerType == null) {
+            finished = true;
+        } else {
+            currentType = containerType;
+            expectingComma = true;
+            if (containerType == Type.ARRAY) {
+                index++;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Finds the end of the string starting at fieldStart, checking it over the same as {@link JsonParse} would while
+     * decoding it, without decoding it
+     * @return the index of the closing quote
+     */
+    private int checkString(int fieldStart) {
+        if (checkStrings) {
+            // JsonParse finds the end before decoding anything
+            int end;
+            try {
+                end = source.skipString(fieldStart);
+            } catch (IndexOutOfBoundsException e) {
+                throw error(false, "String did not have ending quote").at(source, fieldStart);
+            }
+            if (end - fieldStart - 1 > limits.maxStringLength) {
+                throw limits.stringTooLong(at(true)).at(source, fieldStart);
+            }
+        }
+        int end = source.checkString(fieldStart);
+        if (end < 0) {
+            stringValue = decodeString(fieldStart); // Throws what JsonParse would
+            end = source.stringEnd;
+        }
+        return end;
+    }
+
+    /**
+     * Fails the same way as {@link JsonParse}, including when skipping the string found an ending quote that an
+     * escape runs over
+     */
+    private String decodeString(int fieldStart) {
+        try {
+            return source.extractString(fieldStart);
+        } catch (IndexOutOfBoundsException e) {
+            throw new JsonParseException(stack, "String did not have ending quote").at(source, fieldStart);
+        } catch (Source.MalformedEscape e) {
+            throw JsonParse.malformedEscape(stack).at(source, e.index);
+        }
+    }
+
+    private void endContainer() {
+        if (stack.isEmpty()) {
+            finished = true;
+            return;
+        }
+
+        currentType = containerType = stack.type();
+        propertyName = stack.name();
+        index = containerType == Type.ARRAY ? stack.index() + 1 : stack.index();
+        stack.pop();
+        expectingComma = true;
+    }
+
+    /**
+     * Names the failure the same way as {@link JsonParse}, which is why a failure within an object is put under the
+     * last property name read, even if that was in a nested object that's since ended
+     * @param withCurrent whether the failure is within the current property or array element, as opposed to being
+     *                    within the current object or array as a whole
+     */
+    private JsonParseException error(boolean withCurrent, String message) {
+        return new JsonParseException(at(withCurrent), message);
+    }
+
+    /**
+     * @see #error(boolean, String)
+     * @return the stack, with the current property or array element pushed if withCurrent
+     */
+    private ParseStack at(boolean withCurrent) {
+        if (withCurrent && containerType != null) {
+            stack.push(containerType == Type.OBJECT ? lastName : null, null, containerType,
+                    containerType == Type.ARRAY ? index : 0);
+        }
+        return stack;
+    }
+}
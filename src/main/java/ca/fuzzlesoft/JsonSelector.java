@@ -0,0 +1,455 @@
+package ca.fuzzlesoft;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pulls values out of JSON by path, without building anything that wasn't asked for. Paths are written the way
+ * {@link JsonParseException} prints them: {@code <root>.request.user.id} or {@code <root>.items.[0].sku}. Use
+ * {@code [*]} for every element of an array and {@code *} for every property of an object, as in
+ * {@code <root>.items.[*].sku}. Property names containing '.' can't be selected.
+ *
+ * <p>Compile once and reuse, instances are immutable and thread safe. Subtrees that can't contain a selected path are
+ * skipped by only tracking quotes and brackets, so malformed JSON within them isn't noticed. Errors found on the way
+ * carry their path, and selected values are parsed with {@link JsonParse}, so errors within them have paths relative to
+ * the selected value.</p>
+ */
+public final class JsonSelector {
+
+    /**
+     * Marks a path that was found with a value of null, as opposed to not found at all
+     */
+    private static final Object NULL = new Object();
+
+    private final String[] paths;
+    private final boolean[] multiple;
+    private final Node root = new Node();
+
+    private JsonSelector(String[] paths) {
+        this.paths = paths.clone();
+        this.multiple = new boolean[paths.length];
+        for (int id = 0; id < paths.length; id++) {
+            String path = paths[id];
+            if (!path.equals("<root>") && !path.startsWith("<root>.")) {
+                throw new IllegalArgumentException("Path \"" + path + "\" doesn't start with <root>");
+            }
+
+            Node node = root;
+            if (path.length() > "<root>".length()) {
+                for (String segment : path.substring("<root>.".length()).split("\\.", -1)) {
+                    if (segment.isEmpty()) {
+                        throw new IllegalArgumentException("Path \"" + path + "\" has an empty segment");
+                    }
+                    multiple[id] |= segment.equals("*") || segment.equals("[*]");
+                    node = node.child(segment);
+                }
+            }
+            node.terminals = append(node.terminals, id);
+        }
+    }
+
+    /**
+     * @param paths paths to select, such as {@code <root>.items.[*].sku}
+     * @return a selector for those paths
+     * @throws IllegalArgumentException if a path is malformed
+     */
+    public static JsonSelector compile(String... paths) {
+        return new JsonSelector(paths);
+    }
+
+    /**
+     * Selects the compiled paths from jsonString
+     * @param jsonString JSON to select from
+     * @return each path that was found, mapped to its value, in the order the paths were compiled. Paths containing a
+     * wildcard always map to a {@link List} of every match
+     */
+    public Map<String, Object> select(String jsonString) {
+        return select(new StringSource(jsonString));
+    }
+
+    /**
+     * Selects the compiled paths from UTF-8 encoded bytes. Only selected strings and property names that can't be
+     * compared byte-for-byte are decoded
+     * @param bytes UTF-8 encoded JSON
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return each path that was found, mapped to its value, in the order the paths were compiled. Paths containing a
+     * wildcard always map to a {@link List} of every match
+     */
+    public Map<String, Object> select(byte[] bytes, int offset, int length) {
+        return select(new ByteSource(bytes, offset, length));
+    }
+
+    Map<String, Object> select(Source source) {
+        Object[] found = new Object[paths.length];
+        for (int id = 0; id < paths.length; id++) {
+            if (multiple[id]) {
+                found[id] = new ArrayList<>();
+            }
+        }
+
+        int i = skipWhitespace(source, 0);
+        if (!source.has(i)) {
+            throw new JsonParseException("Provided JSON string did not contain a value").at(source, i);
+        }
+        walk(source, i, new Node[]{root}, 1, found, new ParseStack());
+
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (int id = 0; id < paths.length; id++) {
+            if (found[id] != null) {
+                selected.put(paths[id], found[id] == NULL ? null : found[id]);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Walks the value starting at i, which every one of nodes (the first count of them) has reached
+     * @param stack path to the value, for errors
+     * @return index after the value
+     */
+    private int walk(Source source, int i, Node[] nodes, int count, Object[] found, ParseStack stack) {
+        boolean terminal = false;
+        boolean children = false;
+        for (int n = 0; n < count; n++) {
+            terminal |= nodes[n].terminals != null;
+            children |= nodes[n].hasChildren();
+        }
+
+        if (terminal) {
+            Object value = JsonParse.parse(source, i, ParseOptions.DEFAULT);
+            for (int n = 0; n < count; n++) {
+                collect(value, nodes[n], found);
+            }
+            return source.valueEnd;
+        }
+
+        char current = source.charAt(i);
+        if (!children || (current != '{' && current != '[')) {
+            return skip(source, i, stack, -1, -1);
+        }
+
+        boolean object = current == '{';
+        Node[] matched = new Node[count * 2];
+        int index = 0;
+        i++;
+        while (true) {
+            i = skipWhitespace(source, i);
+            if (!source.has(i)) {
+                throw unterminated(stack).at(source, i);
+            }
+            current = source.charAt(i);
+            if (current == '}' || current == ']') {
+                return i + 1;
+            } else if (current == ',') {
+                i++;
+                continue;
+            }
+
+            int matches = 0;
+            int nameStart = -1;
+            if (object) {
+                if (current != '"') {
+                    throw JsonParse.unexpectedCharacter(stack, source, i, current, JsonParse.Type.OBJECT)
+                            .at(source, i);
+                }
+                nameStart = i;
+                int nameEnd = skipString(source, i, stack, -1, -1);
+                try {
+                    for (int n = 0; n < count; n++) {
+                        matches = nodes[n].matchName(source, i, nameEnd, matched, matches);
+                    }
+                } catch (Source.MalformedEscape e) {
+                    throw JsonParse.malformedEscape(stack).at(source, e.index);
+                }
+                i = skipWhitespace(source, nameEnd + 1);
+                if (!source.has(i) || source.charAt(i) != ':') {
+                    throw new JsonParseException(at(stack, source, nameStart, 0), "wasn't followed by a colon")
+                            .at(source, i);
+                }
+                i = skipWhitespace(source, i + 1);
+                if (!source.has(i)) {
+                    throw unterminated(stack).at(source, i);
+                }
+            } else {
+                for (int n = 0; n < count; n++) {
+                    matches = nodes[n].matchIndex(index, matched, matches);
+                }
+                index++;
+            }
+
+            if (matches == 0) {
+                i = skip(source, i, stack, nameStart, index - 1);
+            } else {
+                i = walk(source, i, matched, matches, found, at(stack, source, nameStart, index - 1));
+                stack.pop();
+            }
+        }
+    }
+
+    /**
+     * Adds value, and anything within it that's selected from node, to found
+     */
+    @SuppressWarnings("unchecked")
+    private void collect(Object value, Node node, Object[] found) {
+        if (node.terminals != null) {
+            for (int id : node.terminals) {
+                if (multiple[id]) {
+                    ((List<Object>) found[id]).add(value);
+                } else if (found[id] == null) {
+                    found[id] = value == null ? NULL : value;
+                }
+            }
+        }
+
+        if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            for (int n = 0; n < node.names.length; n++) {
+                if (map.containsKey(node.names[n])) {
+                    collect(map.get(node.names[n]), node.named[n], found);
+                }
+            }
+            if (node.anyName != null) {
+                for (Object child : map.values()) {
+                    collect(child, node.anyName, found);
+                }
+            }
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            for (int n = 0; n < node.indexes.length; n++) {
+                if (node.indexes[n] < list.size()) {
+                    collect(list.get(node.indexes[n]), node.indexed[n], found);
+                }
+            }
+            if (node.anyIndex != null) {
+                for (Object child : list) {
+                    collect(child, node.anyIndex, found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the value starting at i by tracking quotes and brackets only
+     * @param stack path to the value's container, for errors
+     * @param nameStart index of the value's property name, or -1
+     * @param index index of the value within an array, or -1 if stack already leads to the value
+     * @return index after the value
+     */
+    private static int skip(Source source, int i, ParseStack stack, int nameStart, int index) {
+        char current = source.charAt(i);
+        if (current == '"') {
+            return skipString(source, i, stack, nameStart, index) + 1;
+        } else if (current == '{' || current == '[') {
+            int depth = 0;
+            do {
+                if (!source.has(i)) {
+                    throw unterminated(at(stack, source, nameStart, index)).at(source, i);
+                }
+                current = source.charAt(i);
+                if (current == '"') {
+                    i = skipString(source, i, stack, nameStart, index);
+                } else if (current == '{' || current == '[') {
+                    depth++;
+                } else if (current == '}' || current == ']') {
+                    depth--;
+                }
+                i++;
+            } while (depth > 0);
+            return i;
+        }
+
+        while (source.has(i) && (current = source.charAt(i)) != ',' && current != '}' && current != ']'
+                && !Constants.isWhitespace(current)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @see #skip(Source, int, ParseStack, int, int)
+     */
+    private static int skipString(Source source, int i, ParseStack stack, int nameStart, int index) {
+        try {
+            return source.skipString(i);
+        } catch (IndexOutOfBoundsException e) {
+            throw new JsonParseException(at(stack, source, nameStart, index), "String did not have ending quote")
+                    .at(source, i);
+        }
+    }
+
+    /**
+     * Pushes the property whose name starts at nameStart, or else the element at index, if either is given. Names are
+     * only decoded here, for values that are walked into or that fail
+     * @return stack
+     */
+    private static ParseStack at(ParseStack stack, Source source, int nameStart, int index) {
+        if (nameStart < 0) {
+            if (index >= 0) {
+                stack.push(null, null, JsonParse.Type.ARRAY, index);
+            }
+            return stack;
+        }
+        try {
+            stack.push(source.extractString(nameStart), null, JsonParse.Type.OBJECT);
+        } catch (Source.MalformedEscape e) {
+            throw JsonParse.malformedEscape(stack).at(source, e.index);
+        }
+        return stack;
+    }
+
+    private static JsonParseException unterminated(ParseStack stack) {
+        return new JsonParseException(stack, "wasn't terminated correctly (Missing ']' or '}'?)");
+    }
+
+    private static int skipWhitespace(Source source, int i) {
+        while (source.has(i) && Constants.isWhitespace(source.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] appended;
+        if (array == null) {
+            appended = new int[1];
+        } else {
+            appended = new int[array.length + 1];
+            System.arraycopy(array, 0, appended, 0, array.length);
+        }
+        appended[appended.length - 1] = value;
+        return appended;
+    }
+
+    /**
+     * A step along one or more paths. Paths sharing a prefix share nodes
+     */
+    private static class Node {
+        int[] terminals; // Ids of the paths that end here
+        String[] names = new String[0];
+        boolean[] asciiNames = new boolean[0];
+        Node[] named = new Node[0];
+        int[] indexes = new int[0];
+        Node[] indexed = new Node[0];
+        Node anyName;
+        Node anyIndex;
+
+        Node child(String segment) {
+            if (segment.equals("*")) {
+                return anyName == null ? anyName = new Node() : anyName;
+            } else if (segment.equals("[*]")) {
+                return anyIndex == null ? anyIndex = new Node() : anyIndex;
+            } else if (segment.startsWith("[") && segment.endsWith("]")) {
+                int index;
+                try {
+                    index = Integer.parseInt(segment.substring(1, segment.length() - 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("\"" + segment + "\" isn't an array index");
+                }
+                for (int n = 0; n < indexes.length; n++) {
+                    if (indexes[n] == index) {
+                        return indexed[n];
+                    }
+                }
+                indexes = append(indexes, index);
+                indexed = grow(indexed);
+                return indexed[indexed.length - 1] = new Node();
+            }
+
+            for (int n = 0; n < names.length; n++) {
+                if (names[n].equals(segment)) {
+                    return named[n];
+                }
+            }
+            String[] grownNames = new String[names.length + 1];
+            System.arraycopy(names, 0, grownNames, 0, names.length);
+            grownNames[names.length] = segment;
+            names = grownNames;
+
+            boolean[] grownAscii = new boolean[asciiNames.length + 1];
+            System.arraycopy(asciiNames, 0, grownAscii, 0, asciiNames.length);
+            grownAscii[asciiNames.length] = isAscii(segment);
+            asciiNames = grownAscii;
+
+            named = grow(named);
+            return named[named.length - 1] = new Node();
+        }
+
+        boolean hasChildren() {
+            return names.length > 0 || indexes.length > 0 || anyName != null || anyIndex != null;
+        }
+
+        /**
+         * Adds the children that the property name between the quotes at start and end leads to
+         * @return the new number of matches
+         */
+        int matchName(Source source, int start, int end, Node[] matched, int matches) {
+            for (int n = 0; n < names.length; n++) {
+                if (nameEquals(source, start, end, names[n], asciiNames[n])) {
+                    matched[matches++] = named[n];
+                    break;
+                }
+            }
+            if (anyName != null) {
+                matched[matches++] = anyName;
+            }
+            return matches;
+        }
+
+        /**
+         * Adds the children that the array element at index leads to
+         * @return the new number of matches
+         */
+        int matchIndex(int index, Node[] matched, int matches) {
+            for (int n = 0; n < indexes.length; n++) {
+                if (indexes[n] == index) {
+                    matched[matches++] = indexed[n];
+                    break;
+                }
+            }
+            if (anyIndex != null) {
+                matched[matches++] = anyIndex;
+            }
+            return matches;
+        }
+
+        /**
+         * Compares the raw property name against name, only decoding it if it contains escapes or name isn't ASCII
+         * @throws Source.MalformedEscape if it has to be decoded and a unicode escape isn't four hex digits
+         */
+        private static boolean nameEquals(Source source, int start, int end, String name, boolean ascii) {
+            if (ascii && end - start - 1 == name.length()) {
+                int k = 0;
+                while (k < name.length() && source.charAt(start + 1 + k) == name.charAt(k)) {
+                    k++;
+                }
+                if (k == name.length()) {
+                    return true;
+                }
+            }
+
+            boolean escaped = !ascii;
+            for (int i = start + 1; i < end && !escaped; i++) {
+                escaped = source.charAt(i) == '\\';
+            }
+            return escaped && name.equals(source.extractString(start));
+        }
+
+        private static boolean isAscii(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) > 0x7F) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Node[] grow(Node[] nodes) {
+            Node[] grown = new Node[nodes.length + 1];
+            System.arraycopy(nodes, 0, grown, 0, nodes.length);
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,696 @@
+package ca.fuzzlesoft;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Writes {@link Map}s, {@link List}s, strings, numbers, booleans and nulls as JSON, the other way around from
+ * {@link JsonParse}. Anything that JsonParse returns is written so that it parses back into the same thing, even
+ * doubles too large to be finite, which are written as {@code 1e999} or {@code -1e999}:
+ *
+ * <pre>
+ * String json = JsonWrite.toString(JsonParse.map(json));
+ * </pre>
+ *
+ * Output goes through a buffer that's reused from a small pool, so writing doesn't allocate once it's big enough:
+ * numbers are formatted straight into it (except for doubles that need 17 digits, which fall back on
+ * {@link Double#toString(double)}), and strings are copied in whole unless a table lookup finds something that
+ * needs escaping. Maps, lists and arrays more than 128 deep are written from a stack of their own rather than by
+ * recursion, so they can be nested as deeply as {@link JsonParse} reads them (a map or list that contains itself
+ * isn't noticed, and is written until memory runs out). Is thread safe.
+ *
+ * <p>Besides maps, lists and the boxes {@link JsonParse} returns, other {@link Iterable}s, arrays,
+ * {@link CharSequence}s, {@link Character}s, enums (by name) and any other {@link Number} (by
+ * {@code toString()}) can be written. Map keys are written with {@link String#valueOf(Object)}. These don't all parse
+ * back the same: JsonParse only has longs and doubles, so a {@link java.math.BigDecimal} comes back rounded to a
+ * double, and a {@link java.math.BigInteger} outside the range of a long is written in full but can't be parsed.</p>
+ */
+public final class JsonWrite {
+
+    private static final int BUFFER_SIZE = 8192;
+    // Largest buffer that's kept for the next write, in characters
+    private static final int MAX_KEPT_SIZE = 1 << 18;
+    private static final int FRAMES_SIZE = 16;
+    // How deep maps, lists and arrays are written by recursion, before going on with a stack of frames
+    private static final int RECURSION_DEPTH = 128;
+
+    // Writers not in use, taken and given back the same way as the parsers of JsonParser.SHARED, so that threads don't
+    // each hold on to a buffer
+    private static final AtomicReferenceArray<JsonWrite> WRITERS =
+            new AtomicReferenceArray<>(Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+
+    // For each ASCII character, 0 if it's written as it is, 'u' if it's written as a unicode escape, otherwise what
+    // follows the backslash
+    private static final char[] ESCAPES = new char[128];
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    // Powers of ten that doubles hold exactly
+    private static final double[] POWERS = new double[23];
+    private static final double EXACT_INTEGERS = 1L << 53;
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+
+    // Maps, lists and arrays being written below RECURSION_DEPTH, innermost last
+    private Frame[] frames = new Frame[FRAMES_SIZE];
+    private int depth;
+    private int deepest; // Frames used since the last release, which may still hold on to containers
+
+    // Where full buffers go, or neither to keep everything in buf
+    private Appendable appendable;
+    private OutputStream stream;
+    private byte[] bytes;
+
+    private JsonWrite() {}
+
+    /**
+     * @param value written
+     * @return value as JSON
+     * @throws IllegalArgumentException if value (or something in it) can't be written as JSON, such as
+     * {@link Double#NaN}
+     */
+    public static String toString(Object value) {
+        JsonWrite writer = acquire();
+        try {
+            writer.value(value, 0);
+            return new String(writer.buf, 0, writer.pos);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Nothing to fail without a sink
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * Writes value as JSON to out, in chunks
+     * @param value written
+     * @param out where to write value, such as a {@link Writer} or {@link StringBuilder}. Isn't flushed or closed
+     * @throws IOException if out fails
+     * @throws IllegalArgumentException if value (or something in it) can't be written as JSON. Some of it may
+     * already have been written to out
+     */
+    public static void writeTo(Object value, Appendable out) throws IOException {
+        JsonWrite writer = acquire();
+        try {
+            writer.appendable = out;
+            writer.value(value, 0);
+            writer.flush();
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * Writes value as UTF-8 encoded JSON to out, in chunks
+     * @param value written
+     * @param out where to write value. Isn't flushed or closed
+     * @throws IOException if out fails
+     * @throws IllegalArgumentException if value (or something in it) can't be written as JSON. Some of it may
+     * already have been written to out
+     */
+    public static void writeTo(Object value, OutputStream out) throws IOException {
+        JsonWrite writer = acquire();
+        try {
+            writer.stream = out;
+            if (writer.bytes == null) {
+                writer.bytes = new byte[BUFFER_SIZE * 3];
+            }
+            writer.value(value, 0);
+            writer.flush();
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * @return a writer that no one else is using, from the pool if there's one in it
+     */
+    private static JsonWrite acquire() {
+        int size = WRITERS.length();
+        int slot = home(size);
+        for (int n = 0; n < size; n++) {
+            JsonWrite writer = WRITERS.get(slot);
+            if (writer != null && WRITERS.compareAndSet(slot, writer, null)) {
+                return writer;
+            }
+            if (++slot == size) {
+                slot = 0;
+            }
+        }
+        return new JsonWrite();
+    }
+
+    /**
+     * Resets this writer and gives it back to the pool, unless the pool is already full
+     */
+    private void release() {
+        pos = 0;
+        appendable = null;
+        stream = null;
+        for (int i = 0; i < deepest; i++) {
+            frames[i].clear();
+        }
+        depth = 0;
+        deepest = 0;
+        // Don't hold on to the room an unusually large value needed
+        if (buf.length > MAX_KEPT_SIZE) {
+            buf = new char[BUFFER_SIZE];
+        }
+        if (bytes != null && bytes.length > BUFFER_SIZE * 3) {
+            bytes = null;
+        }
+        if (frames.length > FRAMES_SIZE) {
+            frames = new Frame[FRAMES_SIZE];
+        }
+
+        int size = WRITERS.length();
+        int slot = home(size);
+        for (int n = 0; n < size; n++) {
+            if (WRITERS.get(slot) == null && WRITERS.compareAndSet(slot, null, this)) {
+                return;
+            }
+            if (++slot == size) {
+                slot = 0;
+            }
+        }
+    }
+
+    private static int home(int size) {
+        return (int) ((Thread.currentThread().getId() & Long.MAX_VALUE) % size);
+    }
+
+    /**
+     * Writes value, recursing into the maps, lists and arrays in it (which is quickest) until they're too deep
+     * @param depth how many maps, lists and arrays value is in
+     */
+    @SuppressWarnings("unchecked")
+    private void value(Object value, int depth) throws IOException {
+        if (scalar(value)) {
+            return;
+        } else if (depth == RECURSION_DEPTH) {
+            nested(value);
+        } else if (value instanceof Map) {
+            object((Map<Object, Object>) value, depth + 1);
+        } else if (value instanceof List && value instanceof RandomAccess) {
+            array((List<Object>) value, depth + 1);
+        } else if (value instanceof Iterable) {
+            Iterator<?> iterator = ((Iterable<?>) value).iterator();
+            room(1);
+            buf[pos++] = '[';
+            while (iterator.hasNext()) {
+                value(iterator.next(), depth + 1);
+                if (iterator.hasNext()) {
+                    room(1);
+                    buf[pos++] = ',';
+                }
+            }
+            room(1);
+            buf[pos++] = ']';
+        } else {
+            room(1);
+            buf[pos++] = '[';
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                if (i > 0) {
+                    room(1);
+                    buf[pos++] = ',';
+                }
+                value(Array.get(value, i), depth + 1);
+            }
+            room(1);
+            buf[pos++] = ']';
+        }
+    }
+
+    private void object(Map<Object, Object> map, int depth) throws IOException {
+        room(1);
+        buf[pos++] = '{';
+        boolean first = true;
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            room(1);
+            if (!first) {
+                buf[pos++] = ',';
+            }
+            first = false;
+            string(String.valueOf(entry.getKey()));
+            room(1);
+            buf[pos++] = ':';
+            value(entry.getValue(), depth);
+        }
+        room(1);
+        buf[pos++] = '}';
+    }
+
+    private void array(List<Object> list, int depth) throws IOException {
+        if (list instanceof NumberList && ((NumberList) list).isLongs()) {
+            longs((NumberList) list);
+            return;
+        }
+        room(1);
+        buf[pos++] = '[';
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) {
+                room(1);
+                buf[pos++] = ',';
+            }
+            value(list.get(i), depth);
+        }
+        room(1);
+        buf[pos++] = ']';
+    }
+
+    /**
+     * Writes a map, list, array or other iterable that's too deep to recurse into, keeping it and the ones in it on
+     * {@link #frames} instead
+     */
+    private void nested(Object value) throws IOException {
+        while (true) {
+            if (!scalar(value)) {
+                open(value);
+            }
+
+            // Move on to the next value of the innermost container that has one, closing those that don't
+            while (true) {
+                if (depth == 0) {
+                    return;
+                }
+                Frame frame = frames[depth - 1];
+                if (frame.hasNext()) {
+                    room(1);
+                    if (frame.index > 0) {
+                        buf[pos++] = ',';
+                    }
+                    value = frame.next(this);
+                    break;
+                }
+                room(1);
+                buf[pos++] = frame.close();
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Starts writing a map, list, array or other iterable, pushing a frame to write its contents from
+     */
+    private void open(Object value) throws IOException {
+        if (value instanceof NumberList && ((NumberList) value).isLongs()) {
+            longs((NumberList) value);
+            return;
+        }
+
+        if (depth == frames.length) {
+            Frame[] grown = new Frame[frames.length * 2];
+            System.arraycopy(frames, 0, grown, 0, depth);
+            frames = grown;
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = frames[depth] = new Frame();
+        }
+        frame.open(value);
+        if (++depth > deepest) {
+            deepest = depth;
+        }
+
+        room(1);
+        buf[pos++] = value instanceof Map ? '{' : '[';
+    }
+
+    /**
+     * Writes value, unless it's a map, list, array or other iterable
+     * @return false if value is one of those, and was left for the caller
+     */
+    private boolean scalar(Object value) throws IOException {
+        if (value == null) {
+            ascii("null");
+        } else if (value instanceof String) {
+            string((String) value);
+        } else if (value instanceof Map || value instanceof List && value instanceof RandomAccess) {
+            return false;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            integer(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            decimal((Double) value);
+        } else if (value instanceof Boolean) {
+            ascii((Boolean) value ? "true" : "false");
+        } else if (value instanceof Iterable) {
+            return false;
+        } else if (value instanceof Float) {
+            float f = (Float) value;
+            if (Float.isInfinite(f)) {
+                decimal(f);
+            } else if (Float.isNaN(f)) {
+                throw new IllegalArgumentException(f + " can't be written as JSON");
+            } else {
+                ascii(Float.toString(f));
+            }
+        } else if (value instanceof Number) {
+            ascii(value.toString());
+        } else if (value instanceof CharSequence || value instanceof Character) {
+            string(value.toString());
+        } else if (value instanceof Enum) {
+            string(((Enum<?>) value).name());
+        } else if (value.getClass().isArray()) {
+            return false;
+        } else {
+            throw new IllegalArgumentException("Can't write " + value.getClass().getName() + " as JSON");
+        }
+        return true;
+    }
+
+    /**
+     * Writes a list of longs whole, skipping boxing altogether
+     */
+    private void longs(NumberList numbers) throws IOException {
+        room(1);
+        buf[pos++] = '[';
+        for (int i = 0; i < numbers.size(); i++) {
+            if (i > 0) {
+                room(1);
+                buf[pos++] = ',';
+            }
+            integer(numbers.getLong(i));
+        }
+        room(1);
+        buf[pos++] = ']';
+    }
+
+    /**
+     * A map, list, array or other iterable part way through being written
+     */
+    private static final class Frame {
+        private static final int ENTRIES = 0, LIST = 1, ARRAY = 2, ITERATOR = 3;
+
+        // Only the field for the kind of container is used, the others may be left over from before
+        private int kind;
+        private Iterator<?> iterator; // For maps' entries, and other iterables
+        private List<?> list; // For lists with random access
+        private Object array;
+        private int index; // Values written so far
+        private int length;
+
+        void open(Object container) {
+            index = 0;
+            if (container instanceof Map) {
+                kind = ENTRIES;
+                iterator = ((Map<?, ?>) container).entrySet().iterator();
+            } else if (container instanceof List && container instanceof RandomAccess) {
+                kind = LIST;
+                list = (List<?>) container;
+            } else if (container instanceof Iterable) {
+                kind = ITERATOR;
+                iterator = ((Iterable<?>) container).iterator();
+            } else {
+                kind = ARRAY;
+                array = container;
+                length = Array.getLength(container);
+            }
+        }
+
+        boolean hasNext() {
+            switch (kind) {
+                case LIST:
+                    return index < list.size();
+                case ARRAY:
+                    return index < length;
+                default:
+                    return iterator.hasNext();
+            }
+        }
+
+        /**
+         * @return the next value, after writing its key to writer if it's in a map
+         */
+        Object next(JsonWrite writer) throws IOException {
+            int i = index++;
+            switch (kind) {
+                case ENTRIES:
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) iterator.next();
+                    writer.string(String.valueOf(entry.getKey()));
+                    writer.room(1);
+                    writer.buf[writer.pos++] = ':';
+                    return entry.getValue();
+                case LIST:
+                    return list.get(i);
+                case ARRAY:
+                    return Array.get(array, i);
+                default:
+                    return iterator.next();
+            }
+        }
+
+        char close() {
+            return kind == ENTRIES ? '}' : ']';
+        }
+
+        /**
+         * Lets go of the containers, so a writer back in the pool doesn't keep them alive
+         */
+        void clear() {
+            iterator = null;
+            list = null;
+            array = null;
+        }
+    }
+
+    private void string(String value) throws IOException {
+        int length = value.length();
+        int start = 0;
+        if (length + 2 <= buf.length - pos) {
+            // Copy it all in, and only go through it character by character if something needs escaping
+            value.getChars(0, length, buf, pos + 1);
+            int end = pos + 1 + length;
+            int i = pos + 1;
+            while (i < end && !escaped(buf[i])) {
+                i++;
+            }
+            buf[pos] = '"';
+            if (i == end) {
+                buf[end] = '"';
+                pos = end + 1;
+                return;
+            }
+            start = i - pos - 1;
+            pos = i;
+        } else {
+            room(1);
+            buf[pos++] = '"';
+        }
+
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            room(6);
+            if (!escaped(c)) {
+                buf[pos++] = c;
+            } else if (c < 0x80 && ESCAPES[c] != 'u') {
+                buf[pos++] = '\\';
+                buf[pos++] = ESCAPES[c];
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                buf[pos++] = c;
+                buf[pos++] = value.charAt(++i);
+            } else {
+                // Control characters, and surrogates that aren't part of a pair, which UTF-8 can't encode
+                buf[pos++] = '\\';
+                buf[pos++] = 'u';
+                buf[pos++] = HEX[c >>> 12];
+                buf[pos++] = HEX[(c >>> 8) & 0xF];
+                buf[pos++] = HEX[(c >>> 4) & 0xF];
+                buf[pos++] = HEX[c & 0xF];
+            }
+        }
+        room(1);
+        buf[pos++] = '"';
+    }
+
+    /**
+     * @return true if c isn't simply copied into strings: it needs escaping, or it's a surrogate that might not be
+     * part of a pair
+     */
+    private static boolean escaped(char c) {
+        return c < 0x80 ? ESCAPES[c] != 0 : c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    private void integer(long value) throws IOException {
+        room(20);
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                ascii("-9223372036854775808");
+                return;
+            }
+            buf[pos++] = '-';
+            value = -value;
+        }
+        digits(value, digitCount(value));
+    }
+
+    /**
+     * Writes value with as few digits after the point as it takes to parse back into value. Looks for the fewest
+     * decimals k for which value is an integer m divided by 10^k: m and 10^k are both exact, so dividing them is
+     * correctly rounded, the same as parsing "m / 10^k" is
+     */
+    private void decimal(double value) throws IOException {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException(value + " can't be written as JSON");
+        } else if (Double.isInfinite(value)) {
+            // Overflows back to infinity, as it did when parsed
+            ascii(value > 0 ? "1e999" : "-1e999");
+            return;
+        }
+        room(26);
+        if (value == 0) {
+            ascii(1 / value < 0 ? "-0.0" : "0.0");
+            return;
+        }
+
+        double abs = Math.abs(value);
+        for (int k = 0; k < POWERS.length; k++) {
+            double scaled = Math.rint(abs * POWERS[k]);
+            if (scaled >= EXACT_INTEGERS) {
+                break;
+            }
+            if (scaled / POWERS[k] == abs) {
+                if (value < 0) {
+                    buf[pos++] = '-';
+                }
+                long m = (long) scaled;
+                int count = digitCount(m);
+                if (k == 0) {
+                    digits(m, count);
+                    buf[pos++] = '.';
+                    buf[pos++] = '0';
+                } else if (count <= k) {
+                    buf[pos++] = '0';
+                    buf[pos++] = '.';
+                    for (int i = count; i < k; i++) {
+                        buf[pos++] = '0';
+                    }
+                    digits(m, count);
+                } else {
+                    // Digits with the point k from the end
+                    int i = pos + count + 1;
+                    pos = i;
+                    for (int d = 0; d < count; d++) {
+                        if (d == k) {
+                            buf[--i] = '.';
+                        }
+                        buf[--i] = (char) ('0' + m % 10);
+                        m /= 10;
+                    }
+                }
+                return;
+            }
+        }
+        ascii(Double.toString(value));
+    }
+
+    private void digits(long value, int count) {
+        int i = pos + count;
+        pos = i;
+        do {
+            buf[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        for (long power = 10; count < 19 && value >= power; power *= 10) {
+            count++;
+        }
+        return count;
+    }
+
+    private void ascii(String text) throws IOException {
+        room(text.length());
+        text.getChars(0, text.length(), buf, pos);
+        pos += text.length();
+    }
+
+    /**
+     * Makes sure there's room for count more characters, flushing or growing the buffer if there isn't
+     */
+    private void room(int count) throws IOException {
+        if (pos + count > buf.length) {
+            flush();
+            if (pos + count > buf.length) {
+                char[] grown = new char[Math.max(buf.length * 2, pos + count)];
+                System.arraycopy(buf, 0, grown, 0, pos);
+                buf = grown;
+            }
+        }
+    }
+
+    /**
+     * Hands what's in the buffer on to the sink, if there is one
+     */
+    private void flush() throws IOException {
+        if (appendable != null) {
+            if (appendable instanceof Writer) {
+                ((Writer) appendable).write(buf, 0, pos);
+            } else if (appendable instanceof StringBuilder) {
+                ((StringBuilder) appendable).append(buf, 0, pos);
+            } else {
+                appendable.append(CharBuffer.wrap(buf, 0, pos));
+            }
+            pos = 0;
+        } else if (stream != null) {
+            // Strings only ever have surrogates in pairs. Keep a pair's first half until its second is in
+            int end = pos > 0 && Character.isHighSurrogate(buf[pos - 1]) ? pos - 1 : pos;
+            if (bytes.length < end * 3) {
+                bytes = new byte[end * 3];
+            }
+            int b = 0;
+            for (int i = 0; i < end; i++) {
+                char c = buf[i];
+                if (c < 0x80) {
+                    bytes[b++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[b++] = (byte) (0xC0 | c >> 6);
+                    bytes[b++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(c, buf[++i]);
+                    bytes[b++] = (byte) (0xF0 | codePoint >> 18);
+                    bytes[b++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    bytes[b++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    bytes[b++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    bytes[b++] = (byte) (0xE0 | c >> 12);
+                    bytes[b++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[b++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            stream.write(bytes, 0, b);
+            if (end < pos) {
+                buf[0] = buf[end];
+            }
+            pos -= end;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ca.fuzzlesoft;
+
+/**
+ * Hands out one canonical {@link String} per property name, so that documents repeating the same keys don't allocate
+ * (and keep alive) a copy of every key. Names are looked up by hashing straight over the input, and only turned into a
+ * {@link String} on a miss.
+ *
+ * <p>Bounded: the table has a fixed number of slots, in buckets of two. A new name goes into the front of its bucket,
+ * pushing out the older of the two names already there, so any number of distinct names only ever costs the capacity.
+ * Names longer than {@link #MAX_KEY_LENGTH}, or with escapes or non-ASCII characters, are never cached.</p>
+ *
+ * <p>Thread safe, so a single instance can be shared by every parse through
+ * {@link ParseOptions#withKeyCache(KeyCache)}: by every {@link JsonParser} in a {@link JsonParser.Pool}, and by the
+ * threads {@link JsonParse#lines} and parallel array parses split their work between. Entries are immutable
+ * {@link String}s that are compared against the input before being handed out, so racing updates can only cost a miss.
+ * The hit and miss counts aren't synchronized, and are approximate when shared.</p>
+ */
+public final class KeyCache {
+
+    /**
+     * Longest name that gets cached, so that the cache can't pin large strings
+     */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private final String[] table;
+    private final int mask;
+    private long hits, misses;
+
+    /**
+     * Creates a cache with room for 1024 names
+     */
+    public KeyCache() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity number of names to hold, rounded up to a power of two
+     */
+    public KeyCache(int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30, was " + capacity);
+        }
+        table = new String[Integer.highestOneBit(capacity - 1) << 1];
+        mask = table.length - 2;
+    }
+
+    /**
+     * @param key a property name
+     * @return the cached instance equal to key, caching key if there isn't one
+     */
+    public String intern(String key) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            return key;
+        }
+        int bucket = bucket(key.hashCode());
+        String first = table[bucket];
+        if (key.equals(first)) {
+            hits++;
+            return first;
+        }
+        String second = table[bucket + 1];
+        if (key.equals(second)) {
+            hits++;
+            return second;
+        }
+        misses++;
+        table[bucket + 1] = first;
+        table[bucket] = key;
+        return key;
+    }
+
+    /**
+     * Looks up the ASCII name between start and end without allocating, extracting it from source on a miss
+     * @param hash {@link String#hashCode()} of the name
+     */
+    String lookup(Source source, int start, int end, int hash) {
+        int length = end - start;
+        if (length > MAX_KEY_LENGTH) {
+            return source.substring(start, end);
+        }
+        int bucket = bucket(hash);
+        String first = table[bucket];
+        if (matches(first, source, start, length)) {
+            hits++;
+            return first;
+        }
+        String second = table[bucket + 1];
+        if (matches(second, source, start, length)) {
+            hits++;
+            return second;
+        }
+        misses++;
+        String key = source.substring(start, end);
+        table[bucket + 1] = first;
+        table[bucket] = key;
+        return key;
+    }
+
+    /**
+     * @return number of names that were found in the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of names that had to be added to the cache. Names that can't be cached aren't counted
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of names the cache can hold
+     */
+    public int getCapacity() {
+        return table.length;
+    }
+
+    /**
+     * Empties the cache and resets the counts
+     */
+    public void clear() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = null;
+        }
+        hits = 0;
+        misses = 0;
+    }
+
+    private int bucket(int hash) {
+        hash ^= hash >>> 16; // Short keys barely touch the high bits
+        return (hash << 1) & mask;
+    }
+
+    private static boolean matches(String cached, Source source, int start, int length) {
+        if (cached == null || cached.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
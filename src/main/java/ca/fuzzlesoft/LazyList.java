@@ -0,0 +1,58 @@
+package ca.fuzzlesoft;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only {@link java.util.List} over an array in a {@link Tape}. Elements are only decoded when they're first got,
+ * and kept from then on. Not thread safe.
+ */
+final class LazyList extends AbstractList<Object> implements RandomAccess {
+
+    private final Tape tape;
+    private final int node;
+    private int[] elements; // Node of each element, found on first access
+    private Object[] values;
+
+    LazyList(Tape tape, int node) {
+        this.tape = tape;
+        this.node = node;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (elements == null) {
+            index();
+        }
+        if (index < 0 || index >= elements.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.length);
+        }
+        Object value = values[index];
+        if (value == LazyMap.UNDECODED) {
+            value = values[index] = tape.value(elements[index]);
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        if (elements == null) {
+            index();
+        }
+        return elements.length;
+    }
+
+    private void index() {
+        int size = 0;
+        for (int child = node + 1; child < tape.ends[node]; child = tape.next(child)) {
+            size++;
+        }
+
+        elements = new int[size];
+        values = new Object[size];
+        for (int child = node + 1, i = 0; i < size; child = tape.next(child), i++) {
+            elements[i] = child;
+            values[i] = LazyMap.UNDECODED;
+        }
+    }
+}
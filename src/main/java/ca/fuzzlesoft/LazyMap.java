@@ -0,0 +1,194 @@
+package ca.fuzzlesoft;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Read-only {@link Map} over an object in a {@link Tape}. Property names are decoded on first access, each value only
+ * when it's first got, and both are kept from then on. Not thread safe.
+ */
+final class LazyMap extends AbstractMap<String, Object> {
+
+    /**
+     * Marks values that haven't been decoded yet, as null is a value
+     */
+    static final Object UNDECODED = new Object();
+
+    private final Tape tape;
+    private final int node;
+    private String[] keys;
+    private int[] valueNodes;
+    private Object[] values;
+    private int[] table; // Open addressing, index into keys plus one
+    private int size;
+
+    LazyMap(Tape tape, int node) {
+        this.tape = tape;
+        this.node = node;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : value(i);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        if (keys == null) {
+            index();
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                if (keys == null) {
+                    index();
+                }
+                return new Iterator<Entry<String, Object>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        return new Property(next++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LazyMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Entry that decodes its value when it's got
+     */
+    private final class Property implements Entry<String, Object> {
+        private final int i;
+
+        Property(int i) {
+            this.i = i;
+        }
+
+        @Override
+        public String getKey() {
+            return keys[i];
+        }
+
+        @Override
+        public Object getValue() {
+            return value(i);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return keys[i].equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return keys[i].hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return keys[i] + "=" + getValue();
+        }
+    }
+
+    private Object value(int i) {
+        Object value = values[i];
+        if (value == UNDECODED) {
+            value = values[i] = tape.value(valueNodes[i]);
+        }
+        return value;
+    }
+
+    private int indexOf(Object key) {
+        if (keys == null) {
+            index();
+        }
+        if (key == null) {
+            return -1;
+        }
+        int mask = table.length - 1;
+        for (int slot = spread(key.hashCode()) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void index() {
+        int pairs = 0;
+        for (int child = node + 1; child < tape.ends[node]; child = tape.next(child + 1)) {
+            pairs++;
+        }
+
+        keys = new String[pairs];
+        valueNodes = new int[pairs];
+        values = new Object[pairs];
+        table = new int[Integer.highestOneBit(Math.max(pairs, 1)) << 2];
+        int mask = table.length - 1;
+        for (int child = node + 1, p = 0; p < pairs; child = tape.next(child + 1), p++) {
+            String key = tape.key(child);
+            int slot = spread(key.hashCode()) & mask;
+            while (table[slot] != 0 && !keys[table[slot] - 1].equals(key)) {
+                slot = (slot + 1) & mask;
+            }
+
+            if (table[slot] != 0) {
+                valueNodes[table[slot] - 1] = child + 1; // Repeated property, the last one wins like with a HashMap
+            } else {
+                keys[size] = key;
+                valueNodes[size] = child + 1;
+                values[size] = UNDECODED;
+                table[slot] = ++size;
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+}
@@ -0,0 +1,165 @@
+package ca.fuzzlesoft;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * {@link Source} over a memory-mapped UTF-8 file, so that the file is paged in by the OS instead of being read onto the
+ * heap. Files are mapped in windows of at most {@link #WINDOW_SIZE} bytes, as a single mapping can't pass 2GB, and
+ * indexes are relative to a base that {@link #release(int)} moves forward, so documents aren't limited to
+ * {@link Integer#MAX_VALUE} bytes either. Only single values (such as one string) are.
+ */
+final class MappedSource extends Source {
+
+    static final int WINDOW_SIZE = 1 << 30;
+
+    private final MappedByteBuffer[] windows;
+    private final int windowShift;
+    private final int windowMask;
+    private final long size;
+    private long base; // Position in the file of index 0
+    private int available; // Number of indexes from base that are within the file, capped at Integer.MAX_VALUE
+
+    private byte[] scratch = new byte[64];
+    private final ByteSource decoder = new ByteSource(scratch, 0, 0);
+
+    /**
+     * @param windowSize bytes per mapping, a power of two
+     */
+    MappedSource(Path path, int windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            windowShift = Integer.numberOfTrailingZeros(windowSize);
+            windowMask = windowSize - 1;
+            windows = new MappedByteBuffer[(int) ((size + windowMask) >>> windowShift)];
+            for (int w = 0; w < windows.length; w++) {
+                long position = (long) w << windowShift;
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(windowSize, size - position));
+            }
+        }
+        available = (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    boolean available(int i) {
+        return i < available;
+    }
+
+    @Override
+    char read(int i) {
+        return (char) (get(base + i) & 0xFF);
+    }
+
+    @Override
+    String characterAt(int i) {
+        int end = ByteSource.sequenceEnd(this, i);
+        copy(i, end);
+        return new String(scratch, 0, end - i, ByteSource.UTF_8);
+    }
+
+    @Override
+    String substring(int start, int end) {
+        copy(start, end);
+        return new String(scratch, 0, end - start, ByteSource.ISO_8859_1);
+    }
+
+    @Override
+    int skipString(int fieldStart) {
+        int i = fieldStart + 1;
+        while (true) {
+            if (i >= available) {
+                throw new IndexOutOfBoundsException();
+            }
+            byte c = get(base + i);
+            if (c == '"') {
+                return i;
+            }
+            i += c == '\\' ? 2 : 1; // Jump over escaped character
+        }
+    }
+
+    @Override
+    String extractString(int fieldStart) {
+        // Bring the whole string onto the heap, and decode it there if it has escapes
+        boolean escaped = false;
+        int i = fieldStart + 1;
+        int length = 0;
+        while (true) {
+            if (i >= available) {
+                throw new IndexOutOfBoundsException();
+            }
+            byte c = get(base + i);
+            if (c == '"') {
+                break;
+            }
+            if (length + 2 >= scratch.length) {
+                scratch = Arrays.copyOf(scratch, scratch.length * 2);
+            }
+            scratch[length++] = c;
+            if (c == '\\' && i + 1 < available) {
+                escaped = true;
+                scratch[length++] = get(base + ++i); // Escaped character, which may be a quote
+            }
+            i++;
+        }
+
+        stringEnd = i;
+        if (!escaped) {
+            return new String(scratch, 0, length, ByteSource.UTF_8);
+        }
+        scratch[length] = '"';
+        decoder.buf = scratch;
+        decoder.offset = 0;
+        decoder.limit = length + 1;
+        try {
+            return decoder.extractString(-1); // As if the opening quote were just before scratch
+        } catch (MalformedEscape e) {
+            throw new MalformedEscape(fieldStart + 1 + e.index); // Bytes were copied one for one
+        }
+    }
+
+    @Override
+    int release(int i) {
+        if (i < windowMask) {
+            return i; // Not worth rebasing yet
+        }
+        base += i;
+        available = (int) Math.min(size - base, Integer.MAX_VALUE);
+        return 0;
+    }
+
+    @Override
+    long offset(int i) {
+        return base + i;
+    }
+
+    private byte get(long position) {
+        return windows[(int) (position >>> windowShift)].get((int) (position & windowMask));
+    }
+
+    /**
+     * Copies the bytes between start and end into the start of scratch
+     */
+    private void copy(int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+        }
+        long position = base + start;
+        for (int copied = 0; copied < length; ) {
+            MappedByteBuffer window = windows[(int) (position >>> windowShift)];
+            int offset = (int) (position & windowMask);
+            int count = Math.min(length - copied, window.limit() - offset);
+            ((Buffer) window).position(offset); // Through Buffer, as ByteBuffer.position(int) doesn't exist before 9
+            window.get(scratch, copied, count);
+            copied += count;
+            position += count;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package ca.fuzzlesoft;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * {@link java.util.List} that stores numbers unboxed. Used for JSON arrays when
+ * {@link ParseOptions#withPrimitiveArrays(boolean)} is enabled.
+ *
+ * <p>Starts out as a {@code long[]}. Once a floating-point number is added it moves to a {@code double[]}, remembering
+ * which elements were integers so that they're still handed back as {@link Long}s. Only when something that can't be
+ * stored exactly is added (anything that isn't a {@link Long} or {@link Double}, or an integer beyond 2^53 alongside
+ * floating-point numbers) does it fall back to boxed elements, like an {@link java.util.ArrayList}.</p>
+ *
+ * <p>Behaves like any other mutable {@link java.util.List}, and equals lists of the same boxed numbers.</p>
+ */
+public final class NumberList extends AbstractList<Object> implements RandomAccess {
+
+    private static final long EXACT_DOUBLE_LIMIT = 1L << 53;
+
+    private long[] longs = new long[8];
+    private double[] doubles; // Replaces longs once a floating-point number is added
+    private long[] integers; // Bit set of which doubles were added as longs
+    private Object[] objects; // Replaces both once something else is added
+    private int size;
+
+    /**
+     * @return true if elements are stored unboxed
+     */
+    public boolean isPrimitive() {
+        return objects == null;
+    }
+
+    /**
+     * @return true if every element is an integer, stored in a {@code long[]}
+     */
+    public boolean isLongs() {
+        return longs != null;
+    }
+
+    /**
+     * @return element index as a long, without boxing if possible. Floating-point numbers are truncated
+     * @throws ClassCastException if the element isn't a number
+     */
+    public long getLong(int index) {
+        checkIndex(index);
+        if (longs != null) {
+            return longs[index];
+        } else if (doubles != null) {
+            return (long) doubles[index];
+        }
+        return ((Number) objects[index]).longValue();
+    }
+
+    /**
+     * @return element index as a double, without boxing if possible
+     * @throws ClassCastException if the element isn't a number
+     */
+    public double getDouble(int index) {
+        checkIndex(index);
+        if (longs != null) {
+            return longs[index];
+        } else if (doubles != null) {
+            return doubles[index];
+        }
+        return ((Number) objects[index]).doubleValue();
+    }
+
+    /**
+     * Appends value without boxing it, if elements are still stored unboxed
+     */
+    public void addLong(long value) {
+        if (longs != null) {
+            if (size == longs.length) {
+                longs = Arrays.copyOf(longs, size * 2);
+            }
+            longs[size++] = value;
+            modCount++;
+        } else if (doubles != null && isExactDouble(value)) {
+            if (size == doubles.length) {
+                grow();
+            }
+            doubles[size] = value;
+            setInteger(size++, true);
+            modCount++;
+        } else {
+            add(size, Numbers.box(value));
+        }
+    }
+
+    /**
+     * Appends value without boxing it, if elements are still stored unboxed
+     */
+    public void addDouble(double value) {
+        if (doubles != null) {
+            if (size == doubles.length) {
+                grow();
+            }
+            doubles[size] = value;
+            setInteger(size++, false);
+            modCount++;
+        } else {
+            add(size, value);
+        }
+    }
+
+    @Override
+    public Object get(int index) {
+        checkIndex(index);
+        if (longs != null) {
+            return Numbers.box(longs[index]);
+        } else if (doubles != null) {
+            return isInteger(index) ? (Object) Numbers.box((long) doubles[index]) : (Object) doubles[index];
+        }
+        return objects[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        Object previous = get(index);
+        store(index, element, false);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == capacity()) {
+            grow();
+        }
+        shift(index, 1);
+        size++;
+        store(index, element, true);
+        modCount++;
+    }
+
+    @Override
+    public Object remove(int index) {
+        Object previous = get(index);
+        shift(index + 1, -1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        longs = new long[8];
+        doubles = null;
+        integers = null;
+        objects = null;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Stores element at index, moving to a wider representation first if it can't be stored in the current one
+     * @param vacant whether index was just opened up by {@link #shift(int, int)}, and has no element to replace
+     */
+    private void store(int index, Object element, boolean vacant) {
+        if (longs != null && element instanceof Long) {
+            longs[index] = (Long) element;
+            return;
+        }
+
+        if (longs != null && element instanceof Double) {
+            toDoubles(vacant ? index : -1);
+        }
+        if (doubles != null) {
+            if (element instanceof Double) {
+                doubles[index] = (Double) element;
+                setInteger(index, false);
+                return;
+            } else if (element instanceof Long && isExactDouble((Long) element)) {
+                doubles[index] = (Long) element;
+                setInteger(index, true);
+                return;
+            }
+        }
+
+        toObjects(vacant ? index : -1);
+        objects[index] = element;
+    }
+
+    /**
+     * Moves from longs to doubles, or straight to objects if a long can't be represented exactly
+     * @param skip index to leave out, as it doesn't hold an element yet. -1 for none
+     */
+    private void toDoubles(int skip) {
+        for (int i = 0; i < size; i++) {
+            if (i != skip && !isExactDouble(longs[i])) {
+                toObjects(skip);
+                return;
+            }
+        }
+
+        doubles = new double[longs.length];
+        integers = new long[(longs.length + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            if (i != skip) {
+                doubles[i] = longs[i];
+                setInteger(i, true);
+            }
+        }
+        longs = null;
+    }
+
+    /**
+     * @param skip index to leave out, as it doesn't hold an element yet. -1 for none
+     */
+    private void toObjects(int skip) {
+        if (objects != null) {
+            return;
+        }
+        Object[] boxed = new Object[capacity()];
+        for (int i = 0; i < size; i++) {
+            if (i != skip) {
+                boxed[i] = get(i);
+            }
+        }
+        objects = boxed;
+        longs = null;
+        doubles = null;
+        integers = null;
+    }
+
+    private static boolean isExactDouble(long value) {
+        return value >= -EXACT_DOUBLE_LIMIT && value <= EXACT_DOUBLE_LIMIT;
+    }
+
+    private boolean isInteger(int index) {
+        return (integers[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setInteger(int index, boolean integer) {
+        if (integer) {
+            integers[index >>> 6] |= 1L << index;
+        } else {
+            integers[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    private int capacity() {
+        return longs != null ? longs.length : doubles != null ? doubles.length : objects.length;
+    }
+
+    private void grow() {
+        int capacity = Math.max(8, capacity() * 2);
+        if (longs != null) {
+            longs = Arrays.copyOf(longs, capacity);
+        } else if (doubles != null) {
+            doubles = Arrays.copyOf(doubles, capacity);
+            integers = Arrays.copyOf(integers, (capacity + 63) >>> 6);
+        } else {
+            objects = Arrays.copyOf(objects, capacity);
+        }
+    }
+
+    /**
+     * Moves the elements from index onwards by distance
+     */
+    private void shift(int index, int distance) {
+        int count = size - index;
+        if (count <= 0) {
+            return;
+        }
+        if (longs != null) {
+            System.arraycopy(longs, index, longs, index + distance, count);
+        } else if (doubles != null) {
+            System.arraycopy(doubles, index, doubles, index + distance, count);
+            if (distance > 0) {
+                for (int i = size - 1; i >= index; i--) {
+                    setInteger(i + distance, isInteger(i));
+                }
+            } else {
+                for (int i = index; i < size; i++) {
+                    setInteger(i + distance, isInteger(i));
+                }
+            }
+        } else {
+            System.arraycopy(objects, index, objects, index + distance, count);
+            if (distance < 0) {
+                objects[size - 1] = null;
+            }
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
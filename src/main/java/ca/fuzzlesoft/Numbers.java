@@ -0,0 +1,315 @@
+package ca.fuzzlesoft;
+
+import java.math.BigInteger;
+
+/**
+ * Decodes numbers straight out of a {@link Source}, without slicing them into a {@link String} first. Anything the
+ * fast paths can't decode exactly falls back to {@link Long#parseLong(String)} or {@link Double#parseDouble(String)},
+ * so results (and the numbers that are rejected) are always the same as theirs.
+ */
+final class Numbers {
+
+    private Numbers() {}
+
+    /**
+     * Boxed longs that are handed out instead of allocating. Covers more than {@link Long#valueOf(long)} does, since
+     * small counts, ids and indexes are so common
+     */
+    private static final int CACHE_LOW = -128, CACHE_HIGH = 1024;
+    private static final Long[] CACHE = new Long[CACHE_HIGH - CACHE_LOW];
+
+    /**
+     * Powers of ten that doubles represent exactly
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * 128-bit mantissas of the powers of ten from 10^MIN_EXPONENT to 10^MAX_EXPONENT, rounded down and shifted so that
+     * the top bit is set. Used by {@link #eiselLemire(long, int, boolean)}
+     */
+    private static final int MIN_EXPONENT = -342, MAX_EXPONENT = 308;
+    private static final long[] POWERS_HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+    private static final long[] POWERS_LOW = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = (long) (i + CACHE_LOW);
+        }
+
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int exponent = MIN_EXPONENT; exponent <= MAX_EXPONENT; exponent++) {
+            BigInteger mantissa;
+            if (exponent >= 0) {
+                mantissa = BigInteger.TEN.pow(exponent);
+                int shift = 128 - mantissa.bitLength();
+                mantissa = shift >= 0 ? mantissa.shiftLeft(shift) : mantissa.shiftRight(-shift);
+            } else {
+                BigInteger divisor = BigInteger.TEN.pow(-exponent);
+                mantissa = BigInteger.ONE.shiftLeft(divisor.bitLength() + 127).divide(divisor);
+            }
+            POWERS_HIGH[exponent - MIN_EXPONENT] = mantissa.shiftRight(64).longValue();
+            POWERS_LOW[exponent - MIN_EXPONENT] = mantissa.and(mask).longValue();
+        }
+    }
+
+    /**
+     * @return value boxed, from a cache if it's small
+     */
+    static Long box(long value) {
+        if (value >= CACHE_LOW && value < CACHE_HIGH) {
+            return CACHE[(int) value - CACHE_LOW];
+        }
+        return value;
+    }
+
+    /**
+     * Decodes the integer between start and end
+     * @throws NumberFormatException if it isn't an integer, or doesn't fit in a long
+     */
+    static long decodeLong(Source source, int start, int end) {
+        int i = start;
+        boolean negative = source.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        // 18 digits can't overflow. Leave longer numbers (and anything malformed) to Long.parseLong
+        if (i == end || end - i > 18) {
+            return Long.parseLong(source.substring(start, end));
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.parseLong(source.substring(start, end));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes the floating-point number between start and end, correctly rounded
+     * @throws NumberFormatException if it isn't a number
+     */
+    static double decodeDouble(Source source, int start, int end) {
+        int i = start;
+        boolean negative = source.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+
+        long mantissa = 0; // Unsigned, up to 19 significant digits
+        int digits = 0, exponent = 0;
+        boolean any = false;
+        char c = 0;
+        for (; i < end && (c = source.charAt(i)) >= '0' && c <= '9'; i++) {
+            any = true;
+            if (mantissa != 0 || c != '0') {
+                if (++digits > 19) {
+                    return Double.parseDouble(source.substring(start, end));
+                }
+                mantissa = mantissa * 10 + (c - '0');
+            }
+        }
+        if (i < end && c == '.') {
+            for (i++; i < end && (c = source.charAt(i)) >= '0' && c <= '9'; i++) {
+                any = true;
+                exponent--;
+                if (mantissa != 0 || c != '0') {
+                    if (++digits > 19) {
+                        return Double.parseDouble(source.substring(start, end));
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+            }
+        }
+        if (any && i < end && (c == 'e' || c == 'E')) {
+            boolean negativeExponent = false;
+            if (++i < end && ((c = source.charAt(i)) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                i++;
+            }
+            int explicit = 0;
+            int exponentStart = i;
+            for (; i < end && (c = source.charAt(i)) >= '0' && c <= '9'; i++) {
+                if (explicit < 100000) {
+                    explicit = explicit * 10 + (c - '0');
+                }
+            }
+            if (i == exponentStart) {
+                any = false;
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (!any || i != end) {
+            // Malformed, let Double.parseDouble decide how
+            return Double.parseDouble(source.substring(start, end));
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+            // Both the mantissa and the power of ten are exact, so one operation rounds correctly (Clinger)
+            double value = mantissa;
+            value = exponent < 0 ? value / EXACT_POWERS_OF_TEN[-exponent] : value * EXACT_POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+        double value = eiselLemire(mantissa, exponent, negative);
+        if (value != value) { // NaN, ambiguous
+            return Double.parseDouble(source.substring(start, end));
+        }
+        return value;
+    }
+
+    /**
+     * @return whether {@link #decodeLong(Source, int, int)} would decode the number between start and end, without
+     * decoding it
+     */
+    static boolean isLong(Source source, int start, int end) {
+        int i = start;
+        boolean negative = source.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        for (int j = i; j < end; j++) {
+            char c = source.charAt(j);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        while (i < end - 1 && source.charAt(i) == '0') {
+            i++; // Leading zeros don't count towards overflowing
+        }
+        if (end - i != 19) {
+            return end - i < 19;
+        }
+        String max = negative ? "9223372036854775808" : "9223372036854775807";
+        for (int j = 0; j < 19; j++) {
+            char c = source.charAt(i + j), m = max.charAt(j);
+            if (c != m) {
+                return c < m;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether {@link #decodeDouble(Source, int, int)} would decode the number between start and end, without
+     * decoding it. It's made of digits, signs, and at most one of '.' and of 'e' or 'E', as the state machine scans it
+     */
+    static boolean isDouble(Source source, int start, int end) {
+        int i = start;
+        if (source.charAt(i) == '-') {
+            i++;
+        }
+        int digits = 0;
+        char c = 0;
+        for (; i < end && (c = source.charAt(i)) >= '0' && c <= '9'; i++) {
+            digits++;
+        }
+        if (i < end && c == '.') {
+            for (i++; i < end && (c = source.charAt(i)) >= '0' && c <= '9'; i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (c == 'e' || c == 'E')) {
+            if (++i < end && ((c = source.charAt(i)) == '-' || c == '+')) {
+                i++;
+            }
+            int exponentStart = i;
+            while (i < end && (c = source.charAt(i)) >= '0' && c <= '9') {
+                i++;
+            }
+            if (i == exponentStart) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    /**
+     * Computes mantissa * 10^exponent by multiplying with a 128-bit approximation of the power of ten, as described in
+     * "Number Parsing at a Gigabyte per Second" (Lemire, 2021)
+     * @param mantissa unsigned, non-zero
+     * @return the correctly rounded double, or NaN if the approximation can't tell which way to round
+     */
+    private static double eiselLemire(long mantissa, int exponent, boolean negative) {
+        if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+            return Double.NaN;
+        }
+
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        mantissa <<= leadingZeros;
+        long binaryExponent = ((217706L * exponent) >> 16) + 64 + 1023 - leadingZeros;
+
+        int index = exponent - MIN_EXPONENT;
+        long high = multiplyHigh(mantissa, POWERS_HIGH[index]);
+        long low = mantissa * POWERS_HIGH[index];
+        if ((high & 0x1FF) == 0x1FF && lessUnsigned(low + mantissa, mantissa)) {
+            // Not enough precision yet, bring in the lower half of the power of ten
+            long lowerHigh = multiplyHigh(mantissa, POWERS_LOW[index]);
+            long lowerLow = mantissa * POWERS_LOW[index];
+            long mergedHigh = high, mergedLow = low + lowerHigh;
+            if (lessUnsigned(mergedLow, low)) {
+                mergedHigh++;
+            }
+            if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow + 1 == 0 && lessUnsigned(lowerLow + mantissa, mantissa)) {
+                return Double.NaN;
+            }
+            high = mergedHigh;
+            low = mergedLow;
+        }
+
+        long top = high >>> 63;
+        long result = high >>> (top + 9);
+        binaryExponent -= 1 ^ top;
+
+        if (low == 0 && (high & 0x1FF) == 0 && (result & 3) == 1) {
+            return Double.NaN; // Exactly half-way between two doubles
+        }
+
+        result += result & 1;
+        result >>>= 1;
+        if ((result >>> 53) > 0) {
+            result >>>= 1;
+            binaryExponent++;
+        }
+        if (binaryExponent <= 0 || binaryExponent >= 0x7FF) {
+            return Double.NaN; // Subnormal or infinite, leave it to the slow path
+        }
+
+        long bits = binaryExponent << 52 | result & 0x000FFFFFFFFFFFFFL;
+        if (negative) {
+            bits |= Long.MIN_VALUE;
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * @return the high 64 bits of the unsigned 128-bit product of a and b
+     */
+    private static long multiplyHigh(long a, long b) {
+        long aLow = a & 0xFFFFFFFFL, aHigh = a >>> 32;
+        long bLow = b & 0xFFFFFFFFL, bHigh = b >>> 32;
+        long lowLow = aLow * bLow;
+        long highLow = aHigh * bLow;
+        long cross = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + aLow * bHigh;
+        return aHigh * bHigh + (highLow >>> 32) + (cross >>> 32);
+    }
+
+    private static boolean lessUnsigned(long a, long b) {
+        return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+    }
+}
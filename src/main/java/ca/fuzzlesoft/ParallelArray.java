@@ -0,0 +1,160 @@
+package ca.fuzzlesoft;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the elements of a top-level array in parallel. A quick scan that only tracks quotes and bracket depth finds
+ * where each element starts and ends, then runs of elements are handed to an {@link ExecutorService} and parsed as
+ * separate values, and put back together in order.
+ *
+ * <p>The scan doesn't validate anything. Each element is checked as it's parsed, and if anything at all is off, the
+ * whole document is parsed again sequentially. Invalid documents cost a second parse, but fail with exactly the same
+ * {@link JsonParseException} (and {@code <root>.[N]} path) as a sequential parse does. The same goes for
+ * {@link ParseLimits}: the root array's entries are checked up front, and each element is parsed a level shallower
+ * than the limit, as it sits within the root array.</p>
+ */
+final class ParallelArray {
+
+    /**
+     * Fewer elements than this per task aren't worth handing to another thread
+     */
+    static final int MIN_ELEMENTS_PER_TASK = 64;
+
+    private ParallelArray() {}
+
+    /**
+     * @param source input that can be {@link Source#fork()}ed
+     * @return the same as {@link JsonParse#parse(Source, int, ParseOptions)}
+     */
+    static Object parse(final Source source, final ParseOptions options, ExecutorService executor) {
+        if (executor instanceof ForkJoinPool && ((ForkJoinPool) executor).getParallelism() < 2) {
+            return JsonParse.parse(source, 0, options); // Nothing to gain over the scan
+        }
+
+        final Elements elements = scan(source);
+        int tasks = Runtime.getRuntime().availableProcessors() * 4;
+        ParseLimits limits = options.limits;
+        if (elements == null || elements.count < MIN_ELEMENTS_PER_TASK * 2
+                || elements.count > limits.maxEntries || limits.maxDepth < 2) {
+            return JsonParse.parse(source, 0, options);
+        }
+        final ParseOptions elementOptions = options.checksLimits()
+                ? options.withLimits(limits.withMaxDepth(limits.maxDepth - 1))
+                : options;
+
+        int perTask = Math.max(MIN_ELEMENTS_PER_TASK, (elements.count + tasks - 1) / tasks);
+        List<Callable<Object[]>> jobs = new ArrayList<>();
+        for (int from = 0; from < elements.count; from += perTask) {
+            final int start = from, end = Math.min(from + perTask, elements.count);
+            jobs.add(new Callable<Object[]>() {
+                @Override
+                public Object[] call() {
+                    return parseElements(source.fork(), elements, start, end, elementOptions);
+                }
+            });
+        }
+
+        List<Object> list = options.newArray(null);
+        try {
+            for (Future<Object[]> future : executor.invokeAll(jobs)) {
+                Object[] values = future.get();
+                if (values == null) {
+                    // Something's wrong, let the sequential parse say what
+                    return JsonParse.parse(source, 0, options);
+                }
+                list.addAll(Arrays.asList(values));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JsonParseException("Interrupted while waiting for array elements to be parsed", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause()); // parseElements catches everything else
+        }
+        return options.finish(null, list);
+    }
+
+    /**
+     * @return the elements from start to end, or null if any of them aren't valid
+     */
+    private static Object[] parseElements(Source source, Elements elements, int start, int end, ParseOptions options) {
+        Object[] values = new Object[end - start];
+        try {
+            for (int e = start; e < end; e++) {
+                values[e - start] = JsonParse.parse(source, elements.starts[e], options);
+
+                // Only whitespace may come between the element and its comma
+                for (int i = source.valueEnd; i < elements.ends[e]; i++) {
+                    if (!Constants.isWhitespace(source.charAt(i))) {
+                        return null;
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            return null;
+        }
+        return values;
+    }
+
+    /**
+     * Finds the boundaries of the elements of the root array
+     * @return the elements, or null if the root isn't an array or the array isn't terminated
+     */
+    static Elements scan(Source source) {
+        int i = 0;
+        while (source.has(i) && Constants.isWhitespace(source.charAt(i))) {
+            i++;
+        }
+        if (!source.has(i) || source.charAt(i) != '[') {
+            return null;
+        }
+
+        Elements elements = new Elements();
+        elements.starts[0] = ++i;
+        int depth = 1;
+        try {
+            for (; source.has(i); i++) {
+                char c = source.charAt(i);
+                if (c == '"') {
+                    i = source.skipString(i);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        elements.end(i);
+                        return elements;
+                    }
+                } else if (c == ',' && depth == 1) {
+                    elements.end(i);
+                    elements.starts[elements.count] = i + 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            return null; // Unterminated string
+        }
+        return null;
+    }
+
+    static final class Elements {
+        int[] starts = new int[1024]; // Index after the '[' or ',' before each element
+        int[] ends = new int[1024]; // Index of the ',' or ']' after each element
+        int count;
+
+        void end(int i) {
+            ends[count++] = i;
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ca.fuzzlesoft;
+
+/**
+ * Bounds on what a document may contain, for parsing input that can't be trusted. Limits are checked as the document
+ * is scanned, and exceeding one fails with a {@link JsonParseException} giving the path to where it happened:
+ *
+ * <pre>
+ * static final ParseOptions UNTRUSTED = ParseOptions.DEFAULT.withLimits(ParseLimits.DEFAULT.withMaxDepth(32));
+ * </pre>
+ *
+ * Depth, entries and numbers are checked before what they bound is built. Strings are checked as soon as their closing
+ * quote is found, before they're decoded, though a {@link java.io.Reader} or {@link java.io.InputStream} still has to
+ * buffer the raw string to find it ({@link JsonPushParser} fails as soon as a string is too long, without buffering the
+ * rest of it). Lengths are counted in the input's own units: chars for {@code String}s and {@link java.io.Reader}s,
+ * bytes otherwise, before escapes are decoded.
+ *
+ * Immutable, like {@link ParseOptions}.
+ */
+public final class ParseLimits {
+
+    /**
+     * No limits at all, the same as parsing without any
+     */
+    public static final ParseLimits NONE =
+            new ParseLimits(Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * Limits that ordinary documents don't come near: 512 levels deep, 64MB, strings of 16M, numbers of 1000
+     * digits, and a million properties or elements per object or array
+     */
+    public static final ParseLimits DEFAULT = new ParseLimits(512, 64L << 20, 16 << 20, 1000, 1000000);
+
+    final int maxDepth;
+    final long maxDocumentLength;
+    final int maxStringLength;
+    final int maxNumberLength;
+    final int maxEntries;
+
+    private ParseLimits(int maxDepth, long maxDocumentLength, int maxStringLength, int maxNumberLength,
+                        int maxEntries) {
+        this.maxDepth = maxDepth;
+        this.maxDocumentLength = maxDocumentLength;
+        this.maxStringLength = maxStringLength;
+        this.maxNumberLength = maxNumberLength;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param maxDepth most objects and arrays that may be nested within each other. The root is at depth 1
+     * @return limits with maxDepth changed
+     */
+    public ParseLimits withMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be at least 1, was " + maxDepth);
+        }
+        return new ParseLimits(maxDepth, maxDocumentLength, maxStringLength, maxNumberLength, maxEntries);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @param maxDocumentLength longest input that's parsed at all. In memory input is checked up front, streams as
+     *                          they're read
+     * @return limits with maxDocumentLength changed
+     */
+    public ParseLimits withMaxDocumentLength(long maxDocumentLength) {
+        if (maxDocumentLength < 0) {
+            throw new IllegalArgumentException("Max document length can't be negative, was " + maxDocumentLength);
+        }
+        return new ParseLimits(maxDepth, maxDocumentLength, maxStringLength, maxNumberLength, maxEntries);
+    }
+
+    public long getMaxDocumentLength() {
+        return maxDocumentLength;
+    }
+
+    /**
+     * @param maxStringLength longest string, value or property name, between its quotes
+     * @return limits with maxStringLength changed
+     */
+    public ParseLimits withMaxStringLength(int maxStringLength) {
+        if (maxStringLength < 0) {
+            throw new IllegalArgumentException("Max string length can't be negative, was " + maxStringLength);
+        }
+        return new ParseLimits(maxDepth, maxDocumentLength, maxStringLength, maxNumberLength, maxEntries);
+    }
+
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * @param maxNumberLength longest number, including its sign, decimal point and exponent
+     * @return limits with maxNumberLength changed
+     */
+    public ParseLimits withMaxNumberLength(int maxNumberLength) {
+        if (maxNumberLength < 1) {
+            throw new IllegalArgumentException("Max number length must be at least 1, was " + maxNumberLength);
+        }
+        return new ParseLimits(maxDepth, maxDocumentLength, maxStringLength, maxNumberLength, maxEntries);
+    }
+
+    public int getMaxNumberLength() {
+        return maxNumberLength;
+    }
+
+    /**
+     * @param maxEntries most properties in an object, or elements in an array. Repeated property names count every
+     *                   time
+     * @return limits with maxEntries changed
+     */
+    public ParseLimits withMaxEntries(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Max entries can't be negative, was " + maxEntries);
+        }
+        return new ParseLimits(maxDepth, maxDocumentLength, maxStringLength, maxNumberLength, maxEntries);
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @param length length of in memory input
+     * @param stackTraces from {@link ParseOptions#stackTraces}
+     * @throws JsonParseException if it's over {@link #maxDocumentLength}
+     */
+    void checkDocumentLength(long length, boolean stackTraces) {
+        if (length > maxDocumentLength) {
+            throw documentTooLong(maxDocumentLength, stackTraces);
+        }
+    }
+
+    static JsonParseException documentTooLong(long maxDocumentLength, boolean stackTraces) {
+        ParseStack root = new ParseStack();
+        root.stackTraces = stackTraces;
+        return new JsonParseException(root, "document is longer than the limit of " + maxDocumentLength);
+    }
+
+    /**
+     * @param stack enclosing objects and arrays, with the one that's too deep already pushed
+     */
+    JsonParseException tooDeep(ParseStack stack) {
+        return new JsonParseException(stack, "nested deeper than the limit of " + maxDepth);
+    }
+
+    /**
+     * @param stack objects and arrays enclosing the one with too many entries
+     */
+    JsonParseException tooManyEntries(ParseStack stack) {
+        return new JsonParseException(stack, "more entries than the limit of " + maxEntries);
+    }
+
+    JsonParseException stringTooLong(ParseStack stack) {
+        return new JsonParseException(stack, "string is longer than the limit of " + maxStringLength);
+    }
+
+    JsonParseException numberTooLong(ParseStack stack) {
+        return new JsonParseException(stack, "number is longer than the limit of " + maxNumberLength);
+    }
+}
@@ -0,0 +1,178 @@
+package ca.fuzzlesoft;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tweaks how {@link JsonParse} builds its output. Immutable, so instances can be shared between threads and kept in
+ * constants. Start from {@link #DEFAULT} (or a new instance) and use the {@code with...} methods to derive others:
+ *
+ * <pre>
+ * static final ParseOptions COMPACT = ParseOptions.DEFAULT.withPrimitiveArrays(true);
+ * </pre>
+ */
+public final class ParseOptions {
+
+    /**
+     * Same behaviour as parsing without options
+     */
+    public static final ParseOptions DEFAULT = new ParseOptions();
+
+    final boolean primitiveArrays;
+    final KeyCache keyCache;
+    final boolean lazy;
+    final ContainerFactory containers;
+    final ShapeCache shapes;
+    final ParseLimits limits;
+    final boolean stackTraces;
+
+    public ParseOptions() {
+        this(false, null, false, ContainerFactory.DEFAULT, null, ParseLimits.NONE, true);
+    }
+
+    private ParseOptions(boolean primitiveArrays, KeyCache keyCache, boolean lazy, ContainerFactory containers,
+                         ShapeCache shapes, ParseLimits limits, boolean stackTraces) {
+        this.primitiveArrays = primitiveArrays;
+        this.keyCache = keyCache;
+        this.lazy = lazy;
+        this.containers = containers;
+        this.shapes = shapes;
+        this.limits = limits;
+        this.stackTraces = stackTraces;
+    }
+
+    /**
+     * @param primitiveArrays if true, arrays are built as {@link NumberList}s, which keep numbers unboxed in a
+     *                        {@code long[]} or {@code double[]} for as long as the array only holds numbers. Arrays
+     *                        with anything else in them end up boxed, like an {@link java.util.ArrayList}
+     * @return options with primitiveArrays changed
+     */
+    public ParseOptions withPrimitiveArrays(boolean primitiveArrays) {
+        return new ParseOptions(primitiveArrays, keyCache, lazy, containers, shapes, limits, stackTraces);
+    }
+
+    public boolean isPrimitiveArrays() {
+        return primitiveArrays;
+    }
+
+    /**
+     * @param keyCache cache that property names are looked up in, so that repeated names share one instance instead
+     *                 of each being allocated. null to not cache names
+     * @return options with keyCache changed
+     */
+    public ParseOptions withKeyCache(KeyCache keyCache) {
+        return new ParseOptions(primitiveArrays, keyCache, lazy, containers, shapes, limits, stackTraces);
+    }
+
+    public KeyCache getKeyCache() {
+        return keyCache;
+    }
+
+    /**
+     * @param lazy if true, {@code String}, {@code byte[]} and {@link java.nio.ByteBuffer} input is parsed into a flat
+     *             list of where each value starts, and objects and arrays are read-only views over it that only
+     *             decode strings, numbers and nested structures when they're first got. Invalid input, or input
+     *             over the {@link #withLimits(ParseLimits) limits}, fails up front, the same way as usual. Other
+     *             input ignores this, as does {@link #withPrimitiveArrays(boolean)}
+     * @return options with lazy changed
+     */
+    public ParseOptions withLazy(boolean lazy) {
+        return new ParseOptions(primitiveArrays, keyCache, lazy, containers, shapes, limits, stackTraces);
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * @param containers creates the maps and lists that objects and arrays are parsed into. Arrays are still
+     *                   {@link NumberList}s if {@link #withPrimitiveArrays(boolean)} is set. Ignored by
+     *                   {@link #withLazy(boolean)}
+     * @return options with containers changed
+     */
+    public ParseOptions withContainerFactory(ContainerFactory containers) {
+        if (containers == null) {
+            throw new NullPointerException("containers");
+        }
+        return new ParseOptions(primitiveArrays, keyCache, lazy, containers, shapes, limits, stackTraces);
+    }
+
+    public ContainerFactory getContainerFactory() {
+        return containers;
+    }
+
+    /**
+     * @param shapes records the shape of {@code String}, {@code byte[]} and {@link java.nio.ByteBuffer} input (and
+     *               of the lines of {@link JsonLines}), so that the documents after it can be parsed faster if
+     *               they're of the same shape. See {@link ShapeCache}. null to parse each document as it comes.
+     *               Other input ignores this, as does {@link #withLazy(boolean)}
+     * @return options with shapes changed
+     */
+    public ParseOptions withShapeCache(ShapeCache shapes) {
+        return new ParseOptions(primitiveArrays, keyCache, lazy, containers, shapes, limits, stackTraces);
+    }
+
+    public ShapeCache getShapeCache() {
+        return shapes;
+    }
+
+    /**
+     * @param limits bounds on depth, length and size that documents are checked against as they're parsed, failing
+     *               as soon as one is exceeded. {@link ParseLimits#NONE} to parse whatever comes. Only the document
+     *               length is checked by {@link #withLazy(boolean)}, and {@link #withShapeCache(ShapeCache)} is passed
+     *               over while there are limits
+     * @return options with limits changed
+     */
+    public ParseOptions withLimits(ParseLimits limits) {
+        if (limits == null) {
+            throw new NullPointerException("limits");
+        }
+        return new ParseOptions(primitiveArrays, keyCache, lazy, containers, shapes, limits, stackTraces);
+    }
+
+    public ParseLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * @param stackTraces if false, {@link JsonParseException}s are thrown without filling in their stack trace, which
+     *                    is most of what failing costs. For services that turn away a lot of invalid input, and
+     *                    don't need to know where in their own code it was parsed. Failures of the input itself,
+     *                    such as an {@link java.io.IOException}, still have one
+     * @return options with stackTraces changed
+     */
+    public ParseOptions withStackTraces(boolean stackTraces) {
+        return new ParseOptions(primitiveArrays, keyCache, lazy, containers, shapes, limits, stackTraces);
+    }
+
+    public boolean isStackTraces() {
+        return stackTraces;
+    }
+
+    /**
+     * @return whether documents are parsed by the {@link JsonParse} state machine rather than another parser, so that
+     * {@link #limits} are checked
+     */
+    boolean checksLimits() {
+        return limits != ParseLimits.NONE;
+    }
+
+    Map<String, Object> newObject(String name) {
+        return containers.newObject(name);
+    }
+
+    List<Object> newArray(String name) {
+        return primitiveArrays ? new NumberList() : containers.newArray(name);
+    }
+
+    /**
+     * @param container an object or array that's been parsed
+     * @return what to use in its place
+     */
+    @SuppressWarnings("unchecked")
+    Object finish(String name, Object container) {
+        return container instanceof Map
+                ? containers.finishObject(name, (Map<String, Object>) container)
+                : containers.finishArray(name, (List<Object>) container);
+    }
+}
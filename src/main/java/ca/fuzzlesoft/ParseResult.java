@@ -0,0 +1,39 @@
+package ca.fuzzlesoft;
+
+/**
+ * What {@link JsonParse#tryParse(String)} came up with: either the value, or why there isn't one. Invalid input is
+ * an ordinary result rather than something thrown, and its {@link JsonParseException} never has a stack trace, so
+ * turning away a lot of it stays cheap.
+ */
+public final class ParseResult {
+
+    private final Object value;
+    private final JsonParseException error;
+
+    ParseResult(Object value, JsonParseException error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * @return the parsed value
+     * @throws JsonParseException if the input couldn't be parsed
+     */
+    public Object getValue() {
+        if (error != null) {
+            throw error;
+        }
+        return value;
+    }
+
+    /**
+     * @return why the input couldn't be parsed, with its path and offset, or null if it was
+     */
+    public JsonParseException getError() {
+        return error;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+}
@@ -0,0 +1,126 @@
+package ca.fuzzlesoft;
+
+import ca.fuzzlesoft.JsonParse.Type;
+
+import java.util.List;
+
+/**
+ * The objects and arrays enclosing the current value, kept in parallel arrays that grow on demand. Only ever used by
+ * one parse at a time, so nothing is synchronized, and entering a level doesn't allocate once the arrays are big
+ * enough. Each {@link JsonParser} keeps one for reuse.
+ */
+final class ParseStack {
+
+    private String[] names = new String[16];
+    private Object[] containers = new Object[16];
+    private Type[] types = new Type[16];
+    private int[] indexes = new int[16];
+    private int size;
+
+    /**
+     * Whether {@link JsonParseException}s about this parse fill in their stack trace
+     */
+    boolean stackTraces = true;
+
+    /**
+     * Empties the stack, so that it doesn't keep containers alive, and drops the room an unusually deep document
+     * needed
+     */
+    void reset() {
+        clear();
+        if (names.length > 1024) {
+            names = new String[16];
+            containers = new Object[16];
+            types = new Type[16];
+            indexes = new int[16];
+        }
+    }
+
+    /**
+     * @param name name of the property being parsed in container, or null within an array
+     * @param container the object or array, or null if not building one
+     * @param type {@link Type#OBJECT} or {@link Type#ARRAY}
+     * @param index index within the array, if container doesn't know its size
+     */
+    void push(String name, Object container, Type type, int index) {
+        if (size == names.length) {
+            grow();
+        }
+        names[size] = name;
+        containers[size] = container;
+        types[size] = type;
+        indexes[size] = index;
+        size++;
+    }
+
+    void push(String name, Object container, Type type) {
+        push(name, container, type, 0);
+    }
+
+    void pop() {
+        size--;
+        names[size] = null;
+        containers[size] = null;
+    }
+
+    String name() {
+        return names[size - 1];
+    }
+
+    Object container() {
+        return containers[size - 1];
+    }
+
+    Type type() {
+        return types[size - 1];
+    }
+
+    int index() {
+        return indexes[size - 1];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        while (size > 0) {
+            pop();
+        }
+    }
+
+    /**
+     * Copies the path to the current value out, such as {@code <root>.a.[1]}, to be rendered later
+     * @param names filled with the property name at each level, or null within an array
+     * @param indexes filled with the index at each level within an array
+     */
+    void copyPath(String[] names, int[] indexes) {
+        for (int i = 0; i < size; i++) {
+            names[i] = this.names[i];
+            if (names[i] == null) {
+                Object container = containers[i];
+                indexes[i] = container instanceof List ? ((List<?>) container).size() : this.indexes[i];
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        String[] names = new String[capacity];
+        Object[] containers = new Object[capacity];
+        Type[] types = new Type[capacity];
+        int[] indexes = new int[capacity];
+        System.arraycopy(this.names, 0, names, 0, size);
+        System.arraycopy(this.containers, 0, containers, 0, size);
+        System.arraycopy(this.types, 0, types, 0, size);
+        System.arraycopy(this.indexes, 0, indexes, 0, size);
+        this.names = names;
+        this.containers = containers;
+        this.types = types;
+        this.indexes = indexes;
+    }
+}
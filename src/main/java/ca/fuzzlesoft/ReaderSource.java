@@ -0,0 +1,169 @@
+package ca.fuzzlesoft;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * {@link Source} that reads from a {@link Reader} into a window. Input is dropped as soon as the state machine has
+ * moved past it, so the window only grows when a single token doesn't fit
+ */
+final class ReaderSource extends Source {
+
+    private final Reader reader;
+    private char[] buf;
+    private int limit;
+    private boolean eof;
+    private long dropped; // Chars released from the start of the window
+
+    ReaderSource(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buf = new char[bufferSize];
+    }
+
+    @Override
+    boolean available(int i) {
+        return i < limit || fill(i);
+    }
+
+    @Override
+    char read(int i) {
+        return buf[i];
+    }
+
+    @Override
+    String substring(int start, int end) {
+        return new String(buf, start, end - start);
+    }
+
+    @Override
+    int release(int i) {
+        if (i < buf.length >> 1) {
+            return i; // Not worth the copy yet
+        }
+        System.arraycopy(buf, i, buf, 0, limit - i);
+        limit -= i;
+        dropped += i;
+        return 0;
+    }
+
+    @Override
+    long offset(int i) {
+        return dropped + i;
+    }
+
+    @Override
+    int skipString(int fieldStart) {
+        int i = fieldStart + 1;
+        while (true) {
+            if (i >= limit && !fill(i)) {
+                throw new IndexOutOfBoundsException();
+            }
+            char c = buf[i];
+            if (c == '"') {
+                return i;
+            }
+            i += c == '\\' ? 2 : 1; // Jump over escaped character
+        }
+    }
+
+    @Override
+    String extractString(int fieldStart) {
+        StringBuilder builder = null;
+        int start = fieldStart + 1;
+        int i = start;
+        while (true) {
+            if (i >= limit && !fill(i)) {
+                throw new IndexOutOfBoundsException();
+            }
+            char c = buf[i];
+            if (c == '"') {
+                stringEnd = i;
+                if (builder == null) {
+                    return new String(buf, start, i - start); // No escapes, nothing to decode
+                }
+                builder.append(buf, start, i - start);
+                return builder.toString();
+            } else if (c == '\\') {
+                if (builder == null) {
+                    builder = scratch();
+                }
+                builder.append(buf, start, i - start);
+                if (i + 1 >= limit && !fill(i + 1)) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                switch (buf[i + 1]) {
+                    case '"':
+                        builder.append('\"');
+                        break;
+                    case '\\':
+                        builder.append('\\');
+                        break;
+                    case '/':
+                        builder.append('/');
+                        break;
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (i + 5 >= limit && !fill(i + 5)) {
+                            throw new IndexOutOfBoundsException();
+                        }
+                        builder.append(decodeHex(i + 2));
+                        i += 4; // Jump over code point
+                        break;
+                    default:
+                        // Unknown escapes are dropped, along with the whole of a character escaped as a surrogate pair
+                        if (Character.isHighSurrogate(buf[i + 1]) && (i + 2 < limit || fill(i + 2))
+                                && Character.isLowSurrogate(buf[i + 2])) {
+                            i++;
+                        }
+                }
+                i += 2; // Jump over escape sequence
+                start = i;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Reads until buf[index] is available
+     * @return false if the input ends before index
+     */
+    private boolean fill(int index) {
+        try {
+            while (index >= limit) {
+                if (eof) {
+                    return false;
+                }
+                if (limit == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                int read = reader.read(buf, limit, buf.length - limit);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    limit += read;
+                    counted(read);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new ReadException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ca.fuzzlesoft;
+
+/**
+ * Remembers the shape of the documents parsed with it (the names of each object's properties in the order they're
+ * written, the type of each value and how long each array is) so that documents of the same shape can be parsed
+ * speculatively: property names are compared against the expected ones where they are in the input instead of being
+ * decoded, and maps and lists are created at the size they're expected to end up. Meant for parsing many documents
+ * that are all written the same way, such as messages from a single service.
+ *
+ * <pre>
+ * ShapeCache shapes = new ShapeCache();
+ * ParseOptions options = ParseOptions.DEFAULT.withShapeCache(shapes);
+ * for (byte[] message : messages) {
+ *     handle(JsonParse.parse(message, 0, message.length, options));
+ * }
+ * System.out.println(shapes.getHits() + " hits, " + shapes.getMisses() + " misses");
+ * </pre>
+ *
+ * The first document is parsed while its shape is recorded, and each one after it is parsed along that shape. One
+ * that doesn't fit (a property is missing, added or moved, or a value has another type) is parsed again from the
+ * start by the usual state machine, so output and errors are the same either way, and the next document is
+ * recorded in its place. {@code null} fits any type, and the elements of an array that have different shapes are
+ * parsed without speculating.
+ *
+ * <p>Thread safe, so a single instance can be shared by every parse, although documents of different shapes
+ * should each have their own. The counts aren't synchronized, and are approximate when shared.</p>
+ */
+public final class ShapeCache {
+
+    volatile ShapeParser.Shape shape;
+    long hits, misses, learned;
+
+    /**
+     * @return number of documents that were parsed along the recorded shape
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of documents that didn't fit the recorded shape (or couldn't be recorded), and were parsed
+     * again by the state machine
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of documents whose shape was recorded
+     */
+    public long getLearned() {
+        return learned;
+    }
+
+    /**
+     * Forgets the recorded shape and resets the counts
+     */
+    public void clear() {
+        shape = null;
+        hits = 0;
+        misses = 0;
+        learned = 0;
+    }
+
+    /**
+     * @return the recorded shape, such as {@code {id: number, tags: [string]}}, or "none"
+     */
+    @Override
+    public String toString() {
+        ShapeParser.Shape shape = this.shape;
+        return shape == null ? "none" : shape.toString();
+    }
+}
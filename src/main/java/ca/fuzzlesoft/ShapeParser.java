@@ -0,0 +1,482 @@
+package ca.fuzzlesoft;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses documents along the shape recorded in a {@link ShapeCache}, or records the shape of one while parsing it.
+ * Builds the same {@link Map}s and {@link List}s as {@link JsonParse}.
+ *
+ * <p>Only accepts well-formed JSON that fits the shape. Anything else is parsed again by the {@link JsonParse} state
+ * machine, so that output for lenient input (such as trailing commas) and every {@link JsonParseException} stay
+ * exactly the same.</p>
+ */
+final class ShapeParser {
+
+    /**
+     * Deepest nesting that's recorded. Anything deeper is parsed by the state machine, which doesn't recurse
+     */
+    static final int MAX_DEPTH = 128;
+
+    static final byte OBJECT = 0, ARRAY = 1, STRING = 2, NUMBER = 3, BOOLEAN = 4, NULL = 5, ANY = 6;
+
+    /**
+     * What a value is expected to be. Immutable, so it can be shared between threads
+     */
+    static final class Shape {
+        static final Shape STRING_SHAPE = new Shape(STRING), NUMBER_SHAPE = new Shape(NUMBER),
+                BOOLEAN_SHAPE = new Shape(BOOLEAN), NULL_SHAPE = new Shape(NULL), ANY_SHAPE = new Shape(ANY);
+
+        final byte type;
+        // Objects: each property's name, its raw characters and closing quote (or null if they need decoding) and
+        // the shape of its value
+        final String[] keys;
+        final char[][] names;
+        final Shape[] values;
+        // Arrays: the shape of every element, or null if there weren't any
+        final Shape element;
+        // Number of properties or elements
+        final int size;
+
+        private Shape(byte type) {
+            this(type, null, null, null, null, 0);
+        }
+
+        private Shape(byte type, String[] keys, char[][] names, Shape[] values, Shape element, int size) {
+            this.type = type;
+            this.keys = keys;
+            this.names = names;
+            this.values = values;
+            this.element = element;
+            this.size = size;
+        }
+
+        static Shape object(String[] keys, char[][] names, Shape[] values) {
+            return new Shape(OBJECT, keys, names, values, null, keys.length);
+        }
+
+        static Shape array(Shape element, int size) {
+            return new Shape(ARRAY, null, null, null, element, size);
+        }
+
+        /**
+         * @return a shape that both a and b fit, which is {@link #ANY_SHAPE} if they're too different
+         */
+        static Shape merge(Shape a, Shape b) {
+            if (a == b || b.type == NULL) {
+                return a;
+            } else if (a.type == NULL) {
+                return b;
+            } else if (a.type != b.type) {
+                return ANY_SHAPE;
+            }
+
+            if (a.type == ARRAY) {
+                Shape element = a.element == null ? b.element
+                        : b.element == null ? a.element
+                        : merge(a.element, b.element);
+                return element == a.element && a.size >= b.size ? a : array(element, Math.max(a.size, b.size));
+            } else if (a.type == OBJECT) {
+                if (!Arrays.equals(a.keys, b.keys)) {
+                    return ANY_SHAPE;
+                }
+                Shape[] values = null;
+                for (int k = 0; k < a.size; k++) {
+                    Shape value = merge(a.values[k], b.values[k]);
+                    if (value != a.values[k]) {
+                        if (values == null) {
+                            values = a.values.clone();
+                        }
+                        values[k] = value;
+                    }
+                }
+                return values == null ? a : object(a.keys, a.names, values);
+            }
+            return a;
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case OBJECT: {
+                    StringBuilder builder = new StringBuilder("{");
+                    for (int k = 0; k < size; k++) {
+                        builder.append(k == 0 ? "" : ", ").append(keys[k]).append(": ").append(values[k]);
+                    }
+                    return builder.append('}').toString();
+                }
+                case ARRAY:
+                    return element == null ? "[]" : "[" + element + "]";
+                case STRING:
+                    return "string";
+                case NUMBER:
+                    return "number";
+                case BOOLEAN:
+                    return "boolean";
+                case NULL:
+                    return "null";
+                default:
+                    return "any";
+            }
+        }
+    }
+
+    /**
+     * Thrown for anything {@link ShapeParser} won't parse itself. Never leaves this class
+     */
+    private static final class Mismatch extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Mismatch() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Mismatch MISMATCH = new Mismatch();
+
+    private final Source source;
+    private final ParseOptions options;
+    private final boolean plain; // Containers are HashMaps and ArrayLists, so they can be created presized
+    private int i;
+    private Shape learned; // Shape of the value last returned by learn()
+
+    private ShapeParser(Source source, ParseOptions options) {
+        this.source = source;
+        this.options = options;
+        this.plain = options.containers == ContainerFactory.DEFAULT;
+    }
+
+    /**
+     * @param source an in-memory source, whose length doesn't change
+     * @return the same as {@link JsonParse#parse(Source, int, ParseOptions)}
+     */
+    static Object parse(Source source, ParseOptions options) {
+        ShapeCache cache = options.shapes;
+        Shape shape = cache.shape;
+        ShapeParser parser = new ShapeParser(source, options);
+        try {
+            if (shape != null) {
+                Object value = parser.match(shape, null, 0);
+                cache.hits++;
+                return value;
+            }
+            Object value = parser.learn(null, 0);
+            cache.shape = parser.learned;
+            cache.learned++;
+            return value;
+        } catch (Mismatch | RuntimeException e) {
+            // Let the state machine decide what to make of it, and record the next document instead
+        }
+        cache.misses++;
+        if (shape != null) {
+            cache.shape = null;
+        }
+        return JsonParse.parse(source, 0, options);
+    }
+
+    /**
+     * Parses the value at i, which is expected to fit shape
+     * @param name name of the property the value belongs to, or null
+     */
+    private Object match(Shape shape, String name, int depth) throws Mismatch {
+        char c = peek();
+        if (c == 'n') {
+            return constant(); // null fits anywhere
+        }
+
+        switch (shape.type) {
+            case OBJECT: {
+                if (c != '{') {
+                    throw MISMATCH;
+                }
+                i++;
+                Map<String, Object> map = plain
+                        ? new HashMap<String, Object>(shape.size * 4 / 3 + 1)
+                        : options.newObject(name);
+                for (int k = 0; k < shape.size; k++) {
+                    if (k > 0) {
+                        expect(',');
+                    }
+                    if (peek() != '"' || !name(shape, k)) {
+                        throw MISMATCH;
+                    }
+                    expect(':');
+                    String key = shape.keys[k];
+                    map.put(key, match(shape.values[k], key, depth + 1));
+                }
+                expect('}');
+                return options.finish(name, map);
+            }
+            case ARRAY: {
+                if (c != '[') {
+                    throw MISMATCH;
+                }
+                i++;
+                List<Object> list = plain && !options.primitiveArrays
+                        ? new ArrayList<>(shape.size)
+                        : options.newArray(name);
+                if (peek() == ']') {
+                    i++;
+                } else {
+                    Shape element = shape.element == null ? Shape.ANY_SHAPE : shape.element;
+                    while (true) {
+                        if (list instanceof NumberList && element.type == NUMBER && peek() != 'n') {
+                            // Skip boxing altogether
+                            number((NumberList) list);
+                        } else {
+                            list.add(match(element, null, depth + 1));
+                        }
+                        char next = peek();
+                        i++;
+                        if (next == ']') {
+                            break;
+                        } else if (next != ',') {
+                            throw MISMATCH;
+                        }
+                    }
+                }
+                return options.finish(name, list);
+            }
+            case STRING:
+                if (c != '"') {
+                    throw MISMATCH;
+                }
+                return string();
+            case NUMBER:
+                if (!Constants.isNumberStart(c)) {
+                    throw MISMATCH;
+                }
+                return number(null);
+            case BOOLEAN:
+                if (c != 't' && c != 'f') {
+                    throw MISMATCH;
+                }
+                return constant();
+            default:
+                // Nothing to go on
+                return learn(name, depth);
+        }
+    }
+
+    /**
+     * Parses the value at i, recording its shape in {@link #learned}
+     * @param name name of the property the value belongs to, or null
+     */
+    private Object learn(String name, int depth) throws Mismatch {
+        char c = peek();
+        if (depth >= MAX_DEPTH && (c == '{' || c == '[')) {
+            Object value = JsonParse.parse(source, i, options);
+            i = source.valueEnd;
+            learned = Shape.ANY_SHAPE;
+            return value;
+        }
+
+        if (c == '{') {
+            i++;
+            Map<String, Object> map = options.newObject(name);
+            List<String> keys = new ArrayList<>();
+            List<char[]> names = new ArrayList<>();
+            List<Shape> values = new ArrayList<>();
+            if (peek() == '}') {
+                i++;
+            } else {
+                while (true) {
+                    if (peek() != '"') {
+                        throw MISMATCH;
+                    }
+                    int start = i;
+                    String key = options.keyCache != null
+                            ? source.extractKey(start, options.keyCache)
+                            : source.extractString(start);
+                    int end = source.stringEnd;
+                    i = end + 1;
+                    expect(':');
+                    map.put(key, learn(key, depth + 1));
+                    keys.add(key);
+                    names.add(raw(start + 1, end));
+                    values.add(learned);
+
+                    char next = peek();
+                    i++;
+                    if (next == '}') {
+                        break;
+                    } else if (next != ',') {
+                        throw MISMATCH;
+                    }
+                }
+            }
+            learned = Shape.object(keys.toArray(new String[keys.size()]), names.toArray(new char[names.size()][]),
+                    values.toArray(new Shape[values.size()]));
+            return options.finish(name, map);
+        } else if (c == '[') {
+            i++;
+            List<Object> list = options.newArray(name);
+            Shape element = null;
+            if (peek() == ']') {
+                i++;
+            } else {
+                while (true) {
+                    list.add(learn(null, depth + 1));
+                    element = element == null ? learned : Shape.merge(element, learned);
+
+                    char next = peek();
+                    i++;
+                    if (next == ']') {
+                        break;
+                    } else if (next != ',') {
+                        throw MISMATCH;
+                    }
+                }
+            }
+            learned = Shape.array(element, list.size());
+            return options.finish(name, list);
+        } else if (c == '"') {
+            learned = Shape.STRING_SHAPE;
+            return string();
+        } else if (Constants.isLetter(c)) {
+            Object value = constant();
+            learned = value == null ? Shape.NULL_SHAPE : Shape.BOOLEAN_SHAPE;
+            return value;
+        } else if (Constants.isNumberStart(c)) {
+            learned = Shape.NUMBER_SHAPE;
+            return number(null);
+        }
+        throw MISMATCH;
+    }
+
+    /**
+     * Compares the name at i with the k-th property of shape, moving past it if it's the same
+     */
+    private boolean name(Shape shape, int k) {
+        char[] raw = shape.names[k];
+        if (raw == null) {
+            String key = source.extractString(i);
+            i = source.stringEnd + 1;
+            return key.equals(shape.keys[k]);
+        }
+
+        int start = i + 1;
+        if (!source.has(start + raw.length - 1)) {
+            return false;
+        }
+        for (int j = 0; j < raw.length; j++) {
+            if (source.charAt(start + j) != raw[j]) {
+                return false;
+            }
+        }
+        i = start + raw.length;
+        return true;
+    }
+
+    /**
+     * @param end index of the closing quote
+     * @return the characters between start and end followed by a quote, or null if there's an escape or non-ASCII
+     * character among them
+     */
+    private char[] raw(int start, int end) {
+        char[] raw = new char[end - start + 1];
+        for (int j = start; j < end; j++) {
+            char c = source.charAt(j);
+            if (c == '\\' || c >= 0x80) {
+                return null;
+            }
+            raw[j - start] = c;
+        }
+        raw[raw.length - 1] = '"';
+        return raw;
+    }
+
+    private String string() {
+        String value = source.extractString(i);
+        i = source.stringEnd + 1;
+        return value;
+    }
+
+    private Object constant() throws Mismatch {
+        int start = i;
+        while (source.has(i) && Constants.isLetter(source.charAt(i))) {
+            i++;
+        }
+        char c = source.charAt(start);
+        switch (i - start) {
+            case 4:
+                if (c == 't' && source.charAt(start + 1) == 'r' && source.charAt(start + 2) == 'u'
+                        && source.charAt(start + 3) == 'e') {
+                    return true;
+                } else if (c == 'n' && source.charAt(start + 1) == 'u' && source.charAt(start + 2) == 'l'
+                        && source.charAt(start + 3) == 'l') {
+                    return null;
+                }
+                break;
+            case 5:
+                if (c == 'f' && source.charAt(start + 1) == 'a' && source.charAt(start + 2) == 'l'
+                        && source.charAt(start + 3) == 's' && source.charAt(start + 4) == 'e') {
+                    return false;
+                }
+                break;
+        }
+        throw MISMATCH;
+    }
+
+    /**
+     * Reads a number the same way as the state machine does
+     * @param list if not null, the number is added to it instead of being returned
+     */
+    private Number number(NumberList list) throws Mismatch {
+        boolean withDecimal = false, withE = false;
+        int start = i;
+        for (; source.has(i); i++) {
+            char c = source.charAt(i);
+            if (!withDecimal && c == '.') {
+                withDecimal = true;
+            } else if (!withE && (c == 'e' || c == 'E')) {
+                withE = true;
+            } else if (!Constants.isNumberStart(c) && c != '+') {
+                break;
+            }
+        }
+
+        try {
+            if (withDecimal || withE) {
+                double value = Numbers.decodeDouble(source, start, i);
+                if (list == null) {
+                    return value;
+                }
+                list.addDouble(value);
+            } else {
+                long value = Numbers.decodeLong(source, start, i);
+                if (list == null) {
+                    return Numbers.box(value);
+                }
+                list.addLong(value);
+            }
+            return null;
+        } catch (NumberFormatException e) {
+            throw MISMATCH;
+        }
+    }
+
+    /**
+     * @return the first character from i on that isn't whitespace, which i is left at
+     */
+    private char peek() throws Mismatch {
+        while (source.has(i)) {
+            char c = source.charAt(i);
+            if (!Constants.isWhitespace(c)) {
+                return c;
+            }
+            i++;
+        }
+        throw MISMATCH;
+    }
+
+    private void expect(char c) throws Mismatch {
+        if (peek() != c) {
+            throw MISMATCH;
+        }
+        i++;
+    }
+}
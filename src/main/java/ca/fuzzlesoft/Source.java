@@ -0,0 +1,292 @@
+package ca.fuzzlesoft;
+
+import java.io.IOException;
+
+/**
+ * Input consumed by the {@link JsonParse} state machine. Indexes are positions within the source; all JSON structure
+ * (brackets, quotes, commas, numbers and constants) is ASCII, so {@link #charAt(int)} only has to be exact for ASCII.
+ * Anything else only needs decoding inside strings, which is left to {@link #extractString(int)}.
+ */
+abstract class Source {
+
+    /**
+     * Starting size of the window that streaming sources read into
+     */
+    static final int STREAM_BUFFER_SIZE = 8192;
+
+    /**
+     * Index of the closing quote of the string last returned by {@link #extractString(int)} or
+     * {@link #extractKey(int, KeyCache)}
+     */
+    int stringEnd;
+
+    /**
+     * Index just after the value last returned by {@link JsonParse#parse(Source, int, ParseOptions)}
+     */
+    int valueEnd;
+
+    /**
+     * Lent by the {@link JsonParser} running the parse, or made by {@link #scratch()} on first use
+     */
+    StringBuilder scratch;
+
+    /**
+     * Most input a streaming source reads before failing, from {@link ParseLimits#maxDocumentLength}
+     */
+    long maxLength = Long.MAX_VALUE;
+    private long lengthRead;
+
+    /**
+     * Counts input read by a streaming source against {@link #maxLength}
+     * @param length how much more was read
+     */
+    void counted(int length) {
+        lengthRead += length;
+        if (lengthRead > maxLength) {
+            throw ParseLimits.documentTooLong(maxLength, true);
+        }
+    }
+
+    /**
+     * @param i index to check
+     * @return true if there is input at index i
+     */
+    final boolean has(int i) {
+        // Strings and bytes are checked here rather than through an override, so that the state machine's calls stay
+        // monomorphic (and inlined) for them however many other kinds of source have been parsed
+        if (this instanceof StringSource) {
+            return i < ((StringSource) this).length;
+        } else if (this instanceof ByteSource) {
+            ByteSource bytes = (ByteSource) this;
+            return i < bytes.limit - bytes.offset || bytes.fill(bytes.offset + i);
+        }
+        return available(i);
+    }
+
+    /**
+     * @param i index of the character, must satisfy {@link #has(int)}
+     * @return the character at i. Non-ASCII input may be returned as an undecoded unit
+     */
+    final char charAt(int i) {
+        if (this instanceof StringSource) {
+            return ((StringSource) this).jsonString.charAt(i);
+        } else if (this instanceof ByteSource) {
+            ByteSource bytes = (ByteSource) this;
+            return (char) (bytes.buf[bytes.offset + i] & 0xFF);
+        }
+        return read(i);
+    }
+
+    /**
+     * {@link #has(int)} for sources other than strings and bytes
+     */
+    boolean available(int i) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@link #charAt(int)} for sources other than strings and bytes
+     */
+    char read(int i) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Decodes the whole character at i, for error messages, which {@link #charAt(int)} doesn't do for non-ASCII input
+     * @param i index of the character, must satisfy {@link #has(int)}
+     * @return the character, two UTF-16 units if it's outside the Basic Multilingual Plane
+     */
+    String characterAt(int i) {
+        char c = charAt(i);
+        if (Character.isHighSurrogate(c) && has(i + 1) && Character.isLowSurrogate(charAt(i + 1))) {
+            return new String(new char[] {c, charAt(i + 1)});
+        }
+        return String.valueOf(c);
+    }
+
+    /**
+     * @param start inclusive start, must satisfy {@link #has(int)}
+     * @param end exclusive end
+     * @return the (ASCII) text between start and end, used for numbers and constants
+     */
+    abstract String substring(int start, int end);
+
+    /**
+     * Decodes the string starting at the quote at fieldStart, converting escape sequences. Strings without escapes
+     * are copied straight out of the input; only strings with escapes are put together in {@link #scratch()}
+     * @param fieldStart index of the opening quote
+     * @return the decoded string. The index of its closing quote is left in {@link #stringEnd}
+     * @throws IndexOutOfBoundsException if the string isn't terminated
+     * @throws MalformedEscape if a unicode escape isn't four hex digits
+     */
+    abstract String extractString(int fieldStart);
+
+    /**
+     * Same as {@link #extractString(int)}, except that the string is looked up in keys instead of being allocated,
+     * as long as it's plain ASCII
+     * @param fieldStart index of the opening quote
+     * @param keys cache of canonical names
+     * @return the canonical string. The index of its closing quote is left in {@link #stringEnd}
+     * @throws IndexOutOfBoundsException if the string isn't terminated
+     * @throws MalformedEscape if a unicode escape isn't four hex digits
+     */
+    String extractKey(int fieldStart, KeyCache keys) {
+        int hash = 0;
+        int i = fieldStart + 1;
+        char c;
+        while (has(i) && (c = charAt(i)) != '"') {
+            if (c == '\\' || c >= 0x80) {
+                // Needs decoding first
+                return keys.intern(extractString(fieldStart));
+            }
+            hash = 31 * hash + c; // Same as String.hashCode()
+            i++;
+        }
+        if (!has(i)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        stringEnd = i;
+        return keys.lookup(this, fieldStart + 1, i, hash);
+    }
+
+    /**
+     * Finds the end of the string starting at the quote at fieldStart, without decoding it
+     * @param fieldStart index of the opening quote
+     * @return the index of the closing quote
+     * @throws IndexOutOfBoundsException if the string isn't terminated
+     */
+    abstract int skipString(int fieldStart);
+
+    /**
+     * Finds the end of the string starting at the quote at fieldStart, without decoding it, but checking it the same
+     * way as {@link #extractString(int)}
+     * @param fieldStart index of the opening quote
+     * @return the index of the closing quote, or -1 if extractString would fail: the string isn't terminated, or a
+     * unicode escape isn't four hex digits
+     */
+    int checkString(int fieldStart) {
+        int i = fieldStart + 1;
+        while (has(i)) {
+            char c = charAt(i);
+            if (c == '"') {
+                return i;
+            } else if (c == '\\') {
+                if (has(i + 1) && charAt(i + 1) == 'u') {
+                    if (!has(i + 5)) {
+                        return -1;
+                    }
+                    for (int j = i + 2; j < i + 6; j++) {
+                        if (Character.digit(charAt(j), 16) < 0) {
+                            return -1;
+                        }
+                    }
+                    i += 4; // Jump over code point
+                }
+                i += 2; // Jump over escape sequence
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return an empty builder for decoding escapes into, reused for every string from this source
+     */
+    StringBuilder scratch() {
+        if (scratch == null) {
+            scratch = new StringBuilder();
+        } else {
+            scratch.setLength(0);
+        }
+        return scratch;
+    }
+
+    /**
+     * Decodes the four hex digits of a unicode escape, which must satisfy {@link #has(int)}
+     * @param i index of the first digit
+     * @return the UTF-16 unit
+     * @throws MalformedEscape if they aren't hex digits
+     */
+    char decodeHex(int i) {
+        int value = 0;
+        for (int end = i + 4; i < end; i++) {
+            int digit = Character.digit(charAt(i), 16);
+            if (digit < 0) {
+                throw new MalformedEscape(end - 6);
+            }
+            value = value << 4 | digit;
+        }
+        return (char) value;
+    }
+
+    /**
+     * @return a new source over the same input, so that parts of it can be parsed on other threads
+     * @throws UnsupportedOperationException if the input isn't all there, like with streams
+     */
+    Source fork() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't be forked");
+    }
+
+    /**
+     * @param i index within the source
+     * @return how far i is into the whole input, which differs from i once a streaming source has dropped some of it
+     */
+    long offset(int i) {
+        return i;
+    }
+
+    /**
+     * @return whether all of the input from index 0 is still there, so that the line and column of an index can be
+     * counted. Not so for streaming sources, which drop input once it's been parsed
+     */
+    boolean keepsStart() {
+        return false;
+    }
+
+    /**
+     * Called by the state machine between values. Input before index i won't be looked at again, so sources that
+     * read into a buffer may drop it and shift the remaining input down
+     * @param i index of the first character still needed
+     * @return the index that the character at i has afterwards
+     */
+    int release(int i) {
+        return i;
+    }
+
+    /**
+     * Thrown by {@link #extractString(int)} when a unicode escape isn't four hex digits, for the parser to turn into a
+     * {@link JsonParseException} with the path to the string. Has no stack trace, as it never leaves the parser
+     */
+    static final class MalformedEscape extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Index of the backslash starting the escape
+         */
+        final int index;
+
+        MalformedEscape(int index) {
+            super(null, null, false, false);
+            this.index = index;
+        }
+    }
+
+    /**
+     * Thrown through the state machine when the underlying {@link java.io.Reader} or {@link java.io.InputStream}
+     * fails, so that it can be unwrapped back into the original {@link IOException}
+     */
+    static class ReadException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ReadException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ca.fuzzlesoft;
+
+/**
+ * {@link Source} over a {@link String}
+ */
+final class StringSource extends Source {
+
+    String jsonString;
+    int length;
+
+    StringSource(String jsonString) {
+        reset(jsonString);
+    }
+
+    /**
+     * Points this source at other input, so that a {@link JsonParser} can keep using it
+     */
+    void reset(String jsonString) {
+        this.jsonString = jsonString;
+        this.length = jsonString.length();
+    }
+
+    @Override
+    String substring(int start, int end) {
+        return jsonString.substring(start, end);
+    }
+
+    @Override
+    String extractString(int fieldStart) {
+        StringBuilder builder = null;
+        while (true) {
+            int i = indexOfSpecial(jsonString, fieldStart);
+            char c = jsonString.charAt(i);
+            if (c == '"') {
+                stringEnd = i;
+                if (builder == null) {
+                    return jsonString.substring(fieldStart + 1, i); // No escapes, nothing to decode
+                }
+                builder.append(jsonString, fieldStart + 1, i);
+                return builder.toString();
+            } else if (c == '\\') {
+                if (builder == null) {
+                    builder = scratch();
+                }
+                builder.append(jsonString, fieldStart + 1, i);
+
+                c = jsonString.charAt(i + 1);
+                switch (c) {
+                    case '"':
+                        builder.append('\"');
+                        break;
+                    case '\\':
+                        builder.append('\\');
+                        break;
+                    case '/':
+                        builder.append('/');
+                        break;
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (i + 5 >= length) {
+                            throw new IndexOutOfBoundsException();
+                        }
+                        builder.append(decodeHex(i + 2));
+                        fieldStart = i + 5; // Jump over escape sequence and code point
+                        continue;
+                    default:
+                        // Unknown escapes are dropped, along with the whole of a character escaped as a surrogate pair
+                        if (Character.isHighSurrogate(c) && i + 2 < length
+                                && Character.isLowSurrogate(jsonString.charAt(i + 2))) {
+                            fieldStart = i + 2;
+                            continue;
+                        }
+                }
+                fieldStart = i + 1; // Jump over escape sequence
+            } else {
+                throw new IndexOutOfBoundsException();
+            }
+        }
+    }
+
+    @Override
+    Source fork() {
+        return new StringSource(jsonString);
+    }
+
+    @Override
+    boolean keepsStart() {
+        return true;
+    }
+
+    @Override
+    int skipString(int fieldStart) {
+        int i = fieldStart;
+        while (jsonString.charAt(i = indexOfSpecial(jsonString, i)) != '"') {
+            i++; // Jump over escaped character
+        }
+        return i;
+    }
+
+    @Override
+    int checkString(int fieldStart) {
+        int i = fieldStart;
+        while ((i = indexOfSpecial(jsonString, i)) < length) {
+            if (jsonString.charAt(i) == '"') {
+                return i;
+            }
+            if (i + 1 < length && jsonString.charAt(i + 1) == 'u') {
+                if (i + 5 >= length) {
+                    return -1;
+                }
+                for (int j = i + 2; j < i + 6; j++) {
+                    if (Character.digit(jsonString.charAt(j), 16) < 0) {
+                        return -1;
+                    }
+                }
+                i += 4; // Jump over code point
+            }
+            i++; // Jump over escaped character
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of either a quotation, or a control character backslash. Skips the first element.
+     * !! Do not inline this function, the JVM <3 optimising it, and inlining it slows it down ... somehow.
+     * @param str content string to find quote or backslash
+     * @param start start index to search
+     * @return index of the first quote or backslash found at or after `start`
+     */
+    private static int indexOfSpecial(String str, int start) {
+        while (++start < str.length() && str.charAt(start) != '"' && str.charAt(start) != '\\');
+        return start;
+    }
+}
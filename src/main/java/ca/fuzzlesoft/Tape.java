@@ -0,0 +1,310 @@
+package ca.fuzzlesoft;
+
+import java.util.Arrays;
+
+/**
+ * A parsed document laid out flat: one node per value, in document order, holding only its type and where it starts in
+ * the source. Containers also hold the index of the node after their last descendant, so they can be stepped over.
+ * Nothing is decoded while the tape is built (numbers are only checked), so untouched values cost a few bytes each.
+ *
+ * <p>The children of an object alternate between its property names and their values.</p>
+ */
+final class Tape {
+
+    static final byte OBJECT = 0, ARRAY = 1, STRING = 2, INTEGER = 3, DECIMAL = 4, TRUE = 5, FALSE = 6, NULL = 7;
+
+    final Source source;
+    final ParseOptions options;
+
+    byte[] types = new byte[16];
+    int[] starts = new int[16]; // Index in source where each value starts
+    int[] ends = new int[16]; // Node after each container, or index in source after each number
+    int count;
+
+    private Tape(Source source, ParseOptions options) {
+        this.source = source;
+        this.options = options;
+    }
+
+    /**
+     * @return the value at the start of source, with containers as lazy views. Parsed by {@link JsonParse} instead if
+     * it isn't well-formed
+     */
+    static Object parse(Source source, ParseOptions options) {
+        Tape tape = build(source, options);
+        return tape != null ? tape.value(0) : JsonParse.parse(source, 0, options);
+    }
+
+    /**
+     * Builds the tape of the value at the start of source. Only accepts well-formed JSON (plus trailing commas, like
+     * {@link JsonParse}) within the {@link ParseOptions#limits}, as values are decoded long after they've been read,
+     * where there's no way of throwing the same {@link JsonParseException} as {@link JsonParse} would
+     * @param source input that stays around for as long as the tape does
+     * @return the tape, or null if source isn't well-formed or breaks a limit
+     */
+    static Tape build(Source source, ParseOptions options) {
+        Tape tape = new Tape(source, options);
+        try {
+            return tape.build() ? tape : null;
+        } catch (Source.MalformedEscape | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean build() {
+        ParseLimits limits = options.limits;
+        int[] open = new int[16]; // Containers that haven't been closed yet
+        int[] entries = new int[16]; // Properties or elements started in each of them
+        int depth = 0;
+        int i = skipWhitespace(0);
+
+        while (true) {
+            // Expecting a value
+            if (!source.has(i)) {
+                return false;
+            }
+            if (depth > 0 && types[open[depth - 1]] == ARRAY && ++entries[depth - 1] > limits.maxEntries) {
+                return false;
+            }
+            char c = source.charAt(i);
+            int node = add(i);
+            if (c == '{' || c == '[') {
+                if (depth >= limits.maxDepth) {
+                    return false;
+                }
+                types[node] = c == '{' ? OBJECT : ARRAY;
+                i = skipWhitespace(i + 1);
+                if (!source.has(i)) {
+                    return false;
+                }
+                if (source.charAt(i) == (c == '{' ? '}' : ']')) {
+                    ends[node] = count;
+                    i++;
+                } else {
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                        entries = Arrays.copyOf(entries, depth * 2);
+                    }
+                    entries[depth] = 0;
+                    open[depth++] = node;
+                    if (c == '{' && (++entries[depth - 1] > limits.maxEntries || (i = property(i)) < 0)) {
+                        return false;
+                    }
+                    continue;
+                }
+            } else if (c == '"') {
+                types[node] = STRING;
+                if ((i = string(i)) < 0) {
+                    return false;
+                }
+            } else if (Constants.isLetter(c)) {
+                if ((i = constant(node, i)) < 0) {
+                    return false;
+                }
+            } else if (Constants.isNumberStart(c)) {
+                if ((i = number(node, i)) < 0) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+
+            // Have a value, find out what comes after it
+            while (true) {
+                if (depth == 0) {
+                    source.valueEnd = i;
+                    return true;
+                }
+                i = skipWhitespace(i);
+                if (!source.has(i)) {
+                    return false;
+                }
+                int container = open[depth - 1];
+                char close = types[container] == OBJECT ? '}' : ']';
+                c = source.charAt(i);
+                if (c == ',') {
+                    i = skipWhitespace(i + 1);
+                    if (!source.has(i)) {
+                        return false;
+                    }
+                    if (source.charAt(i) != close) {
+                        if (types[container] == OBJECT
+                                && (++entries[depth - 1] > limits.maxEntries || (i = property(i)) < 0)) {
+                            return false;
+                        }
+                        break;
+                    }
+                    // Trailing comma, which JsonParse allows
+                } else if (c != close) {
+                    return false;
+                }
+                ends[container] = count;
+                depth--;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Adds a property name, and its colon
+     * @return index of the value, or -1 if there isn't a property name
+     */
+    private int property(int i) {
+        if (!source.has(i) || source.charAt(i) != '"') {
+            return -1;
+        }
+        int node = add(i);
+        types[node] = STRING;
+        if ((i = string(i)) < 0) {
+            return -1;
+        }
+        i = skipWhitespace(i);
+        if (!source.has(i) || source.charAt(i) != ':') {
+            return -1;
+        }
+        return skipWhitespace(i + 1);
+    }
+
+    /**
+     * @return index after the closing quote, or -1 if there isn't one or the string is over the limit
+     */
+    private int string(int i) {
+        int start = i;
+        for (i++; source.has(i); i++) {
+            char c = source.charAt(i);
+            if (c == '"') {
+                return i - start - 1 > options.limits.maxStringLength ? -1 : i + 1;
+            } else if (c == '\\') {
+                if (!source.has(++i)) {
+                    return -1;
+                }
+                if (source.charAt(i) == 'u') {
+                    if (!source.has(i + 4)) {
+                        return -1;
+                    }
+                    source.decodeHex(i + 1); // Throws now, rather than on access
+                    i += 4;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int constant(int node, int i) {
+        int end = i;
+        while (source.has(end) && Constants.isLetter(source.charAt(end))) {
+            end++;
+        }
+        if (is(i, end, "true")) {
+            types[node] = TRUE;
+        } else if (is(i, end, "false")) {
+            types[node] = FALSE;
+        } else if (is(i, end, "null")) {
+            types[node] = NULL;
+        } else {
+            return -1;
+        }
+        return end;
+    }
+
+    private boolean is(int start, int end, String constant) {
+        if (end - start != constant.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) != constant.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a number the same way as {@link JsonParse} does, decoding it to make sure that it can be
+     * @return index after the number, or -1 if it's over the limit
+     */
+    private int number(int node, int i) {
+        boolean withDecimal = false, withE = false;
+        int end = i;
+        for (; source.has(end); end++) {
+            char c = source.charAt(end);
+            if (!withDecimal && c == '.') {
+                withDecimal = true;
+            } else if (!withE && (c == 'e' || c == 'E')) {
+                withE = true;
+            } else if (!Constants.isNumberStart(c) && c != '+') {
+                break;
+            }
+        }
+
+        if (end - i > options.limits.maxNumberLength) {
+            return -1;
+        }
+        if (withDecimal || withE) {
+            Numbers.decodeDouble(source, i, end);
+            types[node] = DECIMAL;
+        } else {
+            Numbers.decodeLong(source, i, end);
+            types[node] = INTEGER;
+        }
+        ends[node] = end;
+        return end;
+    }
+
+    private int skipWhitespace(int i) {
+        while (source.has(i) && Constants.isWhitespace(source.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int add(int start) {
+        if (count == types.length) {
+            types = Arrays.copyOf(types, count * 2);
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        return count++;
+    }
+
+    /**
+     * @return the node after node and all of its descendants
+     */
+    int next(int node) {
+        return types[node] <= ARRAY ? ends[node] : node + 1;
+    }
+
+    /**
+     * @return the value of node, with containers as lazy views over the tape
+     */
+    Object value(int node) {
+        switch (types[node]) {
+            case OBJECT:
+                return new LazyMap(this, node);
+            case ARRAY:
+                return new LazyList(this, node);
+            case STRING:
+                return source.extractString(starts[node]);
+            case INTEGER:
+                return Numbers.box(Numbers.decodeLong(source, starts[node], ends[node]));
+            case DECIMAL:
+                return Numbers.decodeDouble(source, starts[node], ends[node]);
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the property name at node
+     */
+    String key(int node) {
+        return options.keyCache != null
+                ? source.extractKey(starts[node], options.keyCache)
+                : source.extractString(starts[node]);
+    }
+}
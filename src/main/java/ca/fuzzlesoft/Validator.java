@@ -0,0 +1,273 @@
+package ca.fuzzlesoft;
+
+import ca.fuzzlesoft.JsonParse.Type;
+
+/**
+ * Checks that input would parse, without building anything: the {@link JsonParse} state machine with every value
+ * skipped instead of decoded, so that it accepts exactly the same input (lenient parts included), and checks the same
+ * {@link ParseLimits}. Strings are scanned in place, numbers and constants are checked where they are, and the stack
+ * only holds the type of each enclosing object or array, so nothing is allocated.
+ *
+ * <p>Only answers whether the input is valid. Invalid input is parsed again to find out why, so that the failure is
+ * exactly the {@link JsonParseException} parsing would have thrown.</p>
+ */
+final class Validator {
+
+    private Validator() {}
+
+    /**
+     * @param source checked
+     * @param limits checked against, as they are by {@link JsonParse#parse(Source, int, ParseOptions, ParseStack)}
+     * @param stack empty stack to use, with only types and entry counts pushed onto it. Left as it is on failure
+     * @return whether {@link JsonParse#parse(Source, int, ParseOptions)} would return a value
+     */
+    @SuppressWarnings("ConstantConditions")
+    static boolean validate(Source source, ParseLimits limits, ParseStack stack) {
+        Type currentType;
+        Type container = null; // OBJECT or ARRAY for the enclosing container, null at the root
+
+        boolean expectingComma = false, expectingColon = false;
+        int fieldStart = 0, i = 0;
+        char current;
+
+        int maxDepth = limits.maxDepth, maxEntries = limits.maxEntries;
+        int entries = 0;
+
+        while (true) {
+            if (!source.has(i)) {
+                return false;
+            }
+            if (!Constants.isWhitespace(current = source.charAt(i))) break;
+            i++;
+        }
+
+        if (current == '{') {
+            currentType = container = Type.OBJECT;
+            i++;
+        } else if (current == '[') {
+            currentType = container = Type.ARRAY;
+            i++;
+        } else if (current == '"') {
+            currentType = Type.STRING;
+            fieldStart = i;
+        } else if (Constants.isLetter(current)) {
+            currentType = Type.CONSTANT;
+            fieldStart = i;
+        } else if (Constants.isNumberStart(current)) {
+            currentType = Type.NUMBER;
+            fieldStart = i;
+        } else {
+            return false;
+        }
+
+        while (source.has(i)) {
+            current = source.charAt(i);
+            switch (currentType) {
+                case NAME: {
+                    int end = source.checkString(i);
+                    if (end < 0 || end - i - 1 > limits.maxStringLength) {
+                        return false;
+                    }
+                    i = end;
+                    currentType = Type.HEURISTIC;
+                    expectingColon = true;
+                    i++;
+                    break;
+                }
+                case STRING: {
+                    int end = source.checkString(i);
+                    if (end < 0 || end - i - 1 > limits.maxStringLength) {
+                        return false;
+                    }
+                    i = end;
+                    if (container == null) {
+                        return true;
+                    }
+                    expectingComma = true;
+                    currentType = container;
+                    i++;
+                    break;
+                }
+                case NUMBER: {
+                    boolean withDecimal = false;
+                    boolean withE = false;
+                    do {
+                        current = source.charAt(i);
+                        if (!withDecimal && current == '.') {
+                            withDecimal = true;
+                        } else if (!withE && (current == 'e' || current == 'E')) {
+                            withE = true;
+                        } else if (!Constants.isNumberStart(current) && current != '+') {
+                            break;
+                        }
+                    } while (source.has(++i));
+
+                    if (i - fieldStart > limits.maxNumberLength) {
+                        return false;
+                    }
+                    if (withDecimal || withE
+                            ? !Numbers.isDouble(source, fieldStart, i)
+                            : !Numbers.isLong(source, fieldStart, i)) {
+                        return false;
+                    }
+                    if (container == null) {
+                        return true;
+                    }
+                    expectingComma = true;
+                    currentType = container;
+                    break;
+                }
+                case CONSTANT:
+                    while (Constants.isLetter(current) && source.has(++i)) {
+                        current = source.charAt(i);
+                    }
+                    if (!isConstant(source, fieldStart, i)) {
+                        return false;
+                    }
+                    if (container == null) {
+                        return true;
+                    }
+                    expectingComma = true;
+                    currentType = container;
+                    break;
+                case HEURISTIC:
+                    while (Constants.isWhitespace(current) && source.has(++i)) {
+                        current = source.charAt(i);
+                    }
+
+                    if (current != ':' && expectingColon) {
+                        return false;
+                    }
+
+                    if (current == ':') {
+                        if (!expectingColon) {
+                            return false;
+                        }
+                        expectingColon = false;
+                        i++;
+                    } else if (current == '"') {
+                        currentType = Type.STRING;
+                        fieldStart = i;
+                    } else if (current == '{' || current == '[') {
+                        stack.push(null, null, Type.OBJECT, entries);
+                        if (stack.size() >= maxDepth) {
+                            return false;
+                        }
+                        entries = 0;
+                        currentType = container = current == '{' ? Type.OBJECT : Type.ARRAY;
+                        i++;
+                    } else if (Constants.isLetter(current)) {
+                        currentType = Type.CONSTANT;
+                        fieldStart = i;
+                    } else if (Constants.isNumberStart(current)) {
+                        currentType = Type.NUMBER;
+                        fieldStart = i;
+                    } else {
+                        return false;
+                    }
+                    break;
+                case OBJECT:
+                    i = source.release(i);
+                    while (Constants.isWhitespace(current) && source.has(++i)) {
+                        current = source.charAt(i);
+                    }
+
+                    if (current == ',') {
+                        if (!expectingComma) {
+                            return false;
+                        }
+                        expectingComma = false;
+                        i++;
+                    } else if (current == '"') {
+                        if (expectingComma || ++entries > maxEntries) {
+                            return false;
+                        }
+                        currentType = Type.NAME;
+                        fieldStart = i;
+                    } else if (current == '}') {
+                        if (stack.isEmpty()) {
+                            return true;
+                        }
+                        currentType = container = stack.type();
+                        entries = stack.index();
+                        stack.pop();
+                        expectingComma = true;
+                        i++;
+                    } else if (!Constants.isWhitespace(current)) {
+                        return false;
+                    }
+                    break;
+                case ARRAY:
+                    i = source.release(i);
+                    while (Constants.isWhitespace(current) && source.has(++i)) {
+                        current = source.charAt(i);
+                    }
+
+                    if (current != ',' && current != ']' && current != '}') {
+                        if (expectingComma || ++entries > maxEntries) {
+                            return false;
+                        }
+                    }
+
+                    if (current == ',') {
+                        if (!expectingComma) {
+                            return false;
+                        }
+                        expectingComma = false;
+                        i++;
+                    } else if (current == '"') {
+                        currentType = Type.STRING;
+                        fieldStart = i;
+                    } else if (current == '{' || current == '[') {
+                        stack.push(null, null, Type.ARRAY, entries);
+                        if (stack.size() >= maxDepth) {
+                            return false;
+                        }
+                        entries = 0;
+                        currentType = container = current == '{' ? Type.OBJECT : Type.ARRAY;
+                        i++;
+                    } else if (current == ']') {
+                        if (stack.isEmpty()) {
+                            return true;
+                        }
+                        currentType = container = stack.type();
+                        entries = stack.index();
+                        stack.pop();
+                        expectingComma = true;
+                        i++;
+                    } else if (Constants.isLetter(current)) {
+                        currentType = Type.CONSTANT;
+                        fieldStart = i;
+                    } else if (Constants.isNumberStart(current)) {
+                        currentType = Type.NUMBER;
+                        fieldStart = i;
+                    } else {
+                        return false;
+                    }
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the letters between start and end are "true", "false" or "null"
+     */
+    private static boolean isConstant(Source source, int start, int end) {
+        switch (end - start) {
+            case 4:
+                char c = source.charAt(start);
+                return c == 't'
+                        ? source.charAt(start + 1) == 'r' && source.charAt(start + 2) == 'u'
+                            && source.charAt(start + 3) == 'e'
+                        : c == 'n' && source.charAt(start + 1) == 'u' && source.charAt(start + 2) == 'l'
+                            && source.charAt(start + 3) == 'l';
+            case 5:
+                return source.charAt(start) == 'f' && source.charAt(start + 1) == 'a'
+                        && source.charAt(start + 2) == 'l' && source.charAt(start + 3) == 's'
+                        && source.charAt(start + 4) == 'e';
+            default:
+                return false;
+        }
+    }
+}
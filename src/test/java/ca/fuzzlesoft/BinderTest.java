@@ -0,0 +1,198 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BinderTest {
+
+    enum Status {
+        ACTIVE,
+        CLOSED
+    }
+
+    static class Base {
+        long id;
+    }
+
+    static class Order extends Base {
+        private String customer;
+        int quantity;
+        Integer discount = 5;
+        double total;
+        float weight;
+        boolean paid;
+        Status status;
+        List<Item> items;
+        Set<String> tags;
+        Map<String, Integer> counts;
+        int[] sizes;
+        Object extra;
+        Order next;
+        transient String skipped;
+        static String shared;
+        final String fixed = "fixed";
+    }
+
+    static class Item {
+        String sku;
+        short amount;
+        Number price;
+
+        private Item() {}
+    }
+
+    static class NoDefaultConstructor {
+        NoDefaultConstructor(int ignored) {}
+    }
+
+    @Test
+    public void shouldBindOntoFields() {
+        String json = "{\"id\": 9007199254740993, \"customer\": \"caf\\u00e9\", \"quantity\": 3, \"total\": 12.5, "
+                + "\"weight\": 0.25, \"paid\": true, \"status\": \"CLOSED\", \"unknown\": {\"a\": [1, {}]}, "
+                + "\"items\": [{\"sku\": \"a\", \"amount\": 2, \"price\": 1.5}, {\"sku\": \"b\", \"price\": 3}, null],"
+                + " \"tags\": [\"x\", \"y\", \"x\"], \"counts\": {\"a\": 1, \"b\": null}, \"sizes\": [1, 2, 3], "
+                + "\"extra\": {\"list\": [1, \"two\", null]}, \"next\": {\"id\": 2}, \"skipped\": \"s\", "
+                + "\"shared\": \"s\", \"fixed\": \"changed\"}";
+        Order order = JsonParse.bind(json, Order.class);
+        Assert.assertEquals(9007199254740993L, order.id);
+        Assert.assertEquals("caf\u00e9", order.customer);
+        Assert.assertEquals(3, order.quantity);
+        Assert.assertEquals(Integer.valueOf(5), order.discount);
+        Assert.assertEquals(12.5, order.total, 0);
+        Assert.assertEquals(0.25f, order.weight, 0);
+        Assert.assertTrue(order.paid);
+        Assert.assertEquals(Status.CLOSED, order.status);
+
+        Assert.assertEquals(3, order.items.size());
+        Assert.assertEquals("a", order.items.get(0).sku);
+        Assert.assertEquals(2, order.items.get(0).amount);
+        Assert.assertEquals(1.5, order.items.get(0).price);
+        Assert.assertEquals(3L, order.items.get(1).price);
+        Assert.assertNull(order.items.get(2));
+
+        Assert.assertEquals(Arrays.asList("x", "y"), Arrays.asList(order.tags.toArray()));
+        Assert.assertEquals(Integer.valueOf(1), order.counts.get("a"));
+        Assert.assertTrue(order.counts.containsKey("b"));
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, order.sizes);
+        Assert.assertEquals(JsonParse.parse("{\"list\": [1, \"two\", null]}"), order.extra);
+        Assert.assertEquals(2, order.next.id);
+        Assert.assertNull(order.next.next);
+        Assert.assertNull(order.skipped);
+        Assert.assertNull(Order.shared);
+        Assert.assertEquals("fixed", order.fixed);
+
+        byte[] bytes = json.getBytes(ByteSource.UTF_8);
+        Assert.assertEquals("caf\u00e9", JsonParse.bind(bytes, 0, bytes.length, Order.class).customer);
+    }
+
+    @Test
+    public void shouldBindRoots() {
+        Item[] items = JsonParse.bind("[{\"sku\": \"a\"}, {\"sku\": \"b\"}]", Item[].class);
+        Assert.assertEquals(2, items.length);
+        Assert.assertEquals("b", items[1].sku);
+
+        Assert.assertEquals(Long.valueOf(7), JsonParse.bind("7", long.class));
+        Assert.assertEquals("s", JsonParse.bind("\"s\"", String.class));
+        Assert.assertEquals(Collections.singletonList(1L), JsonParse.bind("[1]", List.class));
+        Assert.assertNull(JsonParse.bind("null", Order.class));
+    }
+
+    @Test
+    public void shouldReportMismatchesWithTheirPath() {
+        assertFails("{\"quantity\": \"3\"}", "<root>.quantity: expected int, but was a string");
+        assertFails("{\"quantity\": 1.5}", "<root>.quantity: expected int, but was 1.5");
+        assertFails("{\"quantity\": 3000000000}", "<root>.quantity: 3000000000 is out of range for int");
+        assertFails("{\"quantity\": null}", "<root>.quantity: expected int, but was null");
+        assertFails("{\"status\": \"OPEN\"}", "<root>.status: \"OPEN\" isn't one of [ACTIVE, CLOSED]");
+        assertFails("{\"items\": [{\"sku\": \"a\"}, {\"amount\": 40000}]}",
+                "<root>.items.[1].amount: 40000 is out of range for short");
+        assertFails("{\"items\": [{}, []]}", "<root>.items.[1]: expected Item, but was an array");
+        assertFails("{\"items\": {}}", "<root>.items: expected List<Item>, but was an object");
+        assertFails("{\"sizes\": [1, 2, true]}", "<root>.sizes.[2]: expected int, but was a boolean");
+        assertFails("{\"counts\": {\"a\": \"b\"}}", "<root>.counts.a: expected Integer, but was a string");
+        assertFails("{\"next\": {\"next\": {\"paid\": 1}}}",
+                "<root>.next.next.paid: expected boolean, but was a number");
+        assertFails("[]", "<root>: expected Order, but was an array");
+        assertFails("{\"id\": 1,", "Root element wasn't terminated correctly (Missing ']' or '}'?)");
+
+        try {
+            JsonParse.bind("{}", NoDefaultConstructor.class);
+            Assert.fail("Bound onto a class without a no-argument constructor");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            JsonParse.bind("{}", Runnable.class);
+            Assert.fail("Bound onto an interface");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldBindDeepNestingWithoutRecursion() {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            json.append("{\"a\":[");
+        }
+        for (int i = 0; i < 50000; i++) {
+            json.append("]}");
+        }
+        Object value = JsonParse.bind(json.toString(), Object.class);
+        for (int i = 0; i < 50000; i++) {
+            List<?> list = (List<?>) ((Map<?, ?>) value).get("a");
+            value = i < 49999 ? list.get(0) : list;
+        }
+        Assert.assertEquals(Collections.emptyList(), value);
+    }
+
+    @Test
+    public void shouldBindWithinLimits() {
+        ParseOptions options = ParseOptions.DEFAULT.withLimits(ParseLimits.NONE.withMaxDepth(3)
+                .withMaxEntries(3).withMaxStringLength(5));
+        String[] tests = {
+                "{\"next\": {\"next\": {\"next\": {}}}}",
+                "{\"sizes\": [1, 2, 3, 4]}",
+                "{\"extra\": \"abcdef\"}",
+                "{\"x\": [[[[1]]]]}",
+        };
+        for (String json : tests) {
+            String expected = null;
+            try {
+                JsonParse.parse(json, options);
+                Assert.fail("Parsed beyond the limits: " + json);
+            } catch (JsonParseException e) {
+                expected = e.getMessage();
+            }
+            try {
+                JsonParse.bind(json, Order.class, options);
+                Assert.fail("Bound beyond the limits: " + json);
+            } catch (JsonParseException e) {
+                Assert.assertEquals(expected, e.getMessage());
+            }
+            byte[] bytes = json.getBytes(ByteSource.UTF_8);
+            try {
+                JsonParse.bind(bytes, 0, bytes.length, Order.class, options);
+                Assert.fail("Bound beyond the limits: " + json);
+            } catch (JsonParseException e) {
+                Assert.assertEquals(expected, e.getMessage());
+            }
+        }
+        Assert.assertEquals(3, JsonParse.bind("{\"sizes\": [1, 2, 3]}", Order.class, options).sizes.length);
+    }
+
+    private static void assertFails(String json, String message) {
+        try {
+            JsonParse.bind(json, Order.class);
+            Assert.fail("Did not fail on " + json);
+        } catch (JsonParseException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+    }
+}
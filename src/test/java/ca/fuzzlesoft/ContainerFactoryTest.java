@@ -0,0 +1,111 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("unchecked")
+public class ContainerFactoryTest {
+
+    private static final String JSON = "{\"z\": 1, \"y\": {\"x\": [2, {\"w\": 3}]}, \"v\": [], \"u\": {}}";
+
+    @Test
+    public void shouldBuildHashMapsAndArrayListsByDefault() {
+        Map<String, Object> map = (Map<String, Object>) JsonParse.parse(JSON, ParseOptions.DEFAULT);
+        Assert.assertEquals(HashMap.class, map.getClass());
+        Assert.assertEquals(ArrayList.class, map.get("v").getClass());
+        Assert.assertSame(ContainerFactory.DEFAULT, ParseOptions.DEFAULT.getContainerFactory());
+    }
+
+    @Test
+    public void shouldTellTheFactoryWhereEachContainerIs() {
+        final List<String> calls = new ArrayList<>();
+        ContainerFactory recording = new ContainerFactory() {
+            @Override
+            public Map<String, Object> newObject(String name) {
+                calls.add("{" + name);
+                return super.newObject(name);
+            }
+
+            @Override
+            public List<Object> newArray(String name) {
+                calls.add("[" + name);
+                return super.newArray(name);
+            }
+
+            @Override
+            public Object finishObject(String name, Map<String, Object> object) {
+                calls.add(name + "}" + object.size());
+                return object;
+            }
+
+            @Override
+            public Object finishArray(String name, List<Object> array) {
+                calls.add(name + "]" + array.size());
+                return array;
+            }
+        };
+
+        ParseOptions options = ParseOptions.DEFAULT.withContainerFactory(recording);
+        Assert.assertEquals(JsonParse.parse(JSON), JsonParse.parse(JSON, options));
+        List<String> expected = Arrays.asList("{null", "{y", "[x", "{null", "null}1", "x]2", "y}1", "[v",
+                "v]0", "{u", "u}0", "null}4");
+        Assert.assertEquals(expected, calls);
+
+        calls.clear();
+        byte[] bytes = JSON.getBytes(ByteSource.UTF_8);
+        JsonParse.parse(bytes, 0, bytes.length, options);
+        Assert.assertEquals(expected, calls);
+    }
+
+    @Test
+    public void shouldKeepPropertiesInOrder() {
+        ParseOptions options = ParseOptions.DEFAULT.withContainerFactory(ContainerFactory.ordered());
+        Map<String, Object> map = (Map<String, Object>) JsonParse.parse(JSON, options);
+        Assert.assertTrue(map instanceof LinkedHashMap);
+        Assert.assertEquals("[z, y, v, u]", map.keySet().toString());
+        Assert.assertEquals(JsonParse.parse(JSON), map);
+    }
+
+    @Test
+    public void shouldStoreSmallObjectsCompactly() {
+        StringBuilder large = new StringBuilder("{");
+        for (int i = 0; i <= CompactMap.MAX_SIZE; i++) {
+            large.append(i == 0 ? "" : ",").append("\"k").append(i).append("\": ").append(i);
+        }
+        String json = "{\"small\": {\"a\": 1, \"b\": [true], \"a\": 2}, \"large\": " + large + "}}";
+
+        ParseOptions options = ParseOptions.DEFAULT.withContainerFactory(ContainerFactory.compact());
+        Map<String, Object> map = (Map<String, Object>) JsonParse.parse(json, options);
+        Assert.assertEquals(JsonParse.parse(json), map);
+        Assert.assertTrue(map instanceof CompactMap);
+        Assert.assertTrue(map.get("large") instanceof HashMap);
+
+        Map<String, Object> small = (Map<String, Object>) map.get("small");
+        Assert.assertEquals("{a=2, b=[true]}", small.toString());
+        try {
+            small.put("c", 3);
+            Assert.fail("Compact maps are immutable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldPresizeFromPreviousParses() {
+        ContainerFactory presized = ContainerFactory.presized();
+        ParseOptions options = ParseOptions.DEFAULT.withContainerFactory(presized);
+        Assert.assertEquals(JsonParse.parse(JSON), JsonParse.parse(JSON, options));
+        Assert.assertEquals(JsonParse.parse(JSON), JsonParse.parse(JSON, options));
+
+        // Sizes are only hints, anything still fits
+        String other = "{\"y\": {\"x\": [1, 2, 3, 4, 5, 6, 7, 8, 9, 10]}, \"v\": [[], []]}";
+        Assert.assertEquals(JsonParse.parse(other), JsonParse.parse(other, options));
+    }
+}
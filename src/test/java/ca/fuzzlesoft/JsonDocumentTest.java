@@ -0,0 +1,102 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonDocumentTest {
+
+    private static final String JSON = "{\"user\": {\"id\": 42, \"name\": \"Mi\\\"tch\"}, \"score\": 9.5, "
+            + "\"ok\": true, \"none\": null, \"items\": [{\"sku\": \"a\"}, {\"sku\": \"b\", \"tags\": [1, [2], {}]}, "
+            + "\"\u00e9\"]}";
+
+    @Test
+    public void shouldConvertBackToMapsAndLists() {
+        Assert.assertEquals(JsonParse.parse(JSON), JsonParse.document(JSON).toValue());
+
+        byte[] bytes = ("  " + JSON).getBytes(ByteSource.UTF_8);
+        Assert.assertEquals(JsonParse.parse(JSON), JsonParse.document(bytes, 0, bytes.length).toValue());
+
+        for (String json : new String[]{"[]", "{}", "\"s\"", "-7", "1e2", "false", "null", "[1, 2,]"}) {
+            Assert.assertEquals(json, JsonParse.parse(json), JsonParse.document(json).toValue());
+        }
+    }
+
+    @Test
+    public void shouldNavigateByPath() {
+        JsonDocument document = JsonParse.document(JSON);
+        Assert.assertEquals(42, document.getLong(document.find("<root>.user.id")));
+        Assert.assertEquals("Mi\"tch", document.getString(document.find("<root>.user.name")));
+        Assert.assertEquals(9.5, document.getDouble(document.find("<root>.score")), 0);
+        Assert.assertEquals(9, document.getLong(document.find("<root>.score")));
+        Assert.assertTrue(document.getBoolean(document.find("<root>.ok")));
+        Assert.assertTrue(document.isNull(document.find("<root>.none")));
+        Assert.assertEquals("b", document.get("<root>.items.[1].sku"));
+        Assert.assertEquals(JsonParse.parse("[1, [2], {}]"), document.get("<root>.items.[1].tags"));
+        Assert.assertEquals("\u00e9", document.get("<root>.items.[2]"));
+
+        Assert.assertEquals(JsonDocument.NOT_FOUND, document.find("<root>.missing"));
+        Assert.assertEquals(JsonDocument.NOT_FOUND, document.find("<root>.items.[3]"));
+        Assert.assertEquals(JsonDocument.NOT_FOUND, document.find("<root>.user.id.deeper"));
+        Assert.assertNull(document.get("<root>.items.[0].missing"));
+
+        try {
+            document.find("<root>.items.[*]");
+            Assert.fail("Wildcards aren't supported");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            document.getLong(document.find("<root>.user.name"));
+            Assert.fail("Did not check the type");
+        } catch (ClassCastException e) {
+            Assert.assertTrue(e.getMessage().endsWith("is STRING, not NUMBER"));
+        }
+    }
+
+    @Test
+    public void shouldIterateChildren() {
+        JsonDocument document = JsonParse.document(JSON);
+        int root = document.root();
+        Assert.assertEquals(JsonDocument.Type.OBJECT, document.type(root));
+        Assert.assertEquals(5, document.size(root));
+
+        StringBuilder names = new StringBuilder();
+        for (int child : document.children(root)) {
+            names.append(document.name(child)).append(':').append(document.type(child)).append(' ');
+        }
+        Assert.assertEquals("user:OBJECT score:NUMBER ok:BOOLEAN none:NULL items:ARRAY ", names.toString());
+
+        int[] items = document.children(document.find("<root>.items"));
+        Assert.assertEquals(3, items.length);
+        Assert.assertNull(document.name(items[0]));
+        Assert.assertEquals("a", document.getString(document.get(items[0], "sku")));
+        Assert.assertEquals(items[2], document.get(document.find("<root>.items"), 2));
+        Assert.assertEquals(0, document.children(items[2]).length);
+    }
+
+    @Test
+    public void shouldKeepTheLastOfRepeatedProperties() {
+        JsonDocument document = JsonParse.document("{\"a\": 1, \"a\": 2}");
+        Assert.assertEquals(2, document.getLong(document.find("<root>.a")));
+        Assert.assertEquals(JsonParse.parse("{\"a\": 1, \"a\": 2}"), document.toValue());
+    }
+
+    @Test
+    public void shouldFailLikeParse() {
+        for (String json : new String[]{"", "{\"a\": tru}", "[1, 2", "{\"a\" 1}"}) {
+            String expected = null, actual = null;
+            try {
+                JsonParse.parse(json);
+            } catch (JsonParseException e) {
+                expected = e.getMessage();
+            }
+            try {
+                JsonParse.document(json);
+            } catch (JsonParseException e) {
+                actual = e.getMessage();
+            }
+            Assert.assertNotNull(json, expected);
+            Assert.assertEquals(json, expected, actual);
+        }
+    }
+}
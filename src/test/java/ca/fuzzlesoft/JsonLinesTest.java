@@ -0,0 +1,139 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class JsonLinesTest {
+
+    private static final byte[] INPUT = ("{\"a\": 1}\n"
+            + "\n"
+            + "[1, 2]\r\n"
+            + "{\"a\": tru}\n"
+            + "  \"\u00e9\"  \n"
+            + "{\"b\": [\"\\u00zz\"]}\n"
+            + "42").getBytes(ByteSource.UTF_8);
+
+    @Test
+    public void shouldParseEachLine() throws IOException {
+        try (JsonLines lines = JsonParse.lines(new ByteArrayInputStream(INPUT))) {
+            assertLines(lines);
+        }
+    }
+
+    @Test
+    public void shouldParseChunksInParallel() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // Tiny chunks, so that lines are split across reads and chunks have to grow
+            for (int chunkSize : new int[]{1, 4, 16, 1024}) {
+                try (JsonLines lines = new JsonLines(new JsonParseTest.TrickleInputStream(INPUT),
+                        ParseOptions.DEFAULT, executor, true, chunkSize)) {
+                    assertLines(lines);
+                }
+            }
+
+            StringBuilder many = new StringBuilder();
+            for (int i = 0; i < 10000; i++) {
+                many.append("{\"i\": ").append(i).append("}\n");
+            }
+            try (JsonLines lines = new JsonLines(new ByteArrayInputStream(many.toString().getBytes(ByteSource.UTF_8)),
+                    ParseOptions.DEFAULT, executor, false, 256)) {
+                List<JsonLines.Line> all = new ArrayList<>();
+                for (JsonLines.Line line : lines) {
+                    all.add(line);
+                }
+                Collections.sort(all, new Comparator<JsonLines.Line>() {
+                    @Override
+                    public int compare(JsonLines.Line a, JsonLines.Line b) {
+                        return Long.compare(a.getLineNumber(), b.getLineNumber());
+                    }
+                });
+                Assert.assertEquals(10000, all.size());
+                for (int i = 0; i < all.size(); i++) {
+                    Assert.assertEquals(i + 1, all.get(i).getLineNumber());
+                    Assert.assertEquals(JsonParseTest.MapBuilder.init().add("i", (long) i).build(),
+                            all.get(i).getValue());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldOnlyIterateOnce() throws IOException {
+        try (JsonLines lines = JsonParse.lines(new ByteArrayInputStream(INPUT))) {
+            lines.iterator();
+            try {
+                lines.iterator();
+                Assert.fail("Iterated twice");
+            } catch (IllegalStateException ignored) {}
+        }
+    }
+
+    @Test
+    public void shouldWrapReadFailures() {
+        final IOException failure = new IOException("disk on fire");
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw failure;
+            }
+        };
+        Iterator<JsonLines.Line> lines = JsonParse.lines(failing).iterator();
+        try {
+            lines.hasNext();
+            Assert.fail("Did not throw exception on failed read");
+        } catch (JsonParseException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+    }
+
+    private static void assertLines(JsonLines lines) {
+        Iterator<JsonLines.Line> iterator = lines.iterator();
+
+        JsonLines.Line line = iterator.next();
+        Assert.assertEquals(1, line.getLineNumber());
+        Assert.assertEquals(JsonParseTest.MapBuilder.init().add("a", 1L).build(), line.getValue());
+
+        line = iterator.next();
+        Assert.assertEquals(3, line.getLineNumber());
+        Assert.assertEquals(Arrays.asList(1L, 2L), line.getValue());
+
+        line = iterator.next();
+        Assert.assertEquals(4, line.getLineNumber());
+        Assert.assertFalse(line.isValid());
+        Assert.assertEquals("<root>.a: \"tru\" is not a valid constant. Missing quotes?", line.getError().getMessage());
+
+        line = iterator.next();
+        Assert.assertEquals(5, line.getLineNumber());
+        Assert.assertEquals("\u00e9", line.getValue());
+
+        line = iterator.next();
+        Assert.assertEquals(6, line.getLineNumber());
+        Assert.assertFalse(line.isValid());
+        try {
+            line.getValue();
+            Assert.fail("Did not throw the line's error");
+        } catch (JsonParseException e) {
+            Assert.assertSame(line.getError(), e);
+        }
+
+        line = iterator.next();
+        Assert.assertEquals(7, line.getLineNumber());
+        Assert.assertEquals(42L, line.getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+}
@@ -0,0 +1,201 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+public class JsonParseExceptionTest {
+
+    @Test
+    public void shouldKnowWhereItFailed() {
+        String json = "{\n  \"a\": [1, 2],\n  \"b\": {\"c\": [true, fasle]}\n}";
+        JsonParseException e = fail(json);
+        Assert.assertEquals("<root>.b.c.[1]: \"fasle\" is not a valid constant. Missing quotes?", e.getMessage());
+        Assert.assertEquals("<root>.b.c.[1]", e.getPath());
+        Assert.assertEquals(json.indexOf("fasle"), e.getOffset());
+        Assert.assertEquals(3, e.getLine());
+        Assert.assertEquals(21, e.getColumn());
+
+        // The same from bytes, counted in bytes
+        String accented = "{\"\u00e9\": 1,\n\"b\" 2}";
+        byte[] bytes = accented.getBytes(ByteSource.UTF_8);
+        try {
+            JsonParse.parse(bytes, 0, bytes.length);
+            Assert.fail("Parsed invalid JSON");
+        } catch (JsonParseException bytesError) {
+            Assert.assertEquals("<root>.b: wasn't followed by a colon", bytesError.getMessage());
+            Assert.assertEquals(14, bytesError.getOffset());
+            Assert.assertEquals(2, bytesError.getLine());
+            Assert.assertEquals(5, bytesError.getColumn());
+        }
+
+        // Failures of the whole document have an offset, but no path
+        e = fail("[1, 2");
+        Assert.assertNull(e.getPath());
+        Assert.assertEquals(5, e.getOffset());
+        Assert.assertEquals(1, e.getLine());
+        Assert.assertEquals(6, e.getColumn());
+
+        // As do failures while parsing a stream, which are past the part that's been dropped
+        StringBuilder big = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            big.append("\"padding\", ");
+        }
+        String streamed = big.append("nope]").toString();
+        try {
+            JsonParse.parse(new StringReader(streamed));
+            Assert.fail("Parsed invalid JSON");
+        } catch (JsonParseException streamError) {
+            Assert.assertEquals(streamed.indexOf("nope"), streamError.getOffset());
+            Assert.assertEquals(-1, streamError.getLine());
+            Assert.assertEquals(-1, streamError.getColumn());
+        } catch (IOException ioe) {
+            throw new AssertionError(ioe);
+        }
+
+        // And errors made outside of a parse know nothing about where they are
+        JsonParseException plain = new JsonParseException("Whatever");
+        Assert.assertEquals("Whatever", plain.getMessage());
+        Assert.assertNull(plain.getPath());
+        Assert.assertEquals(-1, plain.getOffset());
+        Assert.assertEquals(-1, plain.getLine());
+    }
+
+    @Test
+    public void shouldNotHoldOnToTheInput() throws IOException, ClassNotFoundException {
+        byte[] buffer = "[1,\n2,\n3,\n@]".getBytes(ByteSource.UTF_8);
+        JsonParseException e = JsonParse.tryParse(buffer, 0, buffer.length).getError();
+        Arrays.fill(buffer, (byte) ' '); // Reused for the next request
+        Assert.assertEquals(4, e.getLine());
+        Assert.assertEquals(1, e.getColumn());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(e);
+        }
+        JsonParseException copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (JsonParseException) in.readObject();
+        }
+        Assert.assertEquals(e.getMessage(), copy.getMessage());
+        Assert.assertEquals("<root>.[3]", copy.getPath());
+        Assert.assertEquals(e.getOffset(), copy.getOffset());
+        Assert.assertEquals(4, copy.getLine());
+        Assert.assertEquals(1, copy.getColumn());
+    }
+
+    @Test
+    public void shouldCountLinesOfStringsWhenAskedFor() throws IOException, ClassNotFoundException {
+        String json = "[1,\n2,\n3,\n  @]";
+        JsonParseException asked = fail(json);
+        Assert.assertEquals(4, asked.getLine());
+        Assert.assertEquals(3, asked.getColumn());
+
+        // Still counted if serialized before anyone asked
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(fail(json));
+        }
+        JsonParseException copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (JsonParseException) in.readObject();
+        }
+        Assert.assertEquals(4, copy.getLine());
+        Assert.assertEquals(3, copy.getColumn());
+
+        // Failures on the first line have nothing to count
+        JsonParseException first = fail("[1, 2, @]");
+        Assert.assertEquals(1, first.getLine());
+        Assert.assertEquals(8, first.getColumn());
+    }
+
+    @Test
+    public void shouldOnlyFillInStackTracesIfWanted() throws IOException {
+        String json = "{\"a\": [1, }";
+        Assert.assertTrue(fail(json).getStackTrace().length > 0);
+
+        ParseOptions quiet = ParseOptions.DEFAULT.withStackTraces(false);
+        try {
+            JsonParse.parse(json, quiet);
+            Assert.fail("Parsed invalid JSON");
+        } catch (JsonParseException e) {
+            Assert.assertEquals(0, e.getStackTrace().length);
+            Assert.assertEquals(fail(json).getMessage(), e.getMessage());
+        }
+        try {
+            JsonParse.parse(new ByteArrayInputStream("[1, 2".getBytes(ByteSource.UTF_8)), quiet);
+            Assert.fail("Parsed invalid JSON");
+        } catch (JsonParseException e) {
+            Assert.assertEquals(0, e.getStackTrace().length);
+        }
+        try {
+            JsonParse.parse("[1]", quiet.withLimits(ParseLimits.DEFAULT.withMaxDocumentLength(2)));
+            Assert.fail("Parsed a document over the limit");
+        } catch (JsonParseException e) {
+            Assert.assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void shouldTryParsingWithoutThrowing() {
+        ParseResult valid = JsonParse.tryParse("{\"a\": [1, 2]}");
+        Assert.assertTrue(valid.isValid());
+        Assert.assertNull(valid.getError());
+        Assert.assertEquals(JsonParse.parse("{\"a\": [1, 2]}"), valid.getValue());
+
+        String[] invalid = {"", "{\"a\": [1, 2}", "{\"a\" 1}", "[1, 2", "[\"\\u12\"]", "[\"\\uzzzz\"]"};
+        ParseOptions[] options = {
+                ParseOptions.DEFAULT,
+                ParseOptions.DEFAULT.withLazy(true),
+                ParseOptions.DEFAULT.withShapeCache(new ShapeCache()),
+        };
+        for (String json : invalid) {
+            byte[] bytes = json.getBytes(ByteSource.UTF_8);
+            String expected = fail(json).getMessage();
+            for (ParseOptions option : options) {
+                ParseResult result = JsonParse.tryParse(json, option);
+                Assert.assertFalse(json, result.isValid());
+                Assert.assertEquals(json, expected, result.getError().getMessage());
+                Assert.assertEquals(json, 0, result.getError().getStackTrace().length);
+
+                result = JsonParse.tryParse(bytes, 0, bytes.length, option);
+                Assert.assertFalse(json, result.isValid());
+                Assert.assertEquals(json, expected, result.getError().getMessage());
+            }
+        }
+
+        // Malformed escapes fail like anything else, with a path and an offset
+        ParseResult escape = JsonParse.tryParse("{\"a\": [\"ok\", \"\\u00zz\"]}");
+        Assert.assertEquals("<root>.a: String had a unicode escape that wasn't four hex digits",
+                escape.getError().getMessage());
+        Assert.assertEquals(14, escape.getError().getOffset());
+        Assert.assertNull(escape.getError().getCause());
+
+        JsonParser parser = new JsonParser();
+        Assert.assertEquals(3L, parser.tryParse("3").getValue());
+        ParseResult result = parser.tryParse("[1, 2] ".getBytes(ByteSource.UTF_8), 0, 5);
+        Assert.assertEquals(5, result.getError().getOffset());
+        try {
+            result.getValue();
+            Assert.fail("Gave a value for invalid JSON");
+        } catch (JsonParseException e) {
+            Assert.assertSame(result.getError(), e);
+        }
+    }
+
+    private static JsonParseException fail(String json) {
+        try {
+            JsonParse.parse(json);
+        } catch (JsonParseException e) {
+            return e;
+        }
+        throw new AssertionError("Parsed invalid JSON: " + json);
+    }
+}
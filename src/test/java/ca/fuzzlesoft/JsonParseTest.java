@@ -1,8 +1,18 @@
 package ca.fuzzlesoft;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
-
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -14,6 +24,11 @@ import java.util.Map;
  */
 public class JsonParseTest {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void shouldParseStrings() {
         String test = "{\"foo\":\"bar\"}";
@@ -259,6 +274,262 @@ public class JsonParseTest {
         assertFormatting("{\"a\": [{v}]}", "<root>.a.[0]: unexpected character 'v' where a property name is expected. Missing quotes?");
         assertFormatting("[{\"key\":\"value\"},{\"other\":bap}]", "<root>.[1].other: \"bap\" is not a valid constant. Missing quotes?");
         assertFormatting("[!]", "<root>.[0]: Unexpected character \"!\" instead of array value");
+        assertFormatting("{\"outer\": {\"sick-list\": [{}, {\"inner\": [1, [1, 2, 3, [fasle]]]}]}}",
+                "<root>.outer.sick-list.[1].inner.[1].[3].[0]: \"fasle\" is not a valid constant. Missing quotes?");
+        assertFormatting("{\"a\": [!]}", "<root>.a.[0]: Unexpected character \"!\" instead of array value");
+    }
+
+    @Test
+    public void shouldStartCleanAfterAFailure() {
+        assertFormatting("{\"a\": [{\"b\": [1, !]}]}",
+                "<root>.a.[0].b.[1]: Unexpected character \"!\" instead of array value");
+        assertFormatting("[1, {\"c\": tru}]", "<root>.[1].c: \"tru\" is not a valid constant. Missing quotes?");
+        Assert.assertEquals(Arrays.asList(1L, 2L), JsonParse.parse("[1, 2]"));
+    }
+
+    @Test
+    public void shouldParseDeeplyNestedStructures() {
+        StringBuilder open = new StringBuilder(), close = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            open.append(i % 2 == 0 ? "[" : "{\"k\":");
+            close.insert(0, i % 2 == 0 ? "]" : "}");
+        }
+        Object parsed = JsonParse.parse(open + "7" + close);
+        for (int i = 0; i < 5000; i++) {
+            parsed = i % 2 == 0 ? ((List<Object>) parsed).get(0) : ((Map<String, Object>) parsed).get("k");
+        }
+        Assert.assertEquals(7L, parsed);
+
+        try {
+            JsonParse.parse(open + "x" + close);
+            Assert.fail("Did not throw exception on invalid constant");
+        } catch (JsonParseException e) {
+            Assert.assertTrue(e.getMessage().startsWith("<root>.[0].k.[0].k"));
+            Assert.assertTrue(e.getMessage().endsWith(".k: \"x\" is not a valid constant. Missing quotes?"));
+        }
+    }
+
+    @Test
+    public void shouldParseUtf8Bytes() {
+        byte[] test = "{\"caf\u00e9\":[\"\u65e5\u672c\", \"a\\u0041\\n\u00e9\", 1.5, null]}".getBytes(UTF_8);
+        Map<String, Object> expected = MapBuilder.init()
+                .add("caf\u00e9", Arrays.<Object>asList("\u65e5\u672c", "aA\n\u00e9", 1.5, null))
+                .build();
+        Assert.assertEquals(expected, JsonParse.parse(test, 0, test.length));
+    }
+
+    @Test
+    public void shouldDecodeEscapesTheSameFromEverySource() throws IOException {
+        String test = "[\"\\u00e9t\\u00E9 \\\"q\\\" \\t\", \"plain\", \"\u00e9\\n\u65e5\\/\", "
+                + "\"\\ud83d\\ude00\", \"\"]";
+        List<Object> expected = Arrays.<Object>asList("\u00e9t\u00e9 \"q\" \t", "plain", "\u00e9\n\u65e5/",
+                "\ud83d\ude00", "");
+        byte[] bytes = test.getBytes(UTF_8);
+
+        Assert.assertEquals(expected, JsonParse.parse(test));
+        Assert.assertEquals(expected, JsonParse.parse(bytes, 0, bytes.length));
+        Assert.assertEquals(expected, JsonParse.parse(new TrickleReader(test)));
+        Assert.assertEquals(expected, JsonParse.parse(new TrickleInputStream(bytes)));
+    }
+
+    @Test
+    public void shouldDropUnknownEscapesTheSameFromEverySource() throws IOException {
+        String test = "[\"a\\\u00e9b\", \"\\\u65e5x\", \"\\\ud83d\ude00y\", {\"k\\\u00e9\": \"\\q\"}]";
+        List<Object> expected = Arrays.<Object>asList("ab", "x", "y", MapBuilder.init().add("k", "").build());
+        byte[] bytes = test.getBytes(UTF_8);
+        Path path = folder.newFile().toPath();
+        Files.write(path, bytes);
+
+        Assert.assertEquals(expected, JsonParse.parse(test));
+        Assert.assertEquals(expected, JsonParse.parse(bytes, 0, bytes.length));
+        Assert.assertEquals(expected, JsonParse.parse(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip()));
+        Assert.assertEquals(expected, JsonParse.parse(new TrickleReader(test)));
+        Assert.assertEquals(expected, JsonParse.parse(new TrickleInputStream(bytes)));
+        Assert.assertEquals(expected, JsonParse.parse(path));
+        Assert.assertEquals(expected, JsonParse.document(test).toValue());
+        Assert.assertEquals(expected, JsonParse.document(bytes, 0, bytes.length).toValue());
+        for (ParseOptions options : Arrays.asList(ParseOptions.DEFAULT.withLazy(true),
+                ParseOptions.DEFAULT.withShapeCache(new ShapeCache()))) {
+            Assert.assertEquals(expected, JsonParse.parse(test, options));
+            Assert.assertEquals(expected, JsonParse.parse(bytes, 0, bytes.length, options));
+        }
+    }
+
+    @Test
+    public void shouldOnlyParseGivenRangeOfBytes() {
+        byte[] test = "xx[1, \"\u00e9\"]yy".getBytes(UTF_8);
+        Assert.assertEquals(Arrays.<Object>asList(1L, "\u00e9"), JsonParse.parse(test, 2, test.length - 4));
+        Assert.assertEquals(12L, JsonParse.parse("123".getBytes(UTF_8), 0, 2));
+    }
+
+    @Test
+    public void shouldParseByteBuffers() {
+        byte[] bytes = "  [\"\u00e9\", true]".getBytes(UTF_8);
+        List<Object> expected = Arrays.<Object>asList("\u00e9", true);
+
+        ByteBuffer heap = ByteBuffer.wrap(bytes);
+        heap.position(2);
+        Assert.assertEquals(expected, JsonParse.parse(heap.slice()));
+        Assert.assertEquals(2, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assert.assertEquals(expected, JsonParse.parse(direct));
+        Assert.assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void shouldFormatByteExceptionsWithJsonStack() {
+        byte[] test = "[{\"key\":\"value\"},{\"other\":bap}]".getBytes(UTF_8);
+        try {
+            JsonParse.parse(test, 0, test.length);
+            Assert.fail("Did not throw exception on invalid constant");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>.[1].other: \"bap\" is not a valid constant. Missing quotes?", e.getMessage());
+        }
+
+        test = "{\"a\": \"unterminated".getBytes(UTF_8);
+        try {
+            JsonParse.parse(test, 0, test.length);
+            Assert.fail("Did not throw exception on unterminated string");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>: String did not have ending quote", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldDecodeUnexpectedCharactersFromBytes() throws IOException {
+        String[][] tests = {
+                {"\u65e5", "<root>: Unexpected character \"\u65e5\" instead of root value"},
+                {"[1, \u00e9]", "<root>.[1]: Unexpected character \"\u00e9\" instead of array value"},
+                {"{\"a\": \u20ac}", "<root>: unexpected character \"\u20ac\" instead of object value"},
+                {"{\ud83d\ude00}", "<root>: unexpected character '\ud83d\ude00' where a property name is expected. "
+                        + "Missing quotes?"},
+        };
+        Path path = folder.newFile().toPath();
+        for (String[] test : tests) {
+            byte[] bytes = test[0].getBytes(UTF_8);
+            Files.write(path, bytes);
+            Assert.assertEquals(test[1], describe(test[0]));
+            Assert.assertEquals(test[1], describe(bytes));
+            Assert.assertEquals(test[1], describe(new MappedSource(path, 1)));
+            Assert.assertEquals(test[1], describe(new InputStreamSource(new ByteArrayInputStream(bytes), 1)));
+            Assert.assertEquals(test[1], describe(new ReaderSource(new StringReader(test[0]), 1)));
+
+            JsonPushParser parser = new JsonPushParser();
+            try {
+                parser.feed(bytes);
+                parser.endOfInput();
+                Assert.fail("JsonPushParser accepted " + test[0]);
+            } catch (JsonParseException e) {
+                Assert.assertEquals(test[1], e.getMessage());
+            }
+        }
+
+        // Cut short
+        byte[] bytes = {'[', (byte) 0xE6, (byte) 0x97};
+        Assert.assertEquals("<root>.[0]: Unexpected character \"\ufffd\" instead of array value", describe(bytes));
+    }
+
+    @Test
+    public void shouldParseMappedFiles() throws IOException {
+        String test = "{\"a\": [1, -2.5e3, \"\u00e9\\u0041\\n\"], \"long name spanning windows\": {\"c\": null}, "
+                + "\"d\": true}";
+        Path path = folder.newFile().toPath();
+        Files.write(path, test.getBytes(UTF_8));
+        Object expected = JsonParse.parse(test);
+        Assert.assertEquals(expected, JsonParse.parse(path));
+
+        // Tiny windows, so that values straddle them and indexes get rebased
+        for (int windowSize : new int[]{1, 2, 8, 16}) {
+            Assert.assertEquals(expected, JsonParse.parse(new MappedSource(path, windowSize), 0, ParseOptions.DEFAULT));
+        }
+
+        Files.write(path, "[1, [2, tru]]".getBytes(UTF_8));
+        try {
+            JsonParse.parse(new MappedSource(path, 4), 0, ParseOptions.DEFAULT);
+            Assert.fail("Did not throw exception on invalid constant");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>.[1].[1]: \"tru\" is not a valid constant. Missing quotes?", e.getMessage());
+        }
+
+        Files.write(path, new byte[0]);
+        try {
+            JsonParse.parse(path);
+            Assert.fail("Did not throw exception on empty file");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("Provided JSON string did not contain a value", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldParseStreams() throws IOException {
+        String test = "{\"a\": [1, -2.5e3, \"\u00e9\\u0041\\n\"], \"b\": {\"c\": null}, \"d\": true}";
+        Object expected = JsonParse.parse(test);
+        Assert.assertEquals(expected, JsonParse.parse(new StringReader(test)));
+        Assert.assertEquals(expected, JsonParse.parse(new ByteArrayInputStream(test.getBytes(UTF_8))));
+    }
+
+    @Test
+    public void shouldHandleTokensStraddlingBufferBoundaries() {
+        String[] tests = {
+                "{\"outer\": {\"array\": [\"inner1\", \"inner2\", [1, 2, 3]], \"ayy\": \"lmao\"}}",
+                "[12345678901234, -1.25E-10, true, false, null, \"\\u00e9\\\"\\\\\\ud83d\\ude00\"]",
+                "{\"caf\u00e9\": \"\u65e5\u672c\u8a9e \ud83d\ude00\", \"k\":\"\"}",
+                "  \"root string with a \\t tab\"  ",
+                "-987654321",
+        };
+        for (String test : tests) {
+            Object expected = JsonParse.parse(test);
+            for (int bufferSize = 1; bufferSize <= 16; bufferSize++) {
+                Assert.assertEquals(expected, JsonParse.parse(new ReaderSource(new TrickleReader(test), bufferSize)));
+                Assert.assertEquals(expected, JsonParse.parse(new InputStreamSource(
+                        new TrickleInputStream(test.getBytes(UTF_8)), bufferSize)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldFormatStreamExceptionsWithJsonStack() {
+        String test = "[{\"key\":\"value\"},{\"other\":bap}]";
+        try {
+            JsonParse.parse(new ReaderSource(new TrickleReader(test), 2));
+            Assert.fail("Did not throw exception on invalid constant");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>.[1].other: \"bap\" is not a valid constant. Missing quotes?", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldRethrowStreamFailures() {
+        final IOException failure = new IOException("disconnected");
+        try {
+            JsonParse.parse(new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw failure;
+                }
+            });
+            Assert.fail("Did not rethrow IOException");
+        } catch (IOException e) {
+            Assert.assertSame(failure, e);
+        }
+    }
+
+    private static String describe(String json) {
+        return describe(new StringSource(json));
+    }
+
+    private static String describe(byte[] bytes) {
+        return describe(new ByteSource(bytes, 0, bytes.length));
+    }
+
+    private static String describe(Source source) {
+        try {
+            return String.valueOf(JsonParse.parse(source, 0, ParseOptions.DEFAULT));
+        } catch (JsonParseException e) {
+            return e.getMessage();
+        }
     }
 
     private void assertFormatting(String test, String expected) {
@@ -269,6 +540,34 @@ public class JsonParseTest {
         }
     }
 
+    /**
+     * Hands out at most one character per read, so every token straddles a read boundary
+     */
+    static class TrickleReader extends StringReader {
+        TrickleReader(String s) {
+            super(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, 1));
+        }
+    }
+
+    /**
+     * Hands out at most one byte per read, so multi-byte characters straddle read boundaries
+     */
+    static class TrickleInputStream extends ByteArrayInputStream {
+        TrickleInputStream(byte[] buf) {
+            super(buf);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
     static class MapBuilder {
         private final Map<String, Object> map = new HashMap<>();
         private MapBuilder() {}
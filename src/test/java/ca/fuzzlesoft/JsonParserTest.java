@@ -0,0 +1,95 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class JsonParserTest {
+
+    @Test
+    public void shouldParseDocumentAfterDocument() {
+        JsonParser parser = new JsonParser();
+        String[] documents = {
+                "{\"a\": [1, 2.5, \"x\\ny\"], \"b\": {\"c\": null}}", "[true, false]", "\"\\u00e9\"", "-3", "{}",
+        };
+        for (int round = 0; round < 3; round++) {
+            for (String json : documents) {
+                Assert.assertEquals(JsonParse.parse(json), parser.parse(json));
+                byte[] bytes = json.getBytes(ByteSource.UTF_8);
+                Assert.assertEquals(JsonParse.parse(json), parser.parse(bytes, 0, bytes.length));
+            }
+        }
+
+        // A failure partway through a document leaves nothing behind for the next
+        try {
+            parser.parse("{\"a\": {\"b\": [1, {\"c\": nulll}]}}");
+            Assert.fail("Parsed an invalid constant");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>.a.b.[1].c: \"nulll\" is not a valid constant. Missing quotes?", e.getMessage());
+        }
+        try {
+            parser.parse("[1 2]");
+            Assert.fail("Parsed a missing comma");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>.[1]: wasn't preceded by a comma", e.getMessage());
+        }
+        Assert.assertEquals(Collections.singletonMap("k", "v"), parser.parse("{\"k\": \"v\"}"));
+    }
+
+    @Test
+    public void shouldApplyItsOptions() {
+        KeyCache keys = new KeyCache();
+        JsonParser parser = new JsonParser(ParseOptions.DEFAULT.withKeyCache(keys).withPrimitiveArrays(true));
+        Map<String, Object> first = (Map<String, Object>) parser.parse("{\"numbers\": [1, 2]}");
+        Map<String, Object> second = (Map<String, Object>) parser.parse("{\"numbers\": [3]}");
+        Assert.assertTrue(first.get("numbers") instanceof NumberList);
+        Assert.assertSame(first.keySet().iterator().next(), second.keySet().iterator().next());
+        Assert.assertEquals(1, keys.getHits());
+    }
+
+    @Test
+    public void shouldPoolParsersAcrossThreads() throws InterruptedException {
+        final JsonParser.Pool pool = new JsonParser.Pool(ParseOptions.DEFAULT, 2);
+        JsonParser parser = pool.acquire();
+        Assert.assertNotSame(parser, pool.acquire());
+        pool.release(parser);
+        Assert.assertSame(parser, pool.acquire());
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final long id = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            JsonParser parser = pool.acquire();
+                            try {
+                                Map<String, Object> value = (Map<String, Object>) parser.parse(
+                                        "{\"id\": " + id + ", \"name\": \"n\\t" + i + "\"}");
+                                Assert.assertEquals(id, value.get("id"));
+                                Assert.assertEquals("n\t" + i, value.get("name"));
+                            } finally {
+                                pool.release(parser);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(failure.get());
+    }
+}
@@ -0,0 +1,128 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class JsonPushParserTest {
+
+    private static final String[] DOCUMENTS = {
+            "{}", "[]", "\"\"", "0", " -12 ", "1.5e3", "true", "false", "null",
+            "\"caf\u00e9 \u65e5\u672c \ud83d\ude00\"",
+            "{\"a\": {\"b\": [1, 2.5, \"c\", true, false, null, {}, [[]]]}, \"d\": \"\\u00e9\\n\\\"\\\\\"}",
+            "[\n  {\"id\": 1, \"tags\": [\"x\", \"y\"]},\n  {\"id\": 2, \"tags\": []}\n]\ttrailing",
+            "{\"long\": \"" + repeat("\u00e9\\\"ab", 500) + "\", \"n\": 9223372036854775807}",
+            "[1, 2, 3,]", "{\"a\": 1,}",
+            // Invalid, with the same errors as JsonParse
+            "", "   ", "{", "[1, 2", "{\"a\": 1", "{\"a\"", "{\"a\": ", "{\"a\":   ", "{\"a\"   ", "[\"abc", "\"abc",
+            "[\"\\u00", "{\"a\" 1}", "{\"a\":: 1}", "{a: 1}", "{\"a\": 1 \"b\": 2}", "{,}", "[1 2]", "[,,]",
+            "[nulll]", "{\"a\": {\"b\": [fasle]}}", "[1.2.3]", "[--1]", "{\"a\": -}", "tru", "@", "[@]", "{\"a\": @}",
+            // Characters split across chunks that an error names
+            "\u00e9[", " \u65e5", "[\u00e9]", "[1, \ud83d\ude00]", "[1 \u00e9]", "{\"a\": \u65e5}", "{\u00e9: 1}",
+            "{\"a\": 1, \ud83d\ude00}", "{\"a\" \u00e9}",
+    };
+
+    @Test
+    public void shouldParseLikeJsonParseWhateverTheChunks() {
+        Random random = new Random(42);
+        for (String json : DOCUMENTS) {
+            byte[] bytes = json.getBytes(ByteSource.UTF_8);
+            String expected = describe(bytes, null);
+            for (int run = 0; run < 50; run++) {
+                int maxChunk = run < 10 ? 1 : 1 + random.nextInt(Math.max(1, bytes.length));
+                Assert.assertEquals(json, expected, describe(bytes, chunk(bytes, maxChunk, random)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldCompleteAsSoonAsTheValueIs() {
+        JsonPushParser parser = new JsonPushParser();
+        Assert.assertFalse(parser.feed("{\"a\": [1, ".getBytes(ByteSource.UTF_8)));
+        Assert.assertFalse(parser.isDone());
+        Assert.assertTrue(parser.feed("2]} and then garbage".getBytes(ByteSource.UTF_8)));
+        Assert.assertEquals(JsonParse.parse("{\"a\": [1, 2]}"), parser.getValue());
+        Assert.assertTrue(parser.feed(ByteBuffer.wrap("more".getBytes(ByteSource.UTF_8))));
+        Assert.assertEquals(parser.getValue(), parser.endOfInput());
+
+        // A root number could still go on, until something other than a digit arrives
+        parser.reset();
+        Assert.assertFalse(parser.feed("12".getBytes(ByteSource.UTF_8)));
+        Assert.assertFalse(parser.feed("34".getBytes(ByteSource.UTF_8)));
+        Assert.assertEquals(1234L, parser.endOfInput());
+
+        parser.reset();
+        ByteBuffer direct = ByteBuffer.allocateDirect(16);
+        direct.put("[true, ".getBytes(ByteSource.UTF_8)).flip();
+        Assert.assertFalse(parser.feed(direct));
+        Assert.assertEquals(0, direct.remaining());
+        direct.clear();
+        direct.put("null]".getBytes(ByteSource.UTF_8)).flip();
+        Assert.assertTrue(parser.feed(direct));
+        Assert.assertEquals(Arrays.asList(true, null), parser.getValue());
+
+        try {
+            parser.reset();
+            parser.getValue();
+            Assert.fail("Gave a value before it was complete");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldApplyOptions() {
+        ParseOptions options = ParseOptions.DEFAULT.withPrimitiveArrays(true)
+                .withContainerFactory(ContainerFactory.ordered());
+        String json = "{\"z\": [1, 2, 3], \"a\": [1.5, 2]}";
+        byte[] bytes = json.getBytes(ByteSource.UTF_8);
+        JsonPushParser parser = new JsonPushParser(options);
+        for (byte b : bytes) {
+            parser.feed(new byte[]{b});
+        }
+        Object value = parser.endOfInput();
+        Assert.assertEquals(JsonParse.parse(json, options), value);
+        Assert.assertEquals(JsonWrite.toString(JsonParse.parse(json, options)), JsonWrite.toString(value));
+    }
+
+    private static byte[][] chunk(byte[] bytes, int maxChunk, Random random) {
+        byte[][] chunks = new byte[bytes.length + 1][];
+        int count = 0;
+        for (int start = 0; start < bytes.length; ) {
+            int length = Math.min(bytes.length - start, 1 + random.nextInt(maxChunk));
+            chunks[count++] = Arrays.copyOfRange(bytes, start, start + length);
+            start += length;
+        }
+        return Arrays.copyOf(chunks, count);
+    }
+
+    /**
+     * @param chunks pieces to push, or null to parse bytes with {@link JsonParse} instead
+     * @return the value, or where and why it failed
+     */
+    private static String describe(byte[] bytes, byte[][] chunks) {
+        try {
+            if (chunks == null) {
+                return String.valueOf(JsonParse.parse(bytes, 0, bytes.length));
+            }
+            JsonPushParser parser = new JsonPushParser();
+            for (byte[] chunk : chunks) {
+                parser.feed(chunk);
+            }
+            return String.valueOf(parser.endOfInput());
+        } catch (JsonParseException e) {
+            return "error at " + e.getOffset() + " " + e.getMessage();
+        }
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,236 @@
+package ca.fuzzlesoft;
+
+import ca.fuzzlesoft.JsonReader.Token;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class JsonReaderTest {
+
+    private static final ParseOptions LIMITED = ParseOptions.DEFAULT.withLimits(ParseLimits.NONE.withMaxDepth(3)
+            .withMaxStringLength(5).withMaxNumberLength(4).withMaxEntries(3));
+
+    @Test
+    public void shouldEmitTokens() {
+        JsonReader reader = new JsonReader(
+                "{\"a\": [1, 2.5, \"x\\ny\"], \"b\": {\"c\": true, \"d\": null}, \"e\": []}");
+        List<Object> tokens = new ArrayList<>();
+        Token token;
+        while ((token = reader.nextToken()) != null) {
+            tokens.add(token);
+            if (token == Token.NAME || token == Token.STRING) {
+                tokens.add(reader.getString());
+            } else if (token == Token.NUMBER) {
+                tokens.add(reader.getNumber());
+            } else if (token == Token.BOOLEAN) {
+                tokens.add(reader.getBoolean());
+            }
+        }
+
+        List<Object> expected = Arrays.<Object>asList(
+                Token.START_OBJECT,
+                Token.NAME, "a", Token.START_ARRAY,
+                Token.NUMBER, 1L, Token.NUMBER, 2.5, Token.STRING, "x\ny",
+                Token.END_ARRAY,
+                Token.NAME, "b", Token.START_OBJECT,
+                Token.NAME, "c", Token.BOOLEAN, true, Token.NAME, "d", Token.NULL,
+                Token.END_OBJECT,
+                Token.NAME, "e", Token.START_ARRAY, Token.END_ARRAY,
+                Token.END_OBJECT);
+        Assert.assertEquals(expected, tokens);
+    }
+
+    @Test
+    public void shouldReadRootScalars() {
+        JsonReader reader = new JsonReader("  -12  ");
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(-12L, reader.getLong());
+        Assert.assertEquals(-12.0, reader.getDouble(), 0);
+        Assert.assertNull(reader.nextToken());
+        Assert.assertNull(reader.nextToken());
+
+        reader = new JsonReader("\"root\"");
+        Assert.assertEquals(Token.STRING, reader.nextToken());
+        Assert.assertEquals("root", reader.getString());
+        Assert.assertNull(reader.nextToken());
+    }
+
+    @Test
+    public void shouldSkipValues() {
+        JsonReader reader = new JsonReader("{\"skip\": {\"deep\": [1, {\"x\": [\"]\"]}]}, \"scalar\": 1, \"keep\": 7}");
+        Assert.assertEquals(Token.START_OBJECT, reader.nextToken());
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        reader.skipValue();
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        Assert.assertEquals("scalar", reader.getName());
+        reader.skipValue();
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        Assert.assertEquals("keep", reader.getName());
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(7L, reader.getLong());
+        Assert.assertEquals(Token.END_OBJECT, reader.nextToken());
+        Assert.assertNull(reader.nextToken());
+
+        reader = new JsonReader("[[1, [2]], 3]");
+        reader.nextToken();
+        Assert.assertEquals(Token.START_ARRAY, reader.nextToken());
+        reader.skipValue();
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(3L, reader.getLong());
+    }
+
+    @Test
+    public void shouldReadBytesAndStreams() {
+        String json = "{\"café\": [\"日本\", 1e3]}";
+        JsonReader[] readers = {
+                new JsonReader(json.getBytes(ByteSource.UTF_8), 0, json.getBytes(ByteSource.UTF_8).length),
+                new JsonReader(new ReaderSource(new JsonParseTest.TrickleReader(json), 1)),
+        };
+        for (JsonReader reader : readers) {
+            Assert.assertEquals(Token.START_OBJECT, reader.nextToken());
+            Assert.assertEquals(Token.NAME, reader.nextToken());
+            Assert.assertEquals("café", reader.getName());
+            Assert.assertEquals(Token.START_ARRAY, reader.nextToken());
+            Assert.assertEquals(Token.STRING, reader.nextToken());
+            Assert.assertEquals("日本", reader.getString());
+            Assert.assertEquals(Token.NUMBER, reader.nextToken());
+            Assert.assertEquals(1000.0, reader.getNumber());
+        }
+    }
+
+    @Test
+    public void shouldRejectWrongGetter() {
+        JsonReader reader = new JsonReader("[true]");
+        reader.nextToken();
+        reader.nextToken();
+        try {
+            reader.getString();
+            Assert.fail("Did not reject reading a boolean as a string");
+        } catch (IllegalStateException ignored) {}
+    }
+
+    @Test
+    public void shouldFormatExceptionsLikeJsonParse() {
+        String[] tests = {
+                "bork",
+                "",
+                "{\"a\":{\"b\":{\"c\": fasle}}}",
+                "{\"a\":true \"b\":false}",
+                "{\"a\" true}",
+                "{\"a\"::true}",
+                "{\"a\": true, v}",
+                "{\"a\": v}",
+                "{\"a\": 1-2}",
+                "{\"a\": \"unterminated",
+                "[true, false false]",
+                "[v]",
+                "{\"a\": [{v}]}",
+                "[{\"key\":\"value\"},{\"other\":bap}]",
+                "[!]",
+                "[1,,2]",
+                "{\"a\":1,,}",
+                "{\"outer\": {\"sick-list\": [{}, {\"inner\": [1, [1, 2, 3, [fasle]]]}]}}",
+                "{\"a\": [1, 2",
+                "{\"a\": [{\"b\": [1, !]}]}",
+                "[1, {\"c\": tru}]",
+                // Input ending in whitespace
+                "[\t", "[1 ", "{\"\"\t", "{\"a\":\n", "{\"a\": 1 ", "{ ",
+                // Named after the last property read, even within a nested object
+                "{,}", "{\"a\": {,}}", "{\"a\": [{,}]}", "{\"a\": {\"b\": 1}, ,}", "{\"a\": {\"b\": 1} \"c\": 2}",
+                // Escapes that run over the quote that ends the string
+                "\"\\u00e9ae\\u12\"", "[\"\\u12\", 1]", "[\"\\uzzzz", "{\"\\u12\": 1}",
+                "[\"\\uzzzz\", 1]", "{\"a\": [\"\\u12\"], \"b\": 1}",
+        };
+        for (String test : tests) {
+            Assert.assertNotEquals(test, "valid", describeParse(test, ParseOptions.DEFAULT));
+            assertReadsLikeParse(test);
+        }
+
+        // Break valid documents in every which way, the same as ValidatorTest
+        String[] documents = {
+                "{}", "[]", "\"\"", "0", " -12 ", "1.5e3", "true", "null",
+                "{\"a\": {\"b\": [1, 2.5, \"c\", true, false, null, {}, [[]]]}, \"d\": \"\\u00e9\\n\\\"\\\\\\q\"}",
+                "[\n  {\"id\": 1, \"tags\": [\"x\", \"y\"]},\n  {\"id\": 2, \"tags\": []}\n]",
+        };
+        Random random = new Random(42);
+        String alphabet = "{}[]\":,. \n\t-+0123456789eEtrufalsn\\u";
+        for (String json : documents) {
+            for (int run = 0; run < 500; run++) {
+                StringBuilder broken = new StringBuilder(json);
+                for (int edits = 1 + random.nextInt(3); edits > 0 && broken.length() > 0; edits--) {
+                    int at = random.nextInt(broken.length());
+                    char c = alphabet.charAt(random.nextInt(alphabet.length()));
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            broken.insert(at, c);
+                            break;
+                        case 1:
+                            broken.deleteCharAt(at);
+                            break;
+                        default:
+                            broken.setCharAt(at, c);
+                    }
+                }
+                assertReadsLikeParse(broken.toString());
+            }
+        }
+    }
+
+    @Test
+    public void shouldWrapStreamFailures() {
+        JsonReader reader = new JsonReader(new StringReader("[1]") {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+                throw new java.io.IOException("disconnected");
+            }
+        });
+        try {
+            reader.nextToken();
+            Assert.fail("Did not throw on failing reader");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("disconnected", e.getCause().getMessage());
+        }
+    }
+
+    private static void assertReadsLikeParse(String json) {
+        for (ParseOptions options : Arrays.asList(ParseOptions.DEFAULT, LIMITED)) {
+            String expected = describeParse(json, options);
+            Assert.assertEquals(json, expected, describeRead(new JsonReader(json, options), true));
+            Assert.assertEquals(json, expected, describeRead(new JsonReader(new StringReader(json), options), true));
+            // Strings that are never decoded are still checked
+            Assert.assertEquals(json, expected, describeRead(new JsonReader(json, options), false));
+        }
+    }
+
+    private static String describeParse(String json, ParseOptions options) {
+        try {
+            JsonParse.parse(json, options);
+            return "valid";
+        } catch (JsonParseException e) {
+            return e.getOffset() + " " + e.getMessage();
+        }
+    }
+
+    /**
+     * Reads every token
+     * @param decode whether to decode every string, so that strings fail wherever JsonParse would
+     */
+    private static String describeRead(JsonReader reader, boolean decode) {
+        try {
+            Token token;
+            while ((token = reader.nextToken()) != null) {
+                if (token == Token.STRING && decode) {
+                    reader.getString();
+                }
+            }
+            return "valid";
+        } catch (JsonParseException e) {
+            return e.getOffset() + " " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class JsonSelectorTest {
+
+    private static final String EVENT = "{\"request\": {\"method\": \"GET\","
+            + " \"user\": {\"id\": 42, \"name\": \"a\\\"b\"}},"
+            + " \"noise\": [{\"id\": 1}, \"}]\", [[[]]]],"
+            + " \"items\": [{\"sku\": \"A-1\", \"qty\": 2}, {\"qty\": 1}, {\"sku\": \"B-2\"}],"
+            + " \"nothing\": null}";
+
+    @Test
+    public void shouldSelectPaths() {
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("<root>.request.user.id", 42L);
+        expected.put("<root>.items.[*].sku", Arrays.<Object>asList("A-1", "B-2"));
+        expected.put("<root>.items.[1]", Collections.<String, Object>singletonMap("qty", 1L));
+        Assert.assertEquals(expected, JsonParse.select(EVENT,
+                "<root>.request.user.id", "<root>.items.[*].sku", "<root>.items.[1]", "<root>.missing.id"));
+    }
+
+    @Test
+    public void shouldDistinguishNullFromMissing() {
+        Map<String, Object> selected = JsonParse.select(EVENT, "<root>.nothing", "<root>.missing");
+        Assert.assertTrue(selected.containsKey("<root>.nothing"));
+        Assert.assertNull(selected.get("<root>.nothing"));
+        Assert.assertFalse(selected.containsKey("<root>.missing"));
+    }
+
+    @Test
+    public void shouldSelectNestedPathsOfSelectedValues() {
+        Map<String, Object> selected = JsonParse.select(EVENT, "<root>.request.user", "<root>.request.user.name",
+                "<root>.request.*");
+        Assert.assertEquals("a\"b", selected.get("<root>.request.user.name"));
+        Assert.assertEquals(2, ((Map<?, ?>) selected.get("<root>.request.user")).size());
+        Assert.assertEquals(2, ((java.util.List<?>) selected.get("<root>.request.*")).size());
+    }
+
+    @Test
+    public void shouldSelectRoot() {
+        Assert.assertEquals(Collections.singletonMap("<root>", (Object) Arrays.asList(1L, 2L)),
+                JsonParse.select("[1, 2]", "<root>"));
+    }
+
+    @Test
+    public void shouldMatchEscapedAndNonAsciiNames() {
+        String json = "{\"caf\\u00e9\": 1, \"日本\": 2}";
+        JsonSelector selector = JsonSelector.compile("<root>.café", "<root>.日本");
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("<root>.café", 1L);
+        expected.put("<root>.日本", 2L);
+        Assert.assertEquals(expected, selector.select(json));
+
+        byte[] bytes = json.getBytes(ByteSource.UTF_8);
+        Assert.assertEquals(expected, selector.select(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void shouldRejectMalformedPaths() {
+        for (String path : new String[]{"request.id", "<root>..id", "<root>.[x]"}) {
+            try {
+                JsonSelector.compile(path);
+                Assert.fail("Accepted " + path);
+            } catch (IllegalArgumentException ignored) {}
+        }
+    }
+
+    @Test
+    public void shouldReportErrorsInSelectedValues() {
+        try {
+            JsonParse.select("{\"a\": {\"b\": fasle}}", "<root>.a");
+            Assert.fail("Did not throw on invalid selected value");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>.b: \"fasle\" is not a valid constant. Missing quotes?", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldReportWhereWalkingFailed() {
+        String[][] tests = {
+                {"  ", "<root>", "2 Provided JSON string did not contain a value"},
+                {"{\"a\": {\"b\" 1}}", "<root>.a.c", "11 <root>.a.b: wasn't followed by a colon"},
+                {"{\"a\": [1, {x}]}", "<root>.a.[1].y",
+                        "11 <root>.a.[1]: unexpected character 'x' where a property name is expected. Missing quotes?"},
+                {"{\"skip\": {\"s\": \"open", "<root>.keep", "15 <root>.skip: String did not have ending quote"},
+                {"{\"skip\": [[1]", "<root>.keep", "13 <root>.skip: wasn't terminated correctly (Missing ']' or '}'?)"},
+                {"{\"a\": [1, 2", "<root>.a.[5]", "11 <root>.a: wasn't terminated correctly (Missing ']' or '}'?)"},
+                {"{\"a\": [\"x\", \"y", "<root>.a.[5]", "12 <root>.a.[1]: String did not have ending quote"},
+                {"{\"caf\\u00e\": 1}", "<root>.caf\u00e9",
+                        "5 <root>: String had a unicode escape that wasn't four hex digits"},
+        };
+        for (String[] test : tests) {
+            JsonSelector selector = JsonSelector.compile(test[1]);
+            byte[] bytes = test[0].getBytes(ByteSource.UTF_8);
+            for (int run = 0; run < 2; run++) {
+                try {
+                    if (run == 0) {
+                        selector.select(test[0]);
+                    } else {
+                        selector.select(bytes, 0, bytes.length);
+                    }
+                    Assert.fail("Did not throw on " + test[0]);
+                } catch (JsonParseException e) {
+                    Assert.assertEquals(test[0], test[2], e.getOffset() + " " + e.getMessage());
+                }
+            }
+        }
+    }
+}
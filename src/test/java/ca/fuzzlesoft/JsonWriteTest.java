@@ -0,0 +1,178 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+
+public class JsonWriteTest {
+
+    @Test
+    public void shouldWriteWhatParsesBack() throws IOException {
+        String[] documents = {
+                "{}", "[]", "\"\"", "0", "-12", "9223372036854775807", "-9223372036854775808", "1.5", "-0.0",
+                "0.1", "1e-7", "1.7976931348623157E308", "4.9E-324", "123456789.123", "[1e400, -1e400]", "1e-400",
+                "true", "false", "null",
+                "{\"a\": {\"b\": [1, 2.5, \"c\", true, false, null, {}, [[]]]}, \"d\": \"\\u00e9\\n\"}",
+                "[\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u0000\\u001f\", \"\\ud83d\\ude00\", \"\\ud83d\", \"\\ude00x\"]",
+                "{\"caf\u00e9\": \"\u65e5\u672c\"}",
+        };
+        for (String json : documents) {
+            Object value = JsonParse.parse(json);
+            String written = JsonWrite.toString(value);
+            Assert.assertEquals(json, value, JsonParse.parse(written));
+
+            StringWriter writer = new StringWriter();
+            JsonWrite.writeTo(value, writer);
+            Assert.assertEquals(json, written, writer.toString());
+
+            StringBuilder builder = new StringBuilder();
+            JsonWrite.writeTo(value, builder);
+            Assert.assertEquals(json, written, builder.toString());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonWrite.writeTo(value, out);
+            Assert.assertEquals(json, written, new String(out.toByteArray(), ByteSource.UTF_8));
+        }
+
+        Assert.assertEquals("{\"a\":[1,2.5,\"x\\ny\"],\"b\":null}",
+                JsonWrite.toString(JsonParse.parse("{\"a\": [1, 2.5, \"x\\ny\"], \"b\": null}",
+                        ParseOptions.DEFAULT.withContainerFactory(ContainerFactory.ordered()))));
+        Assert.assertEquals("[1,2,3]", JsonWrite.toString(
+                JsonParse.parse("[1, 2, 3]", ParseOptions.DEFAULT.withPrimitiveArrays(true))));
+    }
+
+    @Test
+    public void shouldWriteShortestDecimals() {
+        Assert.assertEquals("[0.1,0.3,12.5,3.0,-2.0,0.0000001,0.3333333333333333,1.0E20,1.0E-300]",
+                JsonWrite.toString(Arrays.asList(0.1, 0.1 + 0.2 - 0.0000000000000000555, 12.5, 3.0, -2.0, 1e-7,
+                        1.0 / 3, 1e20, 1e-300)));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            double value;
+            switch (i % 4) {
+                case 0:
+                    value = random.nextDouble() * 100;
+                    break;
+                case 1:
+                    value = Math.round(random.nextDouble() * 1000000) / 100.0;
+                    break;
+                case 2:
+                    value = Double.longBitsToDouble(random.nextLong());
+                    break;
+                default:
+                    value = -random.nextInt(1000) / 8.0;
+            }
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            String written = JsonWrite.toString(value);
+            Assert.assertEquals(written, value, (Double) JsonParse.parse(written), 0);
+            Assert.assertEquals(written, Double.doubleToLongBits(value),
+                    Double.doubleToLongBits((Double) JsonParse.parse(written)));
+        }
+    }
+
+    @Test
+    public void shouldWriteOtherTypes() {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put(1, 'c');
+        map.put("set", new LinkedHashSet<>(Arrays.asList("x", "y")));
+        map.put("array", new int[]{1, 2});
+        map.put("objects", new Object[]{null, Thread.State.NEW});
+        map.put("decimal", new BigDecimal("1.50"));
+        map.put("float", 0.5f);
+        map.put("builder", new StringBuilder("sb"));
+        Assert.assertEquals("{\"1\":\"c\",\"set\":[\"x\",\"y\"],\"array\":[1,2],\"objects\":[null,\"NEW\"],"
+                + "\"decimal\":1.50,\"float\":0.5,\"builder\":\"sb\"}", JsonWrite.toString(map));
+
+        Assert.assertEquals("[1e999,-1e999,1e999]", JsonWrite.toString(
+                Arrays.asList(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY)));
+        Assert.assertEquals("[123456789012345678901234567890,1E+3]",
+                JsonWrite.toString(Arrays.asList(new BigInteger("123456789012345678901234567890"),
+                        new BigDecimal("1E+3"))));
+
+        for (Object invalid : Arrays.asList(Double.NaN, Float.NaN, new Object(),
+                Collections.singletonList(Double.NaN))) {
+            try {
+                JsonWrite.toString(invalid);
+                Assert.fail("Wrote " + invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void shouldWriteMoreThanTheBuffer() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append(i % 7 == 0 ? "\ud83d\ude00" : i % 5 == 0 ? "\n" : "\u00e9a");
+        }
+        Object value = Arrays.asList(text.toString(), Collections.singletonMap("k", text.toString()), 1.25);
+
+        String written = JsonWrite.toString(value);
+        Assert.assertEquals(value, JsonParse.parse(written));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWrite.writeTo(value, out);
+        Assert.assertArrayEquals(written.getBytes(ByteSource.UTF_8), out.toByteArray());
+
+        StringWriter writer = new StringWriter();
+        JsonWrite.writeTo(value, writer);
+        Assert.assertEquals(written, writer.toString());
+
+        // The buffer is reused, so what came before mustn't leak into what comes after
+        Assert.assertEquals("[]", JsonWrite.toString(Collections.emptyList()));
+    }
+
+    @Test
+    public void shouldWriteDeepNestingWithoutRecursion() throws IOException {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            json.append(i % 2 == 0 ? "{\"a\":[" : "[");
+        }
+        json.append("1");
+        for (int i = 49999; i >= 0; i--) {
+            json.append(i % 2 == 0 ? "]}" : "]");
+        }
+        Object value = JsonParse.parse(json.toString());
+        Assert.assertEquals(json.toString(), JsonWrite.toString(value));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWrite.writeTo(value, out);
+        Assert.assertEquals(json.toString(), new String(out.toByteArray(), ByteSource.UTF_8));
+
+        Object[] arrays = {new Object[] {new int[] {1}, Collections.singleton("s")}};
+        Assert.assertEquals("[[[1],[\"s\"]]]", JsonWrite.toString(arrays));
+    }
+
+    @Test
+    public void shouldWriteAfterFailingPartWay() {
+        try {
+            JsonWrite.toString(Collections.singletonMap("a", Arrays.asList(1, Collections.singletonList(Double.NaN))));
+            Assert.fail("Wrote NaN");
+        } catch (IllegalArgumentException ignored) {}
+        Assert.assertEquals("{\"b\":[2]}", JsonWrite.toString(Collections.singletonMap("b", Arrays.asList(2))));
+
+        // A value written while writing another gets a writer of its own
+        Number nested = new BigDecimal(3) {
+            @Override
+            public String toString() {
+                return JsonWrite.toString(Arrays.asList(4, 5)).replaceAll("\\D", "");
+            }
+        };
+        Assert.assertEquals("[[5,45]]", JsonWrite.toString(Collections.singletonList(Arrays.asList(5, nested))));
+    }
+}
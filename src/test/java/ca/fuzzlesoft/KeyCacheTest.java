@@ -0,0 +1,78 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class KeyCacheTest {
+
+    @Test
+    public void shouldShareRepeatedNames() {
+        KeyCache keys = new KeyCache();
+        ParseOptions options = ParseOptions.DEFAULT.withKeyCache(keys);
+        String json = "[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]";
+        byte[] bytes = json.getBytes(ByteSource.UTF_8);
+
+        List<Object> fromString = JsonParse.list(json);
+        Assert.assertEquals(fromString, JsonParse.parse(json, options));
+        Assert.assertEquals(fromString, JsonParse.parse(bytes, 0, bytes.length, options));
+        Assert.assertEquals(2, keys.getMisses());
+        Assert.assertEquals(6, keys.getHits());
+
+        List<String> names = new ArrayList<>();
+        for (Object element : (List<?>) JsonParse.parse(bytes, 0, bytes.length, options)) {
+            names.addAll(((Map<String, Object>) element).keySet());
+        }
+        Assert.assertSame(names.get(0), names.get(2));
+        Assert.assertSame(names.get(1), names.get(3));
+    }
+
+    @Test
+    public void shouldDecodeNamesBeforeCachingThem() {
+        KeyCache keys = new KeyCache();
+        ParseOptions options = ParseOptions.DEFAULT.withKeyCache(keys);
+        String json = "{\"a\\\"b\":1,\"\u00e9t\u00e9\":2,\"" + new String(new char[KeyCache.MAX_KEY_LENGTH + 1])
+                .replace('\0', 'x') + "\":3}";
+        byte[] bytes = json.getBytes(ByteSource.UTF_8);
+
+        Assert.assertEquals(JsonParse.map(json), JsonParse.parse(json, options));
+        Assert.assertEquals(JsonParse.map(json), JsonParse.parse(bytes, 0, bytes.length, options));
+        for (String name : ((Map<String, Object>) JsonParse.parse(json, options)).keySet()) {
+            if (name.length() <= KeyCache.MAX_KEY_LENGTH) {
+                Assert.assertSame(keys.intern(new String(name)), name);
+            }
+        }
+    }
+
+    @Test
+    public void shouldStayBounded() {
+        KeyCache keys = new KeyCache(16);
+        Assert.assertEquals(16, keys.getCapacity());
+        for (int i = 0; i < 10000; i++) {
+            keys.intern("key" + i);
+        }
+        Assert.assertEquals(10000, keys.getMisses());
+
+        // The two most recent names in a bucket survive
+        String recent = keys.intern("key9999");
+        Assert.assertSame(recent, keys.intern(new String("key9999")));
+        Assert.assertEquals(2, keys.getHits());
+
+        keys.clear();
+        Assert.assertEquals(0, keys.getHits());
+        Assert.assertEquals(0, keys.getMisses());
+    }
+
+    @Test
+    public void shouldFailOnUnterminatedName() {
+        try {
+            JsonParse.parse("{\"abc", ParseOptions.DEFAULT.withKeyCache(new KeyCache()));
+            Assert.fail();
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>: String did not have ending quote", e.getMessage());
+        }
+    }
+}
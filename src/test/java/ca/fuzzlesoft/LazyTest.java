@@ -0,0 +1,113 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("unchecked")
+public class LazyTest {
+
+    private static final ParseOptions LAZY = ParseOptions.DEFAULT.withLazy(true);
+
+    @Test
+    public void shouldEqualEagerParse() {
+        String[] documents = {
+                "{}", "[]", "\"a\\\"b\"", "-12", "1.5e3", "true", "null",
+                "{\"a\": {\"b\": [1, 2.5, \"c\", true, false, null, {}, [[]]]}, \"d\": \"\\u00e9\\n\"}",
+                " [ {\"id\": 1, \"tags\": [\"x\", \"y\"]} , {\"id\": 2, \"tags\": []} ] ",
+                "{\"caf\u00e9\": \"\u65e5\u672c\"}",
+        };
+        for (String json : documents) {
+            Object eager = JsonParse.parse(json);
+            Object lazy = JsonParse.parse(json, LAZY);
+            Assert.assertEquals(json, eager, lazy);
+            Assert.assertEquals(json, lazy, eager);
+            if (eager != null) {
+                Assert.assertEquals(json, eager.hashCode(), lazy.hashCode());
+            }
+
+            byte[] bytes = json.getBytes(ByteSource.UTF_8);
+            Assert.assertEquals(json, eager, JsonParse.parse(bytes, 0, bytes.length, LAZY));
+        }
+
+        StringBuilder records = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            records.append(i == 0 ? "" : ",").append("{\"id\": ").append(i).append(", \"tags\": [\"a\", null]}");
+        }
+        String json = records.append("]").toString();
+        Object lazy = JsonParse.parse(json, LAZY);
+        Assert.assertTrue(lazy instanceof LazyList);
+        Assert.assertEquals(JsonParse.parse(json), lazy);
+    }
+
+    @Test
+    public void shouldDecodeOnFirstAccessOnly() {
+        Map<String, Object> map = (Map<String, Object>) JsonParse.parse(
+                "{\"a\": {\"b\": \"c\"}, \"list\": [\"x\", {\"y\": 1}], \"n\": null}", LAZY);
+        Assert.assertTrue(map instanceof LazyMap);
+        Assert.assertEquals(3, map.size());
+
+        Map<String, Object> a = (Map<String, Object>) map.get("a");
+        Assert.assertTrue(a instanceof LazyMap);
+        Assert.assertSame(a, map.get("a"));
+        Assert.assertSame(a.get("b"), a.get("b"));
+
+        List<Object> list = (List<Object>) map.get("list");
+        Assert.assertTrue(list instanceof LazyList);
+        Assert.assertSame(list.get(1), list.get(1));
+        Assert.assertEquals(1L, ((Map<String, Object>) list.get(1)).get("y"));
+
+        Assert.assertTrue(map.containsKey("n"));
+        Assert.assertNull(map.get("n"));
+        Assert.assertFalse(map.containsKey("missing"));
+        Assert.assertNull(map.get("missing"));
+
+        try {
+            map.put("a", 1);
+            Assert.fail("Lazy maps are read-only");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            list.get(2);
+            Assert.fail("Did not check the index");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldKeepTheLastOfRepeatedProperties() {
+        Map<String, Object> map = (Map<String, Object>) JsonParse.parse("{\"a\": 1, \"b\": 2, \"a\": 3}", LAZY);
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(3L, map.get("a"));
+        Assert.assertEquals(JsonParse.parse("{\"a\": 1, \"b\": 2, \"a\": 3}"), map);
+    }
+
+    @Test
+    public void shouldFailLikeEagerParse() {
+        Object trailingCommas = JsonParse.parse("{\"a\": [1, 2,],}", LAZY);
+        Assert.assertTrue(trailingCommas instanceof LazyMap);
+        Assert.assertEquals(JsonParse.parse("{\"a\": [1, 2,],}"), trailingCommas);
+
+        for (String json : Arrays.asList("", "{", "[1, 2", "[,]", "[1,,]", "{,}", "{\"a\": 1,,}", "{\"a\": tru}",
+                "[1x]", "[99999999999999999999]", "{\"a\" 1}", "\"unterminated", "{\"a\": 1]", "[\"\\uzzzz\"]")) {
+            String expected = null, actual = null;
+            try {
+                JsonParse.parse(json);
+            } catch (JsonParseException e) {
+                expected = e.getMessage();
+            }
+            try {
+                JsonParse.parse(json, LAZY);
+            } catch (JsonParseException e) {
+                actual = e.getMessage();
+            }
+            Assert.assertNotNull(json, expected);
+            Assert.assertEquals(json, expected, actual);
+        }
+    }
+}
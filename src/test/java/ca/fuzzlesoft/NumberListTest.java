@@ -0,0 +1,77 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class NumberListTest {
+
+    private static final ParseOptions PRIMITIVE = ParseOptions.DEFAULT.withPrimitiveArrays(true);
+
+    @Test
+    public void shouldParseSameAsBoxedLists() {
+        String[] tests = {"[]", "[1,2,3]", "[1.5,-2e3,0.25]", "[1,2.5,3]", "[1,\"a\",null]",
+                "[[1,2],[3.5],{\"a\":[4]}]", "[9007199254740993,1.5]", "{\"a\":[1,2],\"b\":[true,1]}"};
+        for (String test : tests) {
+            Assert.assertEquals(test, JsonParse.parse(test), JsonParse.parse(test, PRIMITIVE));
+        }
+    }
+
+    @Test
+    public void shouldKeepNumbersUnboxed() {
+        NumberList longs = (NumberList) JsonParse.parse("[1, 2, 3]", PRIMITIVE);
+        Assert.assertTrue(longs.isPrimitive());
+        Assert.assertTrue(longs.isLongs());
+        Assert.assertEquals(2L, longs.getLong(1));
+
+        NumberList doubles = (NumberList) JsonParse.parse("[1, 2.5, 3]", PRIMITIVE);
+        Assert.assertTrue(doubles.isPrimitive());
+        Assert.assertFalse(doubles.isLongs());
+        Assert.assertEquals(2.5, doubles.getDouble(1), 0);
+        Assert.assertEquals(Arrays.<Object>asList(1L, 2.5, 3L), doubles);
+    }
+
+    @Test
+    public void shouldBoxWhenNumbersCantBeStoredExactly() {
+        NumberList mixed = (NumberList) JsonParse.parse("[1, \"a\"]", PRIMITIVE);
+        Assert.assertFalse(mixed.isPrimitive());
+
+        NumberList huge = (NumberList) JsonParse.parse("[1.5, 9007199254740993]", PRIMITIVE);
+        Assert.assertFalse(huge.isPrimitive());
+        Assert.assertEquals(9007199254740993L, huge.get(1));
+
+        NumberList hugeFirst = (NumberList) JsonParse.parse("[9007199254740993, 1.5]", PRIMITIVE);
+        Assert.assertFalse(hugeFirst.isPrimitive());
+        Assert.assertEquals(9007199254740993L, hugeFirst.get(0));
+    }
+
+    @Test
+    public void shouldBehaveLikeArrayList() {
+        NumberList list = new NumberList();
+        List<Object> expected = new ArrayList<>();
+        Object[] values = {1L, 2L, 3.5, 4L, -0.0, "five", 6L, null, 7.25};
+        for (int i = 0; i < 40; i++) {
+            Object value = values[i % values.length];
+            int index = (i * 7) % (expected.size() + 1);
+            list.add(index, value);
+            expected.add(index, value);
+            if (i % 5 == 4) {
+                Assert.assertEquals(expected.remove(i % expected.size()), list.remove(i % list.size()));
+            }
+            if (i % 3 == 2) {
+                Assert.assertEquals(expected.set(0, 9L), list.set(0, 9L));
+            }
+            Assert.assertEquals(expected, list);
+        }
+
+        list.clear();
+        list.addLong(3);
+        list.addDouble(0.5);
+        list.add(1, 2L);
+        Assert.assertEquals(Arrays.<Object>asList(3L, 2L, 0.5), list);
+        Assert.assertTrue(list.isPrimitive());
+    }
+}
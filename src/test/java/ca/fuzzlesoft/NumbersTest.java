@@ -0,0 +1,120 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+public class NumbersTest {
+
+    @Test
+    public void shouldDecodeLongsLikeLongParseLong() {
+        String[] tests = {"0", "-0", "7", "-7", "007", "123456789012345678", "-123456789012345678",
+                "9223372036854775807", "-9223372036854775808"};
+        for (String test : tests) {
+            Assert.assertEquals(test, Long.parseLong(test),
+                    Numbers.decodeLong(new StringSource(test), 0, test.length()));
+        }
+    }
+
+    @Test
+    public void shouldRejectWhatLongParseLongRejects() {
+        for (String test : new String[]{"-", "1-2", "1+2", "9223372036854775808", "-9223372036854775809"}) {
+            try {
+                Numbers.decodeLong(new StringSource(test), 0, test.length());
+                Assert.fail("Accepted " + test);
+            } catch (NumberFormatException ignored) {}
+        }
+    }
+
+    @Test
+    public void shouldDecodeDoublesBitForBitLikeDoubleParseDouble() {
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            double d = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                continue;
+            }
+            assertDecodesLikeParseDouble(Double.toString(d));
+            assertDecodesLikeParseDouble(Double.toString(random.nextGaussian() * 1e4));
+
+            // Decimal strings right next to the half-way point between two doubles are the hardest to round
+            if (Double.isInfinite(Math.nextUp(d))) {
+                continue;
+            }
+            BigDecimal halfway = new BigDecimal(Math.abs(d)).add(new BigDecimal(Math.nextUp(Math.abs(d))))
+                    .divide(BigDecimal.valueOf(2));
+            RoundingMode mode = random.nextBoolean() ? RoundingMode.FLOOR : RoundingMode.CEILING;
+            assertDecodesLikeParseDouble(halfway.round(new MathContext(15 + random.nextInt(5), mode)).toString());
+        }
+
+        String[] tests = {"1.", "-.5", "1.e5", "0e5", "-0.0", "1E-4", "2.2E-2", "-1.1e+1", "1e-400", "1e400",
+                "4.9e-324", "2.2250738585072011e-308", "9007199254740993.0", "1.7976931348623157e308",
+                "123456789012345678901234567890.5"};
+        for (String test : tests) {
+            assertDecodesLikeParseDouble(test);
+        }
+    }
+
+    @Test
+    public void shouldRejectWhatDoubleParseDoubleRejects() {
+        for (String test : new String[]{"-", "1e", "1e+", "-.", "1.5-2", "1e5.5"}) {
+            try {
+                Numbers.decodeDouble(new StringSource(test), 0, test.length());
+                Assert.fail("Accepted " + test);
+            } catch (NumberFormatException ignored) {}
+        }
+    }
+
+    @Test
+    public void shouldCheckNumbersTheSameAsDecodingThem() {
+        Random random = new Random(0);
+        String alphabet = "0123456789-+.eE";
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder number = new StringBuilder();
+            number.append(random.nextBoolean() ? '-' : (char) ('0' + random.nextInt(10)));
+            for (int length = random.nextInt(22); length > 0; length--) {
+                number.append(random.nextInt(3) == 0
+                        ? alphabet.charAt(random.nextInt(alphabet.length()))
+                        : (char) ('0' + random.nextInt(10)));
+            }
+            String test = number.toString();
+            StringSource source = new StringSource(test);
+            Assert.assertEquals(test, decodes(test, false), Numbers.isLong(source, 0, test.length()));
+            Assert.assertEquals(test, decodes(test, true), Numbers.isDouble(source, 0, test.length()));
+        }
+        for (String test : new String[]{"9223372036854775807", "-9223372036854775808", "0009223372036854775807",
+                "9223372036854775808", "-9223372036854775809", "10000000000000000000"}) {
+            Assert.assertEquals(test, decodes(test, false), Numbers.isLong(new StringSource(test), 0, test.length()));
+        }
+    }
+
+    @Test
+    public void shouldCacheSmallLongs() {
+        Assert.assertSame(Numbers.box(1000), Numbers.box(1000));
+        Assert.assertSame(Numbers.box(-128), Numbers.box(-128));
+        Assert.assertEquals(Long.valueOf(1L << 40), Numbers.box(1L << 40));
+    }
+
+    private static boolean decodes(String test, boolean asDouble) {
+        try {
+            if (asDouble) {
+                Numbers.decodeDouble(new StringSource(test), 0, test.length());
+            } else {
+                Numbers.decodeLong(new StringSource(test), 0, test.length());
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void assertDecodesLikeParseDouble(String test) {
+        double expected = Double.parseDouble(test);
+        double actual = Numbers.decodeDouble(new StringSource(test), 0, test.length());
+        Assert.assertEquals(test, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+}
@@ -0,0 +1,100 @@
+package ca.fuzzlesoft;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParallelArrayTest {
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(3);
+
+    @AfterClass
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+    }
+
+    @Test
+    public void shouldParseSameAsSequentially() {
+        String json = records(1000, null);
+        Object expected = JsonParse.parse(json);
+        Assert.assertEquals(1000, ((List<?>) expected).size());
+        Assert.assertEquals(expected, JsonParse.parse(json, ParseOptions.DEFAULT, EXECUTOR));
+
+        byte[] bytes = ("xx" + json + "yy").getBytes(ByteSource.UTF_8);
+        Assert.assertEquals(expected, JsonParse.parse(bytes, 2, bytes.length - 4, ParseOptions.DEFAULT, EXECUTOR));
+
+        // Small arrays and other roots are just parsed
+        Assert.assertEquals(JsonParse.parse("[1, 2]"), JsonParse.parse("[1, 2]", ParseOptions.DEFAULT, EXECUTOR));
+        Assert.assertEquals("a", JsonParse.parse("\"a\"", ParseOptions.DEFAULT, EXECUTOR));
+    }
+
+    @Test
+    public void shouldBuildPrimitiveArrays() {
+        StringBuilder numbers = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            numbers.append(i == 0 ? "" : ",").append(i % 3 == 0 ? i + ".5" : String.valueOf(i));
+        }
+        String json = numbers.append("]").toString();
+        ParseOptions options = ParseOptions.DEFAULT.withPrimitiveArrays(true);
+        Object parallel = JsonParse.parse(json, options, EXECUTOR);
+        Assert.assertTrue(parallel instanceof NumberList);
+        Assert.assertEquals(JsonParse.parse(json), parallel);
+    }
+
+    @Test
+    public void shouldFailLikeSequentialParse() {
+        String[] invalid = {
+                records(500, "{\"a\": tru}"),
+                records(500, "1 2"),
+                records(500, "1x"),
+                records(500, "{\"a\": 1]"),
+                records(500, ""),
+                records(500, "\"unterminated"),
+                records(500, "[1, !]") + ",",
+        };
+        for (String json : invalid) {
+            String expected;
+            try {
+                JsonParse.parse(json);
+                expected = null;
+            } catch (JsonParseException e) {
+                expected = e.getMessage();
+            }
+            try {
+                Object parsed = JsonParse.parse(json, ParseOptions.DEFAULT, EXECUTOR);
+                Assert.assertNull(expected);
+                Assert.assertEquals(JsonParse.parse(json), parsed);
+            } catch (JsonParseException e) {
+                Assert.assertEquals(expected, e.getMessage());
+            }
+        }
+
+        try {
+            JsonParse.parse(records(500, "{\"a\": [1, tru]}"), ParseOptions.DEFAULT, EXECUTOR);
+            Assert.fail("Did not throw exception on invalid constant");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("<root>.[250].a.[1]: \"tru\" is not a valid constant. Missing quotes?", e.getMessage());
+        }
+    }
+
+    /**
+     * @param broken element put in the middle of the records, or null for none
+     */
+    private static String records(int count, String broken) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ", ");
+            if (i == count / 2 && broken != null) {
+                json.append(broken);
+            } else {
+                json.append("{\"id\": ").append(i).append(", \"name\": \"n\\\"").append(i)
+                        .append("\", \"tags\": [\"a\", {\"b\": null}], \"price\": ").append(i * 0.5).append('}');
+            }
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,157 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParseLimitsTest {
+
+    private static final ParseLimits SMALL = ParseLimits.NONE.withMaxDepth(3).withMaxDocumentLength(60)
+            .withMaxStringLength(5).withMaxNumberLength(4).withMaxEntries(3);
+
+    @Test
+    public void shouldParseUpToTheLimits() throws IOException {
+        String json = "{\"abcde\": [[1234, -1.5, \"vwxyz\"]], \"b\": {}, \"c\": [1, 2, 3,]}";
+        Assert.assertEquals(JsonParse.parse(json), parseEveryWay(json, SMALL));
+        Assert.assertEquals(JsonParse.parse(json), parseEveryWay(json, ParseLimits.DEFAULT));
+    }
+
+    @Test
+    public void shouldFailPastTheLimitsWithThePath() throws IOException {
+        assertFails("[[[[1]]]]", "<root>.[0].[0].[0]: nested deeper than the limit of 3");
+        assertFails("{\"a\": {\"b\": {\"c\": {}}}}", "<root>.a.b.c: nested deeper than the limit of 3");
+        assertFails("{\"a\": [\"abcdef\"]}", "<root>.a.[0]: string is longer than the limit of 5");
+        assertFails("{\"a\": {\"abcdef\": 1}}", "<root>.a: string is longer than the limit of 5");
+        assertFails("\"abc\\\"ef\"", "<root>: string is longer than the limit of 5");
+        // Before they're decoded, so an escape past the limit isn't even looked at
+        assertFails("[\"abcdef\\uzzzz\"]", "<root>.[0]: string is longer than the limit of 5");
+        assertFails("{\"a\": [1, 12345]}", "<root>.a.[1]: number is longer than the limit of 4");
+        assertFails("{\"a\": -1.25}", "<root>.a: number is longer than the limit of 4");
+        assertFails("{\"a\": [1, 2, 3, 4]}", "<root>.a: more entries than the limit of 3");
+        assertFails("[[], {\"a\": 1, \"b\": 2, \"c\": 3, \"d\": 4}]", "<root>.[1]: more entries than the limit of 3");
+        assertFails("[1, 2, 3, {}]", "<root>: more entries than the limit of 3");
+        assertFails("[\"" + repeat('a', 3) + "\", " + repeat(' ', 60) + "1]",
+                "<root>: document is longer than the limit of 60");
+    }
+
+    @Test
+    public void shouldBypassOtherParsersWithLimits() {
+        ParseOptions options = ParseOptions.DEFAULT.withShapeCache(new ShapeCache()).withLimits(SMALL);
+        byte[] bytes = "[[[[1]]]]".getBytes(ByteSource.UTF_8);
+        for (int i = 0; i < 2; i++) {
+            try {
+                JsonParse.parse(bytes, 0, bytes.length, options);
+                Assert.fail("Parsed past the limits");
+            } catch (JsonParseException e) {
+                Assert.assertEquals("<root>.[0].[0].[0]: nested deeper than the limit of 3", e.getMessage());
+            }
+        }
+        Assert.assertEquals(0, options.getShapeCache().getLearned());
+    }
+
+    @Test
+    public void shouldCheckLimitsLazilyAndInDocuments() {
+        String deep = repeat('[', 50) + repeat(']', 50);
+        String[] tests = {deep, "[\"" + repeat('a', 20) + "\"]", "{\"" + repeat('a', 20) + "\": 1}", "[1, 2, 3, 4]",
+                "{\"a\": 1, \"b\": 2, \"c\": 3, \"d\": 4}", "[123456]", "[[[1]]]", "[[1], [2]]"};
+        ParseLimits limits = ParseLimits.NONE.withMaxDepth(2).withMaxStringLength(16).withMaxNumberLength(5)
+                .withMaxEntries(3);
+        ParseOptions options = ParseOptions.DEFAULT.withLimits(limits);
+        for (String json : tests) {
+            String expected = JsonParse.tryParse(json, options).isValid()
+                    ? null : JsonParse.tryParse(json, options).getError().getMessage();
+            ParseResult lazy = JsonParse.tryParse(json, options.withLazy(true));
+            Assert.assertEquals(json, expected, lazy.isValid() ? null : lazy.getError().getMessage());
+            if (lazy.isValid()) {
+                Assert.assertEquals(json, JsonParse.parse(json), lazy.getValue());
+            }
+
+            String document = null;
+            try {
+                JsonParse.document(json, options);
+            } catch (JsonParseException e) {
+                document = e.getMessage();
+            }
+            Assert.assertEquals(json, expected, document);
+        }
+        Assert.assertEquals("<root>.[0].[0]: nested deeper than the limit of 2",
+                JsonParse.tryParse(deep, options).getError().getMessage());
+    }
+
+    @Test
+    public void shouldCheckLimitsInParallel() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            builder.append(i == 0 ? "" : ",").append("[[1]]");
+        }
+        String json = builder.append(']').toString();
+        byte[] bytes = json.getBytes(ByteSource.UTF_8);
+
+        ForkJoinPool executor = new ForkJoinPool(4);
+        try {
+            ParseOptions unlimited = ParseOptions.DEFAULT.withLimits(ParseLimits.NONE.withMaxDepth(3));
+            Assert.assertEquals(JsonParse.parse(json), JsonParse.parse(json, unlimited, executor));
+
+            for (ParseLimits limits : Arrays.asList(ParseLimits.NONE.withMaxDepth(2),
+                    ParseLimits.NONE.withMaxEntries(100), ParseLimits.NONE.withMaxDocumentLength(100))) {
+                ParseOptions options = ParseOptions.DEFAULT.withLimits(limits);
+                String expected = JsonParse.tryParse(json, options).getError().getMessage();
+                try {
+                    JsonParse.parse(json, options, executor);
+                    Assert.fail("Parsed past " + expected);
+                } catch (JsonParseException e) {
+                    Assert.assertEquals(expected, e.getMessage());
+                }
+                try {
+                    JsonParse.parse(bytes, 0, bytes.length, options, executor);
+                    Assert.fail("Parsed past " + expected);
+                } catch (JsonParseException e) {
+                    Assert.assertEquals(expected, e.getMessage());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Parses json from a string, bytes, a reader, a stream and pushed a byte at a time, which must all agree
+     */
+    private static Object parseEveryWay(String json, ParseLimits limits) throws IOException {
+        ParseOptions options = ParseOptions.DEFAULT.withLimits(limits);
+        byte[] bytes = json.getBytes(ByteSource.UTF_8);
+        Object value = JsonParse.parse(json, options);
+        Assert.assertEquals(value, JsonParse.parse(bytes, 0, bytes.length, options));
+        Assert.assertEquals(value, JsonParse.parse(new StringReader(json), options));
+        Assert.assertEquals(value, JsonParse.parse(new ByteArrayInputStream(bytes), options));
+
+        JsonPushParser parser = new JsonPushParser(options);
+        for (byte b : bytes) {
+            parser.feed(new byte[]{b});
+        }
+        Assert.assertEquals(value, parser.endOfInput());
+        return value;
+    }
+
+    private static void assertFails(String json, String message) throws IOException {
+        for (String way : Arrays.asList("string", "bytes", "reader", "stream", "pushed")) {
+            try {
+                parseEveryWay(json, SMALL);
+                Assert.fail(way + " parsed " + json);
+            } catch (JsonParseException e) {
+                Assert.assertEquals(json, message, e.getMessage());
+            }
+        }
+    }
+
+    private static String repeat(char c, int times) {
+        char[] chars = new char[times];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
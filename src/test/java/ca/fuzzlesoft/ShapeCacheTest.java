@@ -0,0 +1,125 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("unchecked")
+public class ShapeCacheTest {
+
+    @Test
+    public void shouldHitOnDocumentsOfTheSameShape() {
+        ShapeCache shapes = new ShapeCache();
+        ParseOptions options = ParseOptions.DEFAULT.withShapeCache(shapes);
+        for (int i = 0; i < 10; i++) {
+            String json = "{\"id\": " + i + ", \"name\": \"n" + i + "\", \"score\": " + i + ".5, \"ok\": "
+                    + (i % 2 == 0) + ", \"tags\": [\"a\", \"b\"], \"\\u00e9\": {\"x\": null}, "
+                    + "\"items\": [{\"sku\": 1}, {\"sku\": 2}]}";
+            Assert.assertEquals(json, JsonParse.parse(json), JsonParse.parse(json, options));
+
+            byte[] bytes = json.getBytes(ByteSource.UTF_8);
+            Assert.assertEquals(json, JsonParse.parse(json), JsonParse.parse(bytes, 0, bytes.length, options));
+        }
+        Assert.assertEquals(1, shapes.getLearned());
+        Assert.assertEquals(19, shapes.getHits());
+        Assert.assertEquals(0, shapes.getMisses());
+        Assert.assertEquals("{id: number, name: string, score: number, ok: boolean, tags: [string], \u00e9: {x: null}, "
+                + "items: [{sku: number}]}", shapes.toString());
+
+        // Any value can be null, and null can turn out to be anything
+        Map<String, Object> map = (Map<String, Object>) JsonParse.parse("{\"id\": null, \"name\": null, "
+                + "\"score\": 1, \"ok\": null, \"tags\": null, \"\\u00e9\": {\"x\": [1]}, "
+                + "\"items\": [null, {\"sku\": 3}]}",
+                options);
+        Assert.assertEquals(Arrays.asList(null, JsonParse.map("{\"sku\": 3}")), map.get("items"));
+        Assert.assertEquals(20, shapes.getHits());
+    }
+
+    @Test
+    public void shouldFallBackOnDocumentsOfAnotherShape() {
+        ShapeCache shapes = new ShapeCache();
+        ParseOptions options = ParseOptions.DEFAULT.withShapeCache(shapes);
+        String learned = "{\"a\": 1, \"b\": [\"x\"], \"c\": {\"d\": true}}";
+        List<String> others = Arrays.asList(
+                "{\"b\": [\"x\"], \"a\": 1, \"c\": {\"d\": true}}",
+                "{\"a\": 1, \"b\": [\"x\"]}",
+                "{\"a\": 1, \"b\": [\"x\"], \"c\": {\"d\": true}, \"e\": 2}",
+                "{\"a\": \"1\", \"b\": [\"x\"], \"c\": {\"d\": true}}",
+                "{\"a\": 1, \"b\": [2], \"c\": {\"d\": true}}",
+                "{\"a\": 1, \"b\": [\"x\"], \"c\": {\"e\": true}}",
+                "{\"a\": 1, \"bb\": [\"x\"], \"c\": {\"d\": true}}",
+                "{\"a\": 1, \"b\": [\"x\",], \"c\": {\"d\": true},}",
+                "[1, 2]",
+                "\"a\"");
+        for (String other : others) {
+            JsonParse.parse(learned, options);
+            long misses = shapes.getMisses();
+            Assert.assertEquals(other, JsonParse.parse(other), JsonParse.parse(other, options));
+            Assert.assertEquals(other, misses + 1, shapes.getMisses());
+        }
+        Assert.assertEquals(others.size(), shapes.getLearned());
+
+        // Arrays of mixed elements are parsed without speculating on them
+        String mixed = "[{\"a\": 1}, {\"b\": 2}, 3, [4]]";
+        JsonParse.parse(mixed, options);
+        Assert.assertEquals("[any]", shapes.toString());
+        Assert.assertEquals(JsonParse.parse("[[5], 6]"), JsonParse.parse("[[5], 6]", options));
+    }
+
+    @Test
+    public void shouldFailLikeTheStateMachine() {
+        ShapeCache shapes = new ShapeCache();
+        ParseOptions options = ParseOptions.DEFAULT.withShapeCache(shapes);
+        for (String json : Arrays.asList("", "{", "[1, 2", "[,]", "{\"a\": tru}", "{\"a\": 1x}", "[1 2]",
+                "{\"a\" 1}", "{\"a\": \"unterminated", "{\"a\": 1]", "{\"a\": [99999999999999999999]}")) {
+            JsonParse.parse("{\"a\": [1]}", options);
+            String expected = null, actual = null;
+            try {
+                JsonParse.parse(json);
+            } catch (JsonParseException e) {
+                expected = e.getMessage();
+            }
+            try {
+                JsonParse.parse(json, options);
+            } catch (JsonParseException e) {
+                actual = e.getMessage();
+            }
+            Assert.assertNotNull(json, expected);
+            Assert.assertEquals(json, expected, actual);
+        }
+    }
+
+    @Test
+    public void shouldKeepOptions() {
+        ShapeCache shapes = new ShapeCache();
+        ParseOptions options = ParseOptions.DEFAULT.withShapeCache(shapes).withPrimitiveArrays(true)
+                .withContainerFactory(ContainerFactory.ordered());
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> map = (Map<String, Object>) JsonParse.parse("{\"z\": [1, 2.5, null], \"a\": []}",
+                    options);
+            Assert.assertEquals(Arrays.asList("z", "a"), Arrays.asList(map.keySet().toArray()));
+            Assert.assertTrue(map.get("z") instanceof NumberList);
+            Assert.assertTrue(map.get("a") instanceof NumberList);
+            Assert.assertEquals(Arrays.asList(1L, 2.5, null), map.get("z"));
+        }
+        Assert.assertEquals(2, shapes.getHits());
+
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            deep.append('[');
+        }
+        for (int i = 0; i < 1000; i++) {
+            deep.append(']');
+        }
+        String json = deep.toString();
+        Assert.assertEquals(JsonParse.parse(json), JsonParse.parse(json, options));
+        Assert.assertEquals(JsonParse.parse(json), JsonParse.parse(json, options));
+
+        shapes.clear();
+        Assert.assertEquals("none", shapes.toString());
+        Assert.assertEquals(0, shapes.getHits());
+    }
+}
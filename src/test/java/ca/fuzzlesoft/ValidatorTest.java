@@ -0,0 +1,103 @@
+package ca.fuzzlesoft;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ValidatorTest {
+
+    private static final String[] DOCUMENTS = {
+            "{}", "[]", "\"\"", "0", " -12 ", "1.5e3", "-.5", "1.", "true", "false", "null", "007",
+            "9223372036854775807", "-9223372036854775808", "12abc", "true]", "\"caf\u00e9 \ud83d\ude00\"",
+            "{\"a\": {\"b\": [1, 2.5, \"c\", true, false, null, {}, [[]]]}, \"d\": \"\\u00e9\\n\\\"\\\\\\q\"}",
+            "[\n  {\"id\": 1, \"tags\": [\"x\", \"y\"]},\n  {\"id\": 2, \"tags\": []}\n]\ttrailing",
+            "[1, 2, 3,]", "{\"a\": 1,}",
+            // Invalid
+            "", "   ", "{", "[1, 2", "[1, ", "{\"a\": 1", "{\"a\"", "{\"a\": ", "{\"a\"   ", "[\"abc", "\"abc",
+            "[\"\\u00", "[\"\\u00zz\"]", "{\"\\u12\": 1}", "{\"a\" 1}", "{\"a\":: 1}", "{a: 1}", "{\"a\": 1 \"b\": 2}",
+            "{,}", "[1 2]", "[,,]", "[nulll]", "{\"a\": {\"b\": [fasle]}}", "[1.2.3]", "[--1]", "{\"a\": -}",
+            "9223372036854775808", "-9223372036854775809", "[1e]", "[1e+]", "[1e5.5]", "[1+2]", "tru", "@",
+            "[@]", "{\"a\": @}", "[}", "{]", "{\"a\": }", "\r1",
+    };
+
+    @Test
+    public void shouldAcceptExactlyWhatParseDoes() {
+        for (String json : DOCUMENTS) {
+            assertValidatesLikeParse(json, ParseOptions.DEFAULT);
+        }
+
+        // Break valid documents in every which way
+        Random random = new Random(42);
+        String alphabet = "{}[]\":,. \n-+0123456789eEtrufalsn\\u";
+        for (String json : DOCUMENTS) {
+            for (int run = 0; run < 200 && !json.isEmpty(); run++) {
+                StringBuilder broken = new StringBuilder(json);
+                for (int edits = 1 + random.nextInt(3); edits > 0 && broken.length() > 0; edits--) {
+                    int at = random.nextInt(broken.length());
+                    char c = alphabet.charAt(random.nextInt(alphabet.length()));
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            broken.insert(at, c);
+                            break;
+                        case 1:
+                            broken.deleteCharAt(at);
+                            break;
+                        default:
+                            broken.setCharAt(at, c);
+                    }
+                }
+                assertValidatesLikeParse(broken.toString(), ParseOptions.DEFAULT);
+            }
+        }
+    }
+
+    @Test
+    public void shouldCheckLimits() {
+        ParseOptions limited = ParseOptions.DEFAULT.withLimits(ParseLimits.NONE.withMaxDepth(3).withMaxEntries(3)
+                .withMaxStringLength(5).withMaxNumberLength(4).withMaxDocumentLength(40));
+        String[] tests = {"[[1]]", "[[[1]]]", "{\"a\": {\"b\": {}}}", "[1, 2, 3]", "[1, 2, 3, 4]",
+                "{\"a\": 1, \"b\": 2, \"c\": 3, \"d\": 4}", "[\"abcde\"]", "[\"abcdef\"]", "{\"abcdef\": 1}",
+                "[1234]", "[12345]", "[1.5e10]", "[\"" + new String(new char[40]).replace('\0', 'x') + "\"]"};
+        for (String test : tests) {
+            assertValidatesLikeParse(test, limited);
+        }
+    }
+
+    @Test
+    public void shouldReportTheFirstError() {
+        Assert.assertNull(JsonParse.validate("{\"a\": [1, 2]}"));
+        byte[] bytes = "[1, 2]".getBytes(ByteSource.UTF_8);
+        Assert.assertNull(JsonParse.validate(bytes, 0, bytes.length));
+        Assert.assertNull(new JsonParser().validate(bytes, 0, bytes.length));
+
+        JsonParseException e = JsonParse.validate("{\"a\": [1, 2, @]}");
+        Assert.assertEquals("<root>.a.[2]: Unexpected character \"@\" instead of array value", e.getMessage());
+        Assert.assertEquals(13, e.getOffset());
+        Assert.assertEquals(0, e.getStackTrace().length);
+
+        e = JsonParse.validate(bytes, 0, 5);
+        Assert.assertEquals(5, e.getOffset());
+        Assert.assertNull(e.getPath());
+    }
+
+    private static void assertValidatesLikeParse(String json, ParseOptions options) {
+        byte[] bytes = json.getBytes(ByteSource.UTF_8);
+        Assert.assertEquals(json, describe(JsonParse.tryParse(json, options).getError()),
+                describe(JsonParse.validate(json, options)));
+        Assert.assertEquals(json, describe(JsonParse.tryParse(bytes, 0, bytes.length, options).getError()),
+                describe(JsonParse.validate(bytes, 0, bytes.length, options)));
+
+        // The validator itself has to agree, not just the parse that explains why
+        Assert.assertEquals(json, JsonParse.tryParse(json, options).isValid(),
+                Validator.validate(new StringSource(json), options.limits, new ParseStack())
+                        && json.length() <= options.limits.maxDocumentLength);
+        Assert.assertEquals(json, JsonParse.tryParse(bytes, 0, bytes.length, options).isValid(),
+                Validator.validate(new ByteSource(bytes, 0, bytes.length), options.limits, new ParseStack())
+                        && bytes.length <= options.limits.maxDocumentLength);
+    }
+
+    private static String describe(JsonParseException e) {
+        return e == null ? "valid" : e.getOffset() + " " + e.getMessage();
+    }
+}